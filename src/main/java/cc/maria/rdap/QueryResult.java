@@ -0,0 +1,64 @@
+/*
+ * Copyright (c) 2023 Maria Merkel
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the license at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the license for the specific language governing permissions and
+ * limitations under the license.
+ */
+
+package cc.maria.rdap;
+
+import cc.maria.rdap.object.ObjectClass;
+import cc.maria.rdap.object.ObjectReference;
+
+/**
+ * Outcome of a single query of a batch, either the object returned by the server or the error the query failed with
+ */
+public final class QueryResult {
+    private final ObjectReference reference;
+    private final ObjectClass object;
+    private final Throwable error;
+
+    QueryResult (ObjectReference reference, ObjectClass object, Throwable error) {
+        this.reference = reference;
+        this.object = object;
+        this.error = error;
+    }
+
+    /**
+     * @return The object that was queried for
+     */
+    public ObjectReference getReference () {
+        return reference;
+    }
+
+    /**
+     * @return The object class returned by the server, or null if the query failed
+     */
+    public ObjectClass getObject () {
+        return object;
+    }
+
+    /**
+     * @return The error the query failed with, such as an {@link cc.maria.rdap.exception.RDAPException}, or null if it
+     * succeeded
+     */
+    public Throwable getError () {
+        return error;
+    }
+
+    /**
+     * @return Whether the query succeeded
+     */
+    public boolean isSuccess () {
+        return error == null;
+    }
+}
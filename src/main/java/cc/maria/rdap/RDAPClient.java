@@ -16,22 +16,105 @@
 
 package cc.maria.rdap;
 
+import cc.maria.rdap.bootstrap.ASNBootstrapRegistry;
+import cc.maria.rdap.bootstrap.BootstrapIndex;
 import cc.maria.rdap.bootstrap.DomainBootstrapRegistry;
+import cc.maria.rdap.bootstrap.IPv4BootstrapRegistry;
+import cc.maria.rdap.bootstrap.IPv6BootstrapRegistry;
 
+import cc.maria.rdap.exception.ErrorResponseException;
+import cc.maria.rdap.exception.InsecureRedirectException;
 import cc.maria.rdap.exception.InvalidObjectTypeException;
+import cc.maria.rdap.exception.ObjectNotFoundException;
+import cc.maria.rdap.exception.RateLimitedException;
 import cc.maria.rdap.exception.RDAPException;
+import cc.maria.rdap.exception.ResponseTooLargeException;
+import cc.maria.rdap.exception.TooManyRedirectsException;
+import cc.maria.rdap.exception.UnknownObjectTypeException;
+import cc.maria.rdap.exception.UnknownServiceException;
+import cc.maria.rdap.http.AutnumCache;
+import cc.maria.rdap.http.Freshness;
+import cc.maria.rdap.http.IPNetworkCache;
+import cc.maria.rdap.http.NegativeCache;
+import cc.maria.rdap.http.RateLimiter;
 import cc.maria.rdap.http.RDAPRequestFilter;
+import cc.maria.rdap.http.ResponseCache;
+import cc.maria.rdap.http.RetryPolicy;
+import cc.maria.rdap.http.ServiceHints;
+import cc.maria.rdap.http.ServiceSelector;
 import cc.maria.rdap.object.*;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
 import jakarta.ws.rs.client.Client;
 import jakarta.ws.rs.client.ClientBuilder;
+import jakarta.ws.rs.client.InvocationCallback;
+import jakarta.ws.rs.ProcessingException;
 import jakarta.ws.rs.client.WebTarget;
+import jakarta.ws.rs.core.HttpHeaders;
+import jakarta.ws.rs.core.Response;
+import inet.ipaddr.IPAddress;
+import inet.ipaddr.IPAddressString;
+
+import java.io.ByteArrayInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
 
 public class RDAPClient {
+    /**
+     * Mapper shared by all clients that were not given their own. Mappers are thread-safe once configured, and sharing
+     * one keeps the module scan and the deserializer cache warm across clients.
+     */
+    private static final ObjectMapper defaultMapper = new ObjectMapper().findAndRegisterModules();
+
+    /**
+     * Runs bootstrap resolution and deserialization for asynchronous queries of clients without their own executor, on
+     * virtual threads if {@link VirtualThreads} are enabled
+     */
+    private static final Executor defaultExecutor = VirtualThreads.executor("rdap-async");
+
     private String serviceURL = null;
+    private volatile long maxResponseSize = -1;
+    private volatile Executor executor = defaultExecutor;
+    private volatile int maxConcurrentQueriesPerServer = 4;
+    private volatile ResponseCache responseCache = null;
+    private volatile NegativeCache negativeCache = null;
+    private volatile IPNetworkCache networkCache = null;
+    private volatile AutnumCache autnumCache = null;
+    private volatile RateLimiter rateLimiter = null;
+    private volatile boolean coalescing = true;
+    private volatile Duration requestTimeout = null;
+    private volatile Duration queryTimeout = null;
+    private volatile RetryPolicy retryPolicy = null;
+    private volatile double hedgePercentile = 0;
+    private volatile int maxRedirects = 5;
+    private volatile ServiceHints serviceHints = new ServiceHints(10000, Duration.ofDays(1));
+    private volatile BootstrapIndex bootstrapIndex = null;
+    private final ConcurrentHashMap<String, CompletableFuture<ObjectClass>> inFlight = new ConcurrentHashMap<>();
 
     private final Client client;
+    private final ObjectMapper mapper;
+    private final ObjectReader autnumReader;
+    private final ObjectReader domainReader;
+    private final ObjectReader entityReader;
+    private final ObjectReader ipNetworkReader;
+    private final ServiceSelector serviceSelector = new ServiceSelector();
 
     public RDAPClient () {
         this (ClientBuilder.newClient());
@@ -43,8 +126,7 @@ public class RDAPClient {
     }
 
     public RDAPClient (Client client) {
-        client.register(RDAPRequestFilter.class);
-        this.client = client;
+        this (client, defaultMapper);
     }
 
     public RDAPClient (String serviceURL, Client client) {
@@ -52,6 +134,29 @@ public class RDAPClient {
         setServiceURL(serviceURL);
     }
 
+    /**
+     * Create a client that deserializes responses with a custom mapper. The mapper must not be reconfigured afterwards.
+     *
+     * @param client HTTP client
+     * @param mapper Mapper for deserializing RDAP responses
+     */
+    public RDAPClient (Client client, ObjectMapper mapper) {
+        client.register(RDAPRequestFilter.class);
+        this.client = client;
+        this.mapper = mapper;
+
+        // Readers are immutable and resolve their deserializer once, so every query reuses it
+        autnumReader = mapper.readerFor(AutnumObjectClass.class);
+        domainReader = mapper.readerFor(DomainObjectClass.class);
+        entityReader = mapper.readerFor(EntityObjectClass.class);
+        ipNetworkReader = mapper.readerFor(IPNetworkObjectClass.class);
+    }
+
+    public RDAPClient (String serviceURL, Client client, ObjectMapper mapper) {
+        this (client, mapper);
+        setServiceURL(serviceURL);
+    }
+
     private void setServiceURL (String serviceURL) {
         if (!serviceURL.endsWith("/")) serviceURL += "/";
         this.serviceURL = serviceURL;
@@ -59,17 +164,29 @@ public class RDAPClient {
 
     /**
      * Get the service URL for a given object.
-     * If the service URL is not set, the service URL will be looked up from the bootstrap registry.
-     * NOTE: RDAP servers can further redirect the client to another service URL. This method returns the first responsible service URL.
-     *
-     * TODO: Fix
+     * If the service URL is not set, the service URL will be looked up from the bootstrap registry. Objects whose type
+     * cannot be determined from the handle are looked up as domains.
+     * NOTE: RDAP servers can further redirect the client to another service URL. If an earlier query in the same range
+     * was redirected, this method returns the server the redirect ended at, otherwise the first responsible service URL.
      *
      * @param object The object to be looked up
-     * @return The service URL responsible for the object
+     * @return The service URL responsible for the object, or null if there is none
      */
     public String getServiceURL (String object) {
         if (serviceURL != null) return serviceURL;
-        return DomainBootstrapRegistry.getInstance(client).getServiceURLForFQDN(object);
+
+        ObjectReference objectReference = new ObjectReference(object);
+        try {
+            objectReference.getType();
+        } catch (UnknownObjectTypeException e) {
+            objectReference = new ObjectReference(object, ObjectType.DOMAIN);
+        }
+
+        try {
+            return objectReference.getServiceURLs(this).get(0);
+        } catch (RDAPException e) {
+            return null;
+        }
     }
 
     /**
@@ -79,31 +196,1160 @@ public class RDAPClient {
      * @return The object class returned by the server
      *
      * @throws RDAPException Error in the RDAP protocol
+     * @throws ObjectNotFoundException The responsible server does not know the object
+     * @throws RateLimitedException The responsible server rate limited the query
+     * @throws ResponseTooLargeException The response body exceeds the maximum response size
      * @throws JsonProcessingException Error in JSON parsing
      */
     public ObjectClass query (ObjectReference objectReference) throws RDAPException, JsonProcessingException {
-        String json = objectReference.getObjectURL(this).request().get().readEntity(String.class);
-        ObjectMapper mapper = new ObjectMapper().findAndRegisterModules();
+        ObjectType type = objectReference.getType();
+
+        ObjectClass cached = getCachedRange(objectReference, type);
+        if (cached != null) return cached;
+
+        Route route = route(objectReference);
+        String key = getCacheKey(route);
+        cached = getCached(type, key);
+        if (cached != null) return cached;
+
+        Referral referral = new Referral(objectReference, route);
+        if (!coalescing || key == null) return read(type, get(objectReference, route, referral), key, referral);
+
+        CompletableFuture<ObjectClass> flight = new CompletableFuture<>();
+        CompletableFuture<ObjectClass> running = inFlight.putIfAbsent(key, flight);
+        if (running != null) return await(running);
+
+        try {
+            ObjectClass object = read(type, get(objectReference, route, referral), key, referral);
+            flight.complete(object);
+            return object;
+        } catch (RDAPException | JsonProcessingException | RuntimeException | Error e) {
+            flight.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, flight);
+        }
+    }
+
+    /**
+     * Query the responsible RDAP service for a specified object without blocking the calling thread.
+     * <p>
+     * Bootstrap resolution and deserialization run on the executor of this client, and the request itself is sent with
+     * the asynchronous invoker of the HTTP client. Errors complete the future exceptionally with the exception the
+     * blocking {@link #query(ObjectReference)} would have thrown.
+     *
+     * @param objectReference The object to query for
+     * @return Future of the object class returned by the server
+     */
+    public CompletableFuture<ObjectClass> queryAsync (ObjectReference objectReference) {
+        return submit(objectReference);
+    }
+
+    public CompletableFuture<AutnumObjectClass> queryAutnumAsync (ObjectReference objectReference) {
+        return submit(objectReference, ObjectType.ASN).thenApply(AutnumObjectClass.class::cast);
+    }
+
+    public CompletableFuture<DomainObjectClass> queryDomainAsync (ObjectReference objectReference) {
+        return submit(objectReference, ObjectType.DOMAIN).thenApply(DomainObjectClass.class::cast);
+    }
+
+    public CompletableFuture<EntityObjectClass> queryEntityAsync (ObjectReference objectReference) {
+        return submit(objectReference, ObjectType.ENTITY).thenApply(EntityObjectClass.class::cast);
+    }
+
+    public CompletableFuture<IPNetworkObjectClass> queryIPNetworkAsync (ObjectReference objectReference) {
+        return submit(objectReference, ObjectType.IPv4, ObjectType.IPv6).thenApply(IPNetworkObjectClass.class::cast);
+    }
+
+    /**
+     * Query a batch of objects. The objects are grouped by the host of the server responsible for them, and each group
+     * runs at most {@link #getMaxConcurrentQueriesPerServer()} queries at a time, while groups run in parallel.
+     * <p>
+     * Results are passed to the consumer as the queries finish, in no particular order and possibly from several
+     * threads at once. Queries that fail are passed on as a result with an error and do not affect the others.
+     *
+     * @param objectReferences The objects to query for
+     * @param consumer Receives the result of each query
+     * @return Future that completes once all results were passed to the consumer
+     */
+    public CompletableFuture<Void> queryAll (Collection<ObjectReference> objectReferences, Consumer<QueryResult> consumer) {
+        CompletableFuture<Void> done = new CompletableFuture<>();
+        AtomicInteger remaining = new AtomicInteger(objectReferences.size());
+        if (objectReferences.isEmpty()) done.complete(null);
+
+        Consumer<QueryResult> emit = result -> {
+            try {
+                consumer.accept(result);
+            } catch (RuntimeException e) {
+                done.completeExceptionally(e);
+            }
+
+            if (remaining.decrementAndGet() == 0) done.complete(null);
+        };
+
+        // Resolving the services may load the bootstrap registries, so it does not run on the calling thread either
+        executor.execute(() -> {
+            int cap = maxConcurrentQueriesPerServer;
+            Map<String, Queue<ObjectReference>> groups = new HashMap<>();
+
+            for (ObjectReference objectReference : objectReferences) {
+                try {
+                    groups.computeIfAbsent(getServerHost(objectReference), host -> new ConcurrentLinkedQueue<>()).add(objectReference);
+                } catch (RDAPException | RuntimeException e) {
+                    emit.accept(new QueryResult(objectReference, null, e));
+                }
+            }
+
+            for (Queue<ObjectReference> group : groups.values()) {
+                for (int i = Math.min(cap, group.size()); i > 0; i--) drain(group, emit);
+            }
+        });
+
+        return done;
+    }
+
+    /**
+     * Query a batch of objects like {@link #queryAll(Collection, Consumer)}, returning a stream of the results in the
+     * order the queries finish. Consuming the stream blocks until the next result is available.
+     *
+     * @param objectReferences The objects to query for
+     * @return Stream with one result for each object
+     */
+    public Stream<QueryResult> queryAll (Collection<ObjectReference> objectReferences) {
+        BlockingQueue<QueryResult> results = new LinkedBlockingQueue<>();
+        queryAll(objectReferences, results::add);
+
+        return Stream.generate(() -> {
+            try {
+                return results.take();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new CompletionException(e);
+            }
+        }).limit(objectReferences.size());
+    }
+
+    /**
+     * Run the queries of a group one after another, starting the next once the previous one finished
+     */
+    private void drain (Queue<ObjectReference> group, Consumer<QueryResult> emit) {
+        ObjectReference objectReference = group.poll();
+        if (objectReference == null) return;
+
+        queryAsync(objectReference).whenComplete((object, error) -> {
+            Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+            emit.accept(new QueryResult(objectReference, object, cause));
+            drain(group, emit);
+        });
+    }
+
+    /**
+     * Determine the host of the server a query for an object is sent to first
+     */
+    private String getServerHost (ObjectReference objectReference) throws RDAPException {
+        if (serviceURL != null || objectReference.hasService()) return objectReference.getObjectURL(this).getUri().getHost();
+        return URI.create(objectReference.getServiceURLs(this).get(0)).getHost();
+    }
+
+    /**
+     * Start an asynchronous query, optionally restricted to some object types
+     */
+    private CompletableFuture<ObjectClass> submit (ObjectReference objectReference, ObjectType... types) {
+        Executor executor = this.executor;
+
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                ObjectType type = objectReference.getType();
+                if (types.length > 0 && !List.of(types).contains(type)) throw new InvalidObjectTypeException();
+
+                ObjectClass cached = getCachedRange(objectReference, type);
+                if (cached != null) return CompletableFuture.completedFuture(cached);
+
+                Route route = route(objectReference);
+                String key = getCacheKey(route);
+                cached = getCached(type, key);
+                if (cached != null) return CompletableFuture.completedFuture(cached);
+
+                boolean coalesce = coalescing && key != null;
+                CompletableFuture<ObjectClass> flight = new CompletableFuture<>();
+                if (coalesce) {
+                    CompletableFuture<ObjectClass> running = inFlight.putIfAbsent(key, flight);
+
+                    // A dependent future, so callers cannot complete or cancel the shared one
+                    if (running != null) return running.thenApply(Function.identity());
+                }
+
+                // From here on, every failure has to complete the flight, or later callers would wait for it forever
+                Referral referral = new Referral(objectReference, route);
+                CompletionStage<Response> request;
+                try {
+                    request = getAsync(objectReference, route, referral);
+                } catch (RuntimeException e) {
+                    request = CompletableFuture.failedFuture(e);
+                }
+
+                request.thenApplyAsync(response -> {
+                    try {
+                        return read(type, response, key, referral);
+                    } catch (RDAPException | JsonProcessingException e) {
+                        throw new CompletionException(e);
+                    }
+                }, executor).whenComplete((object, error) -> {
+                    if (coalesce) inFlight.remove(key, flight);
+
+                    if (error == null) flight.complete(object);
+                    else flight.completeExceptionally(error instanceof CompletionException && error.getCause() != null ? error.getCause() : error);
+                });
+
+                return flight.thenApply(Function.identity());
+            } catch (RDAPException | JsonProcessingException e) {
+                throw new CompletionException(e);
+            }
+        }, executor).thenCompose(Function.identity());
+    }
+
+    /**
+     * Wait for a query that another caller started, or for a request sent asynchronously, rethrowing its error
+     */
+    private static <T> T await (CompletableFuture<T> future) throws RDAPException, JsonProcessingException {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            Throwable cause = e.getCause();
+
+            if (cause instanceof RDAPException) throw (RDAPException) cause;
+            if (cause instanceof JsonProcessingException) throw (JsonProcessingException) cause;
+            if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+            if (cause instanceof Error) throw (Error) cause;
+            throw new ProcessingException(cause);
+        }
+    }
+
+    /**
+     * Resolve the services a query for an object is sent to. The bootstrap registries are looked up once per query,
+     * and the key of the response is the object URL at the first service URL in registry order, so it does not change
+     * with the observed latency of the URLs or with hints.
+     */
+    private Route route (ObjectReference objectReference) throws RDAPException {
+        Duration timeout = queryTimeout;
+        long start = System.nanoTime();
+
+        if (serviceURL != null || objectReference.hasService()) {
+            WebTarget service = objectReference.getService(this);
+            return new Route(List.of(service), List.of(), objectReference.getObjectURL(service).getUri().toString(), start, timeout);
+        }
+
+        List<String> bootstrapServiceURLs;
+        try {
+            bootstrapServiceURLs = objectReference.getBootstrapServiceURLs(this);
+        } catch (UnknownServiceException e) {
+            // A hint may still know the service
+            bootstrapServiceURLs = List.of();
+        }
+
+        List<String> serviceURLs = objectReference.getServiceURLs(this, bootstrapServiceURLs);
+        List<WebTarget> services = new ArrayList<>(serviceURLs.size());
+        for (String url : serviceURLs) services.add(client.target(url));
+
+        String keyURL = bootstrapServiceURLs.isEmpty() ? serviceURLs.get(0) : bootstrapServiceURLs.get(0);
+        return new Route(services, bootstrapServiceURLs, objectReference.getObjectURL(client.target(keyURL)).getUri().toString(), start, timeout);
+    }
+
+    /**
+     * Get the key of the response for an object in the response and negative caches and among the queries in flight
+     *
+     * @return Object URL, or null if there are no caches and queries are not coalesced
+     */
+    private String getCacheKey (Route route) {
+        if (responseCache == null && negativeCache == null && !coalescing) return null;
+        return route.key;
+    }
+
+    /**
+     * Deserialize a fresh response from the response cache, or fail right away if the object is known not to exist
+     *
+     * @return Object class, or null if there is no fresh cached response
+     */
+    private ObjectClass getCached (ObjectType type, String key) throws RDAPException, JsonProcessingException {
+        if (key == null) return null;
+
+        NegativeCache negative = negativeCache;
+        if (negative != null && negative.contains(key)) throw new ObjectNotFoundException();
+
+        ResponseCache cache = responseCache;
+        if (cache == null) return null;
+
+        byte[] body = cache.get(key);
+        return body == null ? null : deserializeCached(type, body);
+    }
+
+    /**
+     * Deserialize a cached IP network or autnum block containing the queried object, before resolving its service
+     *
+     * @return Object class, or null if no cached network or block contains the object
+     */
+    private ObjectClass getCachedRange (ObjectReference objectReference, ObjectType type) throws JsonProcessingException {
+        byte[] body = null;
+
+        if (type == ObjectType.IPv4 || type == ObjectType.IPv6) {
+            IPNetworkCache cache = networkCache;
+            if (cache != null) body = cache.get(objectReference.getHandle());
+        } else if (type == ObjectType.ASN) {
+            AutnumCache cache = autnumCache;
+            long asn = parseASN(objectReference.getHandle());
+            if (cache != null && asn >= 0) body = cache.get(asn);
+        }
+
+        return body == null ? null : deserializeCached(type, body);
+    }
+
+    /**
+     * @return AS number, or -1 if the handle is not a valid AS number
+     */
+    private static long parseASN (String handle) {
+        try {
+            long asn = Long.parseLong(handle);
+            return asn <= 0xffffffffL ? asn : -1;
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private ObjectClass deserializeCached (ObjectType type, byte[] body) throws JsonProcessingException {
+        // Every hit is deserialized again, so callers never share or modify the same object
+        try {
+            return deserialize(type, new ByteArrayInputStream(body));
+        } catch (IOException e) {
+            if (e instanceof JsonProcessingException) throw (JsonProcessingException) e;
+            throw new ProcessingException(e);
+        }
+    }
+
+    /**
+     * Read and deserialize a response, closing it afterwards. Successful responses are added to the response, network
+     * and autnum caches if there are any and they may be reused, and objects the server does not know are added to the
+     * negative cache. If the query was redirected, the server it ended at is remembered for the range of the object.
+     */
+    private ObjectClass read (ObjectType type, Response response, String key, Referral referral) throws RDAPException, JsonProcessingException {
+        long limit = maxResponseSize;
+        ResponseCache cache = key == null ? null : responseCache;
+        IPNetworkCache networks = type == ObjectType.IPv4 || type == ObjectType.IPv6 ? networkCache : null;
+        AutnumCache autnums = type == ObjectType.ASN ? autnumCache : null;
+
+        // The body is parsed straight from the connection, closing the response releases it even if parsing fails
+        try {
+            if (response.getStatus() == 404) {
+                NegativeCache negative = negativeCache;
+                if (key != null && negative != null) negative.add(key);
+
+                throw new ObjectNotFoundException();
+            }
+
+            if (response.getStatus() == 429) {
+                long retryAfter = RateLimiter.retryAfter(response);
+                throw new RateLimitedException(retryAfter < 0 ? null : Duration.ofMillis(retryAfter));
+            }
+
+            if (response.getStatus() < 200 || response.getStatus() >= 300) throw new ErrorResponseException(response.getStatus(), readError(response, limit));
+
+            if (limit >= 0 && response.getLength() > limit) throw new ResponseTooLargeException(limit);
+
+            LimitedInputStream body = new LimitedInputStream(response.readEntity(InputStream.class), limit);
+            try {
+                long now = System.currentTimeMillis();
+                long served = response.getStatus() == 200 && (cache != null || networks != null || autnums != null) ? Freshness.expires(response, -1) : 0;
+                long expires = cache == null ? 0 : served == -1 ? now + cache.getDefaultTTL() : served;
+                long networkExpires = networks == null ? 0 : served == -1 ? now + networks.getDefaultTTL() : served;
+                long autnumExpires = autnums == null ? 0 : served == -1 ? now + autnums.getDefaultTTL() : served;
+                if (expires <= now && networkExpires <= now && autnumExpires <= now) return learn(type, deserialize(type, body), referral);
+
+                // Cacheable responses are buffered, so the same bytes can be deserialized again on later hits
+                byte[] bytes = body.readAllBytes();
+                ObjectClass object = deserialize(type, new ByteArrayInputStream(bytes));
+
+                if (expires > now) cache.put(key, bytes, expires);
+                if (networkExpires > now) {
+                    IPNetworkObjectClass network = (IPNetworkObjectClass) object;
+                    networks.put(network.getStartAddress(), network.getEndAddress(), bytes, networkExpires);
+                }
+                if (autnumExpires > now) {
+                    AutnumObjectClass autnum = (AutnumObjectClass) object;
+                    autnums.put(Integer.toUnsignedLong(autnum.getStartAutnum()), Integer.toUnsignedLong(autnum.getEndAutnum()), bytes, autnumExpires);
+                }
+
+                return learn(type, object, referral);
+            } catch (IOException e) {
+                if (body.exceeded) throw new ResponseTooLargeException(limit);
+                if (e instanceof JsonProcessingException) throw (JsonProcessingException) e;
+                throw new ProcessingException(e);
+            }
+        } finally {
+            response.close();
+        }
+    }
+
+    /**
+     * Read the RDAP error response sent with an unsuccessful status, within the maximum response size
+     *
+     * @return Error response, or null if the body is empty, too large or not an error response
+     */
+    private ErrorResponseBody readError (Response response, long limit) {
+        if (!response.hasEntity() || (limit >= 0 && response.getLength() > limit)) return null;
+
+        try (LimitedInputStream body = new LimitedInputStream(response.readEntity(InputStream.class), limit)) {
+            return mapper.readValue(body, ErrorResponseBody.class);
+        } catch (IOException | ProcessingException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Remember the server a redirected query ended at for the network, autnum block or TLD of the object. The range has
+     * to contain the queried object and lie within a bootstrap registry entry of the service the query was sent to, so
+     * a server cannot claim more of the address or AS number space than its registry entry covers.
+     *
+     * @return The object
+     */
+    private ObjectClass learn (ObjectType type, ObjectClass object, Referral referral) {
+        ServiceHints hints = serviceHints;
+        String service = referral.service;
+        List<String> bootstrapServiceURLs = referral.route.bootstrapServiceURLs;
+        if (hints == null || service == null || object == null || bootstrapServiceURLs.isEmpty()) return object;
+
+        String handle = referral.objectReference.getHandle();
+        BootstrapIndex index = bootstrapIndex;
+
+        switch (type) {
+            case ASN:
+                AutnumObjectClass autnum = (AutnumObjectClass) object;
+                long start = Integer.toUnsignedLong(autnum.getStartAutnum());
+                long end = Integer.toUnsignedLong(autnum.getEndAutnum());
+                long asn = Long.parseLong(handle);
+
+                if (asn < start || asn > end) break;
+                List<String> blockServiceURLs = index != null ? index.getServiceURLsForASNs(start, end) : ASNBootstrapRegistry.getInstance(client).getServiceURLsForASNs(start, end);
+                if (!bootstrapServiceURLs.equals(blockServiceURLs)) break;
+
+                hints.putAutnums(start, end, service);
+                break;
 
-        switch (objectReference.getType()) {
+            case DOMAIN:
+                String fqdn = handle.endsWith(".") ? handle.substring(0, handle.length() - 1) : handle;
+                String tld = fqdn.substring(fqdn.lastIndexOf('.') + 1);
+
+                // The hint covers the whole TLD, so the object must have been bootstrapped by the entry for the TLD
+                List<String> tldServiceURLs = index != null ? index.getServiceURLsForFQDN(tld) : DomainBootstrapRegistry.getInstance(client).getServiceURLsForFQDN(tld);
+                if (!bootstrapServiceURLs.equals(tldServiceURLs)) break;
+
+                hints.putDomain(handle, service);
+                break;
+
+            case IPv4:
+            case IPv6:
+                IPNetworkObjectClass network = (IPNetworkObjectClass) object;
+                String block = getCoveringBlock(network.getStartAddress(), network.getEndAddress(), handle);
+                if (block == null) break;
+
+                List<String> networkServiceURLs;
+                if (index != null) networkServiceURLs = index.getServiceURLsForIP(block);
+                else if (type == ObjectType.IPv4) networkServiceURLs = IPv4BootstrapRegistry.getInstance(client).getServiceURLsForIP(block);
+                else networkServiceURLs = IPv6BootstrapRegistry.getInstance(client).getServiceURLsForIP(block);
+                if (!bootstrapServiceURLs.equals(networkServiceURLs)) break;
+
+                hints.putNetwork(network.getStartAddress(), network.getEndAddress(), service);
+                break;
+        }
+
+        return object;
+    }
+
+    /**
+     * Get the smallest prefix block covering a network, if the network contains the queried address or prefix
+     *
+     * @return Prefix block in CIDR notation, or null if the network is invalid or does not contain the handle
+     */
+    private static String getCoveringBlock (String startAddress, String endAddress, String handle) {
+        if (startAddress == null || endAddress == null) return null;
+
+        IPAddress start = new IPAddressString(startAddress).getAddress();
+        IPAddress end = new IPAddressString(endAddress).getAddress();
+        IPAddress queried = new IPAddressString(handle).getAddress();
+        if (start == null || end == null || queried == null || start.isIPv4() != end.isIPv4() || start.isIPv4() != queried.isIPv4()) return null;
+        if (start.getValue().compareTo(end.getValue()) > 0) return null;
+
+        if (queried.isPrefixed()) queried = queried.toPrefixBlock();
+        if (queried.getLower().getValue().compareTo(start.getValue()) < 0 || queried.getUpper().getValue().compareTo(end.getValue()) > 0) return null;
+
+        return start.coverWithPrefixBlock(end).toPrefixLengthString();
+    }
+
+    ObjectClass deserialize (ObjectType type, InputStream json) throws IOException {
+        switch (type) {
             case ASN:
-                return mapper.readValue(json, AutnumObjectClass.class);
+                return autnumReader.readValue(json);
 
             case DOMAIN:
-                return mapper.readValue(json, DomainObjectClass.class);
+                return domainReader.readValue(json);
 
             case ENTITY:
-                return mapper.readValue(json, EntityObjectClass.class);
+                return entityReader.readValue(json);
 
             case IPv4:
             case IPv6:
-                return mapper.readValue(json, IPNetworkObjectClass.class);
+                return ipNetworkReader.readValue(json);
         }
 
         // This will never happen as objectReference.getType will throw an exception if no type is known
         return null;
     }
 
+    /**
+     * Send the query for an object. Bootstrapped services are tried in the order of the service selector, failing over
+     * to the next URL of the service on connection errors, timeouts and server errors. With a query or request timeout,
+     * retry policy or hedging, the query is sent like {@link #getAsync(ObjectReference, Route, Referral)} and the
+     * calling thread waits for it.
+     */
+    private Response get (ObjectReference objectReference, Route route, Referral referral) throws RDAPException, JsonProcessingException {
+        if (route.timeout != null || requestTimeout != null || retryPolicy != null || hedgePercentile > 0) return await(getAsync(objectReference, route, referral));
+
+        List<WebTarget> services = route.services;
+        ProcessingException failure = null;
+
+        for (int i = 0; i < services.size(); i++) {
+            WebTarget service = services.get(i);
+
+            try {
+                Referral attempt = referral.attempt();
+                Response response = request(service.getUri().toString(), objectReference.getObjectURL(service), attempt, 0);
+
+                if (response.getStatus() >= 500) {
+                    // The last URL's response is returned as is, there is nothing left to fail over to
+                    if (i == services.size() - 1) return response;
+                    response.close();
+                    continue;
+                }
+
+                return referral.adopt(attempt, response);
+            } catch (ProcessingException e) {
+                failure = e;
+            }
+        }
+
+        throw failure;
+    }
+
+    /**
+     * Send the query for an object asynchronously, failing over like {@link #get(ObjectReference, Route, Referral)}. If
+     * the whole service fails, the query is retried according to the retry policy. With a query timeout, the query
+     * fails with a {@link ProcessingException} caused by a {@link TimeoutException} once its deadline passed, and no
+     * further attempts are started.
+     */
+    private CompletableFuture<Response> getAsync (ObjectReference objectReference, Route route, Referral referral) {
+        CompletableFuture<Response> request = getAsync(objectReference, route, referral, 0).toCompletableFuture();
+        if (route.timeout == null) return request;
+
+        return withDeadline(request, route.remaining(), () -> "No response for " + route.key + " within " + route.timeout.toMillis() + " ms");
+    }
+
+    private CompletionStage<Response> getAsync (ObjectReference objectReference, Route route, Referral referral, int retries) {
+        RetryPolicy policy = retryPolicy;
+
+        return failover(objectReference, route, ConcurrentHashMap.newKeySet(), referral, 0).handle((response, error) -> {
+            Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+            boolean failed = cause instanceof ProcessingException || (cause == null && response.getStatus() >= 500);
+            long delay = failed && policy != null ? policy.getBackoff(retries) : 0;
+
+            // A retry that could only start after the deadline would be cut off anyway
+            if (!failed || policy == null || retries >= policy.getMaxRetries() || delay >= route.remaining()) return cause == null ? CompletableFuture.completedFuture(response) : CompletableFuture.<Response>failedFuture(cause);
+            if (response != null) response.close();
+
+            Executor backoff = CompletableFuture.delayedExecutor(delay, TimeUnit.NANOSECONDS, executor);
+            return CompletableFuture.supplyAsync(() -> getAsync(objectReference, route, referral, retries + 1), backoff).thenCompose(Function.identity());
+        }).thenCompose(Function.identity());
+    }
+
+    /**
+     * Send the query for an object to the service URL at the given index, failing over to the next URL that did not
+     * already receive a hedged copy of the query in this round
+     */
+    private CompletionStage<Response> failover (ObjectReference objectReference, Route route, Set<String> hedged, Referral referral, int i) {
+        List<WebTarget> services = route.services;
+
+        CompletionStage<Response> request;
+        try {
+            request = hedge(objectReference, services, hedged, referral, i);
+        } catch (UnknownObjectTypeException e) {
+            request = CompletableFuture.failedFuture(e);
+        }
+
+        return request.handle((response, error) -> {
+            Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+
+            if (cause == null && response.getStatus() < 500) return CompletableFuture.completedFuture(response);
+            if (cause != null && !(cause instanceof ProcessingException)) return CompletableFuture.<Response>failedFuture(cause);
+
+            int next = i + 1;
+            while (next < services.size() && hedged.contains(services.get(next).getUri().toString())) next++;
+
+            // The last URL's outcome is returned as is, there is nothing left to fail over to or no time left
+            if (next == services.size() || route.remaining() <= 0) return cause == null ? CompletableFuture.completedFuture(response) : CompletableFuture.<Response>failedFuture(cause);
+            if (response != null) response.close();
+
+            return failover(objectReference, route, hedged, referral, next);
+        }).thenCompose(Function.identity());
+    }
+
+    /**
+     * Send the query for an object to a service. If hedging is enabled and the service takes longer than the hedge
+     * percentile of its recent latencies, the query is sent a second time, to the next URL of the service if there is
+     * one, and the first successful response is used. The URL the hedged copy was sent to is added to the hedged URLs,
+     * so failover does not send the query there again. Each copy follows its redirects on its own, and only the server
+     * the successful response came from is remembered.
+     */
+    private CompletionStage<Response> hedge (ObjectReference objectReference, List<WebTarget> services, Set<String> hedged, Referral referral, int i) throws UnknownObjectTypeException {
+        WebTarget service = services.get(i);
+        String url = service.getUri().toString();
+        Referral primaryAttempt = referral.attempt();
+        CompletionStage<Response> primary = requestAsync(url, objectReference.getObjectURL(service), primaryAttempt, 0, 0);
+
+        double percentile = hedgePercentile;
+        long delay = percentile > 0 ? serviceSelector.getLatencyPercentile(url, percentile) : -1;
+        if (delay < 0) return primary.thenApply(response -> referral.adopt(primaryAttempt, response));
+
+        WebTarget alternate = services.get(i + 1 < services.size() ? i + 1 : i);
+        WebTarget copy = objectReference.getObjectURL(alternate);
+        Referral hedgeAttempt = referral.attempt();
+        Race race = new Race();
+
+        primary.whenComplete(race::settlePrimary);
+        CompletableFuture.delayedExecutor(delay, TimeUnit.NANOSECONDS, executor).execute(() -> {
+            if (!race.startHedge()) return;
+
+            hedged.add(alternate.getUri().toString());
+            requestAsync(alternate.getUri().toString(), copy, hedgeAttempt, 0, 0).whenComplete(race::settleHedge);
+        });
+
+        return race.result.thenApply(response -> referral.adopt(race.hedgeWon ? hedgeAttempt : primaryAttempt, response));
+    }
+
+    /**
+     * Send a request to a service URL once the rate limiter allows it, sending it again after the server's pause if it
+     * answers with 429 Too Many Requests, and following redirects
+     */
+    private Response request (String serviceURL, WebTarget target, Referral referral, int hops) throws RDAPException {
+        RateLimiter limiter = rateLimiter;
+        if (limiter == null) return follow(serviceURL, target, fetch(serviceURL, target), referral, hops);
+
+        for (int retries = 0; ; retries++) {
+            waitForTurn(limiter, serviceURL);
+            Response response = fetch(serviceURL, target);
+
+            if (response.getStatus() != 429) {
+                limiter.recordSuccess(serviceURL);
+                return follow(serviceURL, target, response, referral, hops);
+            }
+
+            limiter.backOff(serviceURL, RateLimiter.retryAfter(response));
+
+            // The last response is returned as is, reading it reports the rate limit to the caller
+            if (retries >= limiter.getMaxRetries()) return response;
+            response.close();
+        }
+    }
+
+    private static void waitForTurn (RateLimiter limiter, String serviceURL) throws RateLimitedException {
+        do {
+            long wait = limiter.acquire(serviceURL);
+            if (wait < 0) throw new RateLimitedException(Duration.ofNanos(limiter.getDelay(serviceURL)));
+
+            try {
+                TimeUnit.NANOSECONDS.sleep(wait);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new ProcessingException(e);
+            }
+        } while (limiter.isPaused(serviceURL));
+    }
+
+    /**
+     * Send a request asynchronously like {@link #request(String, WebTarget, Referral, int)}. Waiting for the rate limiter
+     * does not block a thread, the request is sent from the executor of this client once it is its turn.
+     */
+    private CompletionStage<Response> requestAsync (String serviceURL, WebTarget target, Referral referral, int hops, int retries) {
+        RateLimiter limiter = rateLimiter;
+        if (limiter == null) return fetchAsync(serviceURL, target).thenCompose(response -> followAsync(serviceURL, target, response, referral, hops));
+
+        long wait = limiter.acquire(serviceURL);
+        if (wait < 0) return CompletableFuture.failedFuture(new RateLimitedException(Duration.ofNanos(limiter.getDelay(serviceURL))));
+
+        CompletableFuture<Void> turn = wait == 0 ? CompletableFuture.completedFuture(null) : CompletableFuture.runAsync(() -> {}, CompletableFuture.delayedExecutor(wait, TimeUnit.NANOSECONDS, executor));
+
+        return turn.thenCompose(ignored -> {
+            // The server asked to pause while this request was waiting for its turn
+            if (limiter.isPaused(serviceURL)) return requestAsync(serviceURL, target, referral, hops, retries);
+
+            return fetchAsync(serviceURL, target).thenCompose(response -> {
+                if (response.getStatus() != 429) {
+                    limiter.recordSuccess(serviceURL);
+                    return followAsync(serviceURL, target, response, referral, hops);
+                }
+
+                limiter.backOff(serviceURL, RateLimiter.retryAfter(response));
+
+                if (retries >= limiter.getMaxRetries()) return CompletableFuture.completedFuture(response);
+                response.close();
+
+                return requestAsync(serviceURL, target, referral, hops, retries + 1);
+            });
+        });
+    }
+
+    /**
+     * Follow a redirect to the server that is authoritative for an object, such as another RIR the resource was
+     * transferred to. Responses that are not redirects are returned as they are.
+     */
+    private Response follow (String serviceURL, WebTarget target, Response response, Referral referral, int hops) throws RDAPException {
+        URI location = getRedirect(target, response);
+        if (location == null) return response;
+
+        response.close();
+        if (hops >= maxRedirects) throw new TooManyRedirectsException(maxRedirects);
+        if (isDowngrade(target, location)) throw new InsecureRedirectException(location.toString());
+
+        String service = getRedirectService(serviceURL, target, location);
+        referral.service = service;
+
+        return request(service == null ? location.resolve("/").toString() : service, client.target(location), referral, hops + 1);
+    }
+
+    /**
+     * Follow a redirect asynchronously like {@link #follow(String, WebTarget, Response, Referral, int)}
+     */
+    private CompletionStage<Response> followAsync (String serviceURL, WebTarget target, Response response, Referral referral, int hops) {
+        URI location = getRedirect(target, response);
+        if (location == null) return CompletableFuture.completedFuture(response);
+
+        response.close();
+        if (hops >= maxRedirects) return CompletableFuture.failedFuture(new TooManyRedirectsException(maxRedirects));
+        if (isDowngrade(target, location)) return CompletableFuture.failedFuture(new InsecureRedirectException(location.toString()));
+
+        String service = getRedirectService(serviceURL, target, location);
+        referral.service = service;
+
+        return requestAsync(service == null ? location.resolve("/").toString() : service, client.target(location), referral, hops + 1, 0);
+    }
+
+    /**
+     * @return Absolute target of a redirect, or null if the response is not a redirect
+     */
+    private static URI getRedirect (WebTarget target, Response response) {
+        int status = response.getStatus();
+        if (status != 301 && status != 302 && status != 303 && status != 307 && status != 308) return null;
+
+        String location = response.getHeaderString(HttpHeaders.LOCATION);
+        if (location == null) return null;
+
+        try {
+            return target.getUri().resolve(location.trim());
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    /**
+     * @return Whether a redirect leads from HTTPS to plain HTTP
+     */
+    private static boolean isDowngrade (WebTarget target, URI location) {
+        return "https".equalsIgnoreCase(target.getUri().getScheme()) && !"https".equalsIgnoreCase(location.getScheme());
+    }
+
+    /**
+     * Determine the service URL of the server a query was redirected to, by removing the path of the object from the
+     * URL it was redirected to
+     *
+     * @return Service URL, or null if the redirect did not keep the path of the object
+     */
+    private static String getRedirectService (String serviceURL, WebTarget target, URI location) {
+        String objectURL = target.getUri().toString();
+        if (!objectURL.startsWith(serviceURL) || objectURL.length() == serviceURL.length()) return null;
+
+        String objectPath = objectURL.substring(serviceURL.length());
+        String redirected = location.toString();
+        if (!redirected.endsWith(objectPath)) return null;
+
+        return redirected.substring(0, redirected.length() - objectPath.length());
+    }
+
+    /**
+     * Send a single request, recording its latency or failure with the service selector
+     */
+    private Response fetch (String serviceURL, WebTarget target) {
+        long start = System.nanoTime();
+
+        try {
+            Response response = target.request().get();
+
+            if (response.getStatus() >= 500) serviceSelector.recordFailure(serviceURL);
+            else serviceSelector.recordSuccess(serviceURL, System.nanoTime() - start);
+
+            return response;
+        } catch (ProcessingException e) {
+            serviceSelector.recordFailure(serviceURL);
+            throw e;
+        }
+    }
+
+    /**
+     * Send a single request asynchronously like {@link #fetch(String, WebTarget)}. Requests that take longer than the
+     * request timeout fail with a {@link ProcessingException} caused by a {@link TimeoutException}, and their response
+     * is closed once it arrives.
+     */
+    private CompletableFuture<Response> fetchAsync (String serviceURL, WebTarget target) {
+        long start = System.nanoTime();
+        Duration timeout = requestTimeout;
+
+        CompletableFuture<Response> request;
+        try {
+            request = send(target);
+        } catch (ProcessingException e) {
+            request = CompletableFuture.failedFuture(e);
+        }
+
+        if (timeout != null) request = withDeadline(request, timeout.toNanos(), () -> "No response from " + serviceURL + " within " + timeout.toMillis() + " ms");
+
+        return request.whenComplete((response, error) -> {
+            Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+
+            if (cause == null && response.getStatus() < 500) serviceSelector.recordSuccess(serviceURL, System.nanoTime() - start);
+            else if (cause == null || cause instanceof ProcessingException) serviceSelector.recordFailure(serviceURL);
+        });
+    }
+
+    /**
+     * Fail a request with a {@link ProcessingException} caused by a {@link TimeoutException} if it takes longer than the
+     * given time. The response of a late request is closed once it arrives.
+     */
+    private CompletableFuture<Response> withDeadline (CompletableFuture<Response> request, long nanos, Supplier<String> message) {
+        CompletableFuture<Response> deadline = new CompletableFuture<>();
+
+        request.whenComplete((response, error) -> {
+            if (error != null) deadline.completeExceptionally(error);
+            else if (!deadline.complete(response)) response.close();
+        });
+        CompletableFuture.delayedExecutor(Math.max(nanos, 0), TimeUnit.NANOSECONDS, executor).execute(() ->
+                deadline.completeExceptionally(new ProcessingException(new TimeoutException(message.get()))));
+
+        return deadline;
+    }
+
+    /**
+     * Send a request with the asynchronous invoker. Unlike the reactive invoker, which may block a thread per request
+     * depending on the implementation, the callback lets the HTTP client complete the request from its I/O threads.
+     */
+    private static CompletableFuture<Response> send (WebTarget target) {
+        CompletableFuture<Response> future = new CompletableFuture<>();
+
+        target.request().async().get(new InvocationCallback<Response>() {
+            @Override
+            public void completed (Response response) {
+                future.complete(response);
+            }
+
+            @Override
+            public void failed (Throwable throwable) {
+                future.completeExceptionally(throwable);
+            }
+        });
+
+        return future;
+    }
+
+    /**
+     * Limit the size of response bodies. Larger responses are rejected with a {@link ResponseTooLargeException} as soon
+     * as the limit is reached, without reading the rest of the body.
+     *
+     * @param maxResponseSize Maximum size of a response body in bytes, or -1 for no limit
+     */
+    public void setMaxResponseSize (long maxResponseSize) {
+        this.maxResponseSize = maxResponseSize;
+    }
+
+    /**
+     * Get the maximum size of response bodies
+     *
+     * @return Maximum size of a response body in bytes, or -1 for no limit
+     */
+    public long getMaxResponseSize () {
+        return maxResponseSize;
+    }
+
+    /**
+     * Set the executor asynchronous queries resolve bootstrap data and deserialize responses on. By default, a new
+     * virtual thread is used for each task if {@link VirtualThreads} are enabled, and a shared pool of daemon threads
+     * otherwise.
+     *
+     * @param executor Executor for asynchronous queries
+     */
+    public void setExecutor (Executor executor) {
+        this.executor = executor;
+    }
+
+    /**
+     * Get the executor asynchronous queries run on
+     *
+     * @return Executor for asynchronous queries
+     */
+    public Executor getExecutor () {
+        return executor;
+    }
+
+    /**
+     * Set how many queries of a batch are sent to the same server at a time
+     *
+     * @param maxConcurrentQueriesPerServer Maximum number of concurrent queries per server
+     */
+    public void setMaxConcurrentQueriesPerServer (int maxConcurrentQueriesPerServer) {
+        if (maxConcurrentQueriesPerServer < 1) throw new IllegalArgumentException("At least one query per server must be allowed");
+        this.maxConcurrentQueriesPerServer = maxConcurrentQueriesPerServer;
+    }
+
+    /**
+     * Get how many queries of a batch are sent to the same server at a time
+     *
+     * @return Maximum number of concurrent queries per server
+     */
+    public int getMaxConcurrentQueriesPerServer () {
+        return maxConcurrentQueriesPerServer;
+    }
+
+    /**
+     * Cache responses in memory. Queries for objects with a fresh cached response are answered without a request.
+     *
+     * @param responseCache Response cache, or null to disable caching
+     */
+    public void setResponseCache (ResponseCache responseCache) {
+        this.responseCache = responseCache;
+    }
+
+    /**
+     * Get the response cache of this client
+     *
+     * @return Response cache, or null if responses are not cached
+     */
+    public ResponseCache getResponseCache () {
+        return responseCache;
+    }
+
+    /**
+     * Remember objects that do not exist. Queries for objects the responsible server answered with 404 Not Found, or
+     * that no bootstrap registry entry is responsible for, fail right away while the miss is remembered.
+     *
+     * @param negativeCache Negative cache, or null to disable it
+     */
+    public void setNegativeCache (NegativeCache negativeCache) {
+        this.negativeCache = negativeCache;
+    }
+
+    /**
+     * Get the negative cache of this client
+     *
+     * @return Negative cache, or null if misses are not remembered
+     */
+    public NegativeCache getNegativeCache () {
+        return negativeCache;
+    }
+
+    /**
+     * Cache IP network responses by the address range they cover. Queries for any address within a cached network are
+     * answered without a request.
+     *
+     * @param networkCache Network cache, or null to disable it
+     */
+    public void setNetworkCache (IPNetworkCache networkCache) {
+        this.networkCache = networkCache;
+    }
+
+    /**
+     * Get the network cache of this client
+     *
+     * @return Network cache, or null if networks are not cached by range
+     */
+    public IPNetworkCache getNetworkCache () {
+        return networkCache;
+    }
+
+    /**
+     * Cache autnum responses by the range of AS numbers they cover. Queries for any AS number within a cached block are
+     * answered without a request.
+     *
+     * @param autnumCache Autnum cache, or null to disable it
+     */
+    public void setAutnumCache (AutnumCache autnumCache) {
+        this.autnumCache = autnumCache;
+    }
+
+    /**
+     * Get the autnum cache of this client
+     *
+     * @return Autnum cache, or null if autnums are not cached by range
+     */
+    public AutnumCache getAutnumCache () {
+        return autnumCache;
+    }
+
+    /**
+     * Limit the rate of requests to each service URL and pause requests to service URLs that answer with 429 Too Many
+     * Requests, honoring their Retry-After header. Queries that would have to wait longer than the maximum wait of the
+     * limiter fail with a {@link RateLimitedException} without sending a request. A limiter can be shared by several
+     * clients.
+     *
+     * @param rateLimiter Rate limiter, or null to send requests without limits
+     */
+    public void setRateLimiter (RateLimiter rateLimiter) {
+        this.rateLimiter = rateLimiter;
+    }
+
+    /**
+     * Get the rate limiter of this client
+     *
+     * @return Rate limiter, or null if requests are not limited
+     */
+    public RateLimiter getRateLimiter () {
+        return rateLimiter;
+    }
+
+    /**
+     * Set a deadline for each request. Requests that take longer count as failed, so the query fails over to the next
+     * URL of the service or is retried like after a connection error. The response of a late request is discarded.
+     * <p>
+     * This limits each attempt on its own. With failover, retries and redirects, a query can make several attempts, so
+     * use {@link #setQueryTimeout(Duration)} to limit how long a query may take as a whole.
+     *
+     * @param requestTimeout Maximum time to wait for the response of a single request, or null to wait indefinitely
+     */
+    public void setRequestTimeout (Duration requestTimeout) {
+        this.requestTimeout = requestTimeout;
+    }
+
+    public Duration getRequestTimeout () {
+        return requestTimeout;
+    }
+
+    /**
+     * Set a deadline for each query as a whole, including failover, retries, redirects and waiting for the rate limiter.
+     * Once it passes, the query fails with a {@link ProcessingException} caused by a {@link TimeoutException}, and no
+     * further attempts are started. Queries waiting for an identical query in flight wait for that query instead.
+     *
+     * @param queryTimeout Maximum time a query may take, or null for no limit
+     */
+    public void setQueryTimeout (Duration queryTimeout) {
+        this.queryTimeout = queryTimeout;
+    }
+
+    public Duration getQueryTimeout () {
+        return queryTimeout;
+    }
+
+    /**
+     * Retry queries whose service failed with connection errors, timeouts or server errors on all of its URLs
+     *
+     * @param retryPolicy Retry policy, or null to fail right away
+     */
+    public void setRetryPolicy (RetryPolicy retryPolicy) {
+        this.retryPolicy = retryPolicy;
+    }
+
+    public RetryPolicy getRetryPolicy () {
+        return retryPolicy;
+    }
+
+    /**
+     * Hedge slow requests. Once a request takes longer than the given percentile of the latencies recently observed for
+     * its service URL, the query is sent a second time, to the next URL of the service if there is one, and whichever
+     * response succeeds first is used. Service URLs with too few observations are not hedged.
+     *
+     * @param hedgePercentile Percentile between 0 and 1, such as 0.95, or 0 to disable hedging
+     */
+    public void setHedgePercentile (double hedgePercentile) {
+        if (hedgePercentile < 0 || hedgePercentile > 1) throw new IllegalArgumentException("The percentile must be between 0 and 1");
+        this.hedgePercentile = hedgePercentile;
+    }
+
+    public double getHedgePercentile () {
+        return hedgePercentile;
+    }
+
+    /**
+     * Limit the number of redirects followed for a query. Queries that are redirected more often fail with a
+     * {@link TooManyRedirectsException}.
+     *
+     * @param maxRedirects Maximum number of redirects, or 0 to fail on the first redirect
+     */
+    public void setMaxRedirects (int maxRedirects) {
+        this.maxRedirects = maxRedirects;
+    }
+
+    public int getMaxRedirects () {
+        return maxRedirects;
+    }
+
+    /**
+     * Set where the servers that redirected queries ended at are remembered. By default, each client remembers up to
+     * 10000 networks, AS number blocks and TLDs each for a day. Hints can be shared by several clients.
+     *
+     * @param serviceHints Service hints, or null to always start from the bootstrap registries
+     */
+    public void setServiceHints (ServiceHints serviceHints) {
+        this.serviceHints = serviceHints;
+    }
+
+    /**
+     * Get the service hints of this client
+     *
+     * @return Service hints, or null if redirects are not remembered
+     */
+    public ServiceHints getServiceHints () {
+        return serviceHints;
+    }
+
+    /**
+     * Resolve objects through a bootstrap index instead of the bootstrap registries. The index is a snapshot, so the
+     * registries are neither loaded nor refreshed while it is set.
+     *
+     * @param bootstrapIndex Opened bootstrap index, or null to use the bootstrap registries
+     */
+    public void setBootstrapIndex (BootstrapIndex bootstrapIndex) {
+        this.bootstrapIndex = bootstrapIndex;
+    }
+
+    /**
+     * Get the bootstrap index objects are resolved through
+     *
+     * @return Bootstrap index, or null if the bootstrap registries are used
+     */
+    public BootstrapIndex getBootstrapIndex () {
+        return bootstrapIndex;
+    }
+
+    /**
+     * Enable or disable coalescing of identical queries. While enabled, queries for an object that is already being
+     * queried wait for the query in flight and receive the same object, instead of sending their own request.
+     *
+     * @param coalescing Whether identical concurrent queries share one request
+     */
+    public void setCoalescing (boolean coalescing) {
+        this.coalescing = coalescing;
+    }
+
+    /**
+     * Check whether identical concurrent queries share one request
+     *
+     * @return Whether queries are coalesced
+     */
+    public boolean isCoalescing () {
+        return coalescing;
+    }
+
     public AutnumObjectClass queryAutnum (ObjectReference objectReference) throws RDAPException, JsonProcessingException {
         if (objectReference.getType() != ObjectType.ASN) throw new InvalidObjectTypeException();
 
@@ -140,4 +1386,183 @@ public class RDAPClient {
     public Client getClient() {
         return client;
     }
+
+    /**
+     * Get the mapper responses are deserialized with
+     *
+     * @return Object mapper of this client
+     */
+    public ObjectMapper getObjectMapper() {
+        return mapper;
+    }
+
+    /**
+     * Get the selector that orders the alternative URLs of bootstrapped services by observed latency and error rate
+     *
+     * @return Service selector of this client
+     */
+    public ServiceSelector getServiceSelector() {
+        return serviceSelector;
+    }
+
+    /**
+     * Services a query is sent to, in the order they are tried, the URLs of the bootstrap registry entry they were
+     * resolved from, the key of its response and its deadline
+     */
+    private static class Route {
+        private final List<WebTarget> services;
+        private final List<String> bootstrapServiceURLs;
+        private final String key;
+        private final long start;
+        private final Duration timeout;
+
+        Route (List<WebTarget> services, List<String> bootstrapServiceURLs, String key, long start, Duration timeout) {
+            this.services = services;
+            this.bootstrapServiceURLs = bootstrapServiceURLs;
+            this.key = key;
+            this.start = start;
+            this.timeout = timeout;
+        }
+
+        /**
+         * @return Nanoseconds until the deadline of the query, or Long.MAX_VALUE if it has none
+         */
+        long remaining () {
+            return timeout == null ? Long.MAX_VALUE : timeout.toNanos() - (System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * Server the redirects of a query ended at, so the client can remember it for the range of the object. Every request
+     * of a query follows its redirects with its own attempt, and the query takes over the server of the attempt whose
+     * response it uses.
+     */
+    private static class Referral {
+        private final ObjectReference objectReference;
+        private final Route route;
+        private volatile String service = null;
+
+        Referral (ObjectReference objectReference, Route route) {
+            this.objectReference = objectReference;
+            this.route = route;
+        }
+
+        Referral attempt () {
+            return new Referral(objectReference, route);
+        }
+
+        Response adopt (Referral attempt, Response response) {
+            service = attempt.service;
+            return response;
+        }
+    }
+
+    /**
+     * Outcome of a request and its hedged copy. The first successful response wins and the other one is closed. If
+     * both fail, the outcome of the first request is used, so failover continues as without hedging.
+     */
+    private static class Race {
+        private final CompletableFuture<Response> result = new CompletableFuture<>();
+        private boolean primaryDone = false;
+        private boolean hedgeStarted = false;
+        private boolean hedgeDone = false;
+        private volatile boolean hedgeWon = false;
+        private Response primaryResponse;
+        private Throwable primaryError;
+
+        /**
+         * @return Whether the hedged request still has to be sent
+         */
+        synchronized boolean startHedge () {
+            if (primaryDone) return false;
+
+            hedgeStarted = true;
+            return true;
+        }
+
+        synchronized void settlePrimary (Response response, Throwable error) {
+            primaryDone = true;
+
+            if (succeeded(response, error)) {
+                if (!result.complete(response)) response.close();
+            } else if (result.isDone()) {
+                if (response != null) response.close();
+            } else if (!hedgeStarted || hedgeDone) {
+                complete(response, error);
+            } else {
+                // Keep the failure until the hedged request finished
+                primaryResponse = response;
+                primaryError = error;
+            }
+        }
+
+        synchronized void settleHedge (Response response, Throwable error) {
+            hedgeDone = true;
+
+            if (succeeded(response, error)) {
+                hedgeWon = !result.isDone();
+                if (!result.complete(response)) response.close();
+                else if (primaryResponse != null) primaryResponse.close();
+                return;
+            }
+
+            if (response != null) response.close();
+            if (primaryDone && !result.isDone()) complete(primaryResponse, primaryError);
+        }
+
+        private void complete (Response response, Throwable error) {
+            if (error == null) result.complete(response);
+            else result.completeExceptionally(error instanceof CompletionException && error.getCause() != null ? error.getCause() : error);
+        }
+
+        private static boolean succeeded (Response response, Throwable error) {
+            return error == null && response.getStatus() < 500;
+        }
+    }
+
+    /**
+     * Fails reading once more than a given number of bytes was read
+     */
+    private static class LimitedInputStream extends FilterInputStream {
+        private final long limit;
+        private long remaining;
+        private boolean exceeded = false;
+
+        LimitedInputStream (InputStream in, long limit) {
+            super(in);
+            this.limit = limit;
+            this.remaining = limit;
+        }
+
+        @Override
+        public int read () throws IOException {
+            int b = super.read();
+            if (b != -1) count(1);
+            return b;
+        }
+
+        @Override
+        public int read (byte[] buffer, int offset, int length) throws IOException {
+            int read = super.read(buffer, offset, length);
+            if (read > 0) count(read);
+            return read;
+        }
+
+        @Override
+        public long skip (long n) throws IOException {
+            long skipped = super.skip(n);
+            count(skipped);
+            return skipped;
+        }
+
+        private void count (long bytes) throws IOException {
+            if (limit < 0) return;
+
+            remaining -= bytes;
+            if (remaining < 0) {
+                exceeded = true;
+                throw new IOException("Response body exceeds " + limit + " bytes");
+            }
+        }
+    }
 }
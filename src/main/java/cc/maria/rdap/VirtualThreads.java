@@ -0,0 +1,125 @@
+/*
+ * Copyright (c) 2023 Maria Merkel
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the license at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the license for the specific language governing permissions and
+ * limitations under the license.
+ */
+
+package cc.maria.rdap;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Configuration of the virtual thread execution mode.
+ * <p>
+ * On Java 21 and later, asynchronous queries, batch queries and background bootstrap revalidations can run each task on
+ * a new virtual thread instead of a pool of platform threads. Lookups mostly wait on the network, so this removes the
+ * size of the pool as a limit on concurrency. Blocking queries do not hold any monitors while waiting on the network,
+ * so they can also be called from virtual threads directly.
+ * <p>
+ * The mode is disabled by default and can be enabled with the system property
+ * {@code cc.maria.rdap.virtualThreads=true}. On older runtimes it has no effect and platform threads are used.
+ */
+public final class VirtualThreads {
+    private static final ThreadFactory virtualThreadFactory = virtualThreadFactory();
+    private static volatile boolean enabled = Boolean.getBoolean("cc.maria.rdap.virtualThreads");
+
+    private VirtualThreads () {}
+
+    /**
+     * Enable or disable the virtual thread execution mode. The mode applies to tasks started afterwards and to clients
+     * created afterwards.
+     *
+     * @param enabled Whether tasks run on virtual threads if the runtime supports them
+     */
+    public static void setEnabled (boolean enabled) {
+        VirtualThreads.enabled = enabled;
+    }
+
+    /**
+     * Check whether tasks run on virtual threads
+     *
+     * @return Whether the mode is enabled and supported by the runtime
+     */
+    public static boolean isEnabled () {
+        return enabled && virtualThreadFactory != null;
+    }
+
+    /**
+     * Check whether the runtime supports virtual threads
+     *
+     * @return Whether virtual threads are available
+     */
+    public static boolean isAvailable () {
+        return virtualThreadFactory != null;
+    }
+
+    /**
+     * Create an executor for library tasks. Each task runs on a new virtual thread while the mode is enabled, and on a
+     * pool of daemon platform threads otherwise.
+     *
+     * @param name Name of the threads
+     * @return Executor for tasks
+     */
+    public static Executor executor (String name) {
+        return new Executor() {
+            private volatile ExecutorService platformThreads = null;
+
+            @Override
+            public void execute (Runnable task) {
+                if (isEnabled()) {
+                    Thread thread = virtualThreadFactory.newThread(task);
+                    thread.setName(name);
+                    thread.start();
+                    return;
+                }
+
+                platformThreads().execute(task);
+            }
+
+            private ExecutorService platformThreads () {
+                if (platformThreads == null) {
+                    synchronized (this) {
+                        if (platformThreads == null) {
+                            platformThreads = Executors.newCachedThreadPool(runnable -> {
+                                Thread thread = new Thread(runnable, name);
+                                thread.setDaemon(true);
+                                return thread;
+                            });
+                        }
+                    }
+                }
+
+                return platformThreads;
+            }
+        };
+    }
+
+    /**
+     * Look up the factory of Thread.ofVirtual() reflectively, so the library still runs on Java 11
+     *
+     * @return Factory for virtual threads, or null if the runtime does not support them
+     */
+    private static ThreadFactory virtualThreadFactory () {
+        try {
+            Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            Method factory = Class.forName("java.lang.Thread$Builder").getMethod("factory");
+            return (ThreadFactory) factory.invoke(builder);
+        } catch (ReflectiveOperationException e) {
+            return null;
+        }
+    }
+}
@@ -17,19 +17,26 @@
 package cc.maria.rdap.bootstrap;
 
 import jakarta.ws.rs.client.Client;
-import org.json.JSONArray;
-import org.json.JSONObject;
 
 import java.io.IOException;
-import java.util.HashMap;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
 
 /**
  * RFC 9224-compliant wrapper around the IANA RDAP Bootstrap Service Registry for ASN allocations
  */
 public class ASNBootstrapRegistry {
-    private HashMap<String, String> asnRangeToServiceMap = new HashMap<>();
+    // Sorted by rangeStart, the ranges in the registry do not overlap
+    private final long[] rangeStart;
+    private final long[] rangeEnd;
+    private final int[] rangeService;
+    private final String[] services;
+    private final List<List<String>> serviceURLs;
 
-    private static HashMap<Client, ASNBootstrapRegistry> instances = new HashMap<>();
+    static final RegistryInstances<ASNBootstrapRegistry> instances = new RegistryInstances<>("asn.json", ASNBootstrapRegistry::new);
 
     /**
      * Get current instance of the wrapper
@@ -39,43 +46,68 @@ public class ASNBootstrapRegistry {
      * @return ASNBootstrapRegistry instance
      */
     public static ASNBootstrapRegistry getInstance (Client client) {
-        if (!instances.containsKey(client)) refresh(client);
-
         return instances.get(client);
     }
 
     /**
-     * Throw away the current instance and get a new one with updated bootstrap data
+     * Build a new instance from a bootstrap source, such as a mirror, a local directory or the classpath. The instance
+     * is independent of the instances returned by {@link #getInstance(Client)}.
+     *
+     * @param source Source to fetch asn.json from
+     *
+     * @return ASNBootstrapRegistry instance
+     * @throws IOException The bootstrap data could not be fetched
+     */
+    public static ASNBootstrapRegistry load (BootstrapSource source) throws IOException {
+        return instances.load(source);
+    }
+
+    /**
+     * Revalidate the bootstrap data and replace the current instance if the data changed
      *
      * @param client HTTP client for fetching bootstrap data
      *
      * @return ASNBootstrapRegistry instance
      */
     public static ASNBootstrapRegistry refresh (Client client) {
-        try {
-            instances.put(client, new ASNBootstrapRegistry(client));
-        } catch (IOException e) {
-            throw new RuntimeException(e);
-        }
-
-        return instances.get(client);
+        return instances.refresh(client);
     }
 
-    private ASNBootstrapRegistry(Client client) throws IOException {
-        this (client, "https://data.iana.org/rdap/asn.json");
-    }
+    ASNBootstrapRegistry(InputStream in) throws IOException {
+        ArrayList<List<String>> serviceList = new ArrayList<>();
+        ArrayList<long[]> ranges = new ArrayList<>();
 
-    private ASNBootstrapRegistry(Client client, String url) {
-        JSONObject json = new JSONObject(client.target(url).request().get().readEntity(String.class));
-        JSONArray services = json.getJSONArray("services");
+        BootstrapParser.parse(in, 2, entry -> {
+            serviceList.add(BootstrapParser.serviceURLs(entry[1]));
 
-        for (Object a : services) {
-            JSONArray array = (JSONArray) a;
+            for (String range : entry[0]) {
+                int separator = range.indexOf('-');
 
-            for (Object s : array.getJSONArray(0)) {
-                asnRangeToServiceMap.put((String) s, ((JSONArray) array.get(1)).getString(0));
+                // KPN and Roche have to be special and their ASNs are allocated to RIPE as single ASNs rather than blocks
+                if (separator == -1) {
+                    long asn = Long.parseLong(range.trim());
+                    ranges.add(new long[]{asn, asn, serviceList.size() - 1});
+                } else {
+                    ranges.add(new long[]{Long.parseLong(range.substring(0, separator).trim()), Long.parseLong(range.substring(separator + 1).trim()), serviceList.size() - 1});
+                }
             }
+        });
+
+        ranges.sort(Comparator.comparingLong(r -> r[0]));
+
+        rangeStart = new long[ranges.size()];
+        rangeEnd = new long[ranges.size()];
+        rangeService = new int[ranges.size()];
+
+        for (int i = 0; i < ranges.size(); i++) {
+            rangeStart[i] = ranges.get(i)[0];
+            rangeEnd[i] = ranges.get(i)[1];
+            rangeService[i] = (int) ranges.get(i)[2];
         }
+
+        serviceURLs = List.copyOf(serviceList);
+        services = new String[serviceURLs.size()];
+        for (int i = 0; i < services.length; i++) services[i] = serviceURLs.get(i).get(0);
     }
 
     /**
@@ -85,7 +117,7 @@ public class ASNBootstrapRegistry {
      * @return RDAP service URL
      */
     public String getServiceURLForASN (String asn) {
-        return getServiceURLForASN(Integer.parseInt(asn));
+        return getServiceURLForASN(Long.parseLong(asn));
     }
 
     /**
@@ -95,20 +127,60 @@ public class ASNBootstrapRegistry {
      * @return RDAP service URL
      */
     public String getServiceURLForASN (Integer asn) {
-        for (String range : asnRangeToServiceMap.keySet()) {
-            // KPN and Roche have to be special and their ASNs are allocated to RIPE as single ASNs rather than blocks
-            if (!range.contains("-")) {
-                if (Integer.parseInt(range) == asn) asnRangeToServiceMap.get(range);
-            } else {
-                int start = Integer.parseInt(range.split("-")[0]);
-                int end = Integer.parseInt(range.split("-")[1]);
-
-                if (asn >= start && asn <= end) {
-                    return asnRangeToServiceMap.get(range);
-                }
-            }
-        }
+        return getServiceURLForASN(asn.longValue());
+    }
+
+    /**
+     * Get the RDAP service URL for a given ASN. This lookup does not allocate.
+     *
+     * @param asn ASN to look up, including 32-bit ASNs above Integer.MAX_VALUE
+     * @return RDAP service URL
+     */
+    public String getServiceURLForASN (long asn) {
+        int service = lookup(asn);
+        return service == -1 ? null : services[service];
+    }
+
+    /**
+     * Get all RDAP service URLs for a given ASN, with HTTPS URLs first
+     *
+     * @param asn ASN to look up
+     * @return RDAP service URLs, or an empty list if no service is responsible
+     */
+    public List<String> getServiceURLsForASN (String asn) {
+        int service = lookup(Long.parseLong(asn));
+        return service == -1 ? List.of() : serviceURLs.get(service);
+    }
+
+    /**
+     * Get all RDAP service URLs for a block of ASNs, with HTTPS URLs first
+     *
+     * @param start First ASN of the block
+     * @param end Last ASN of the block
+     * @return RDAP service URLs, or an empty list if no single registry range contains the whole block
+     */
+    public List<String> getServiceURLsForASNs (long start, long end) {
+        int index = find(start);
+        if (index < 0 || end < start || end > rangeEnd[index]) return List.of();
+
+        return serviceURLs.get(rangeService[index]);
+    }
+
+    private int lookup (long asn) {
+        int index = find(asn);
+        return index < 0 ? -1 : rangeService[index];
+    }
+
+    /**
+     * @return Index of the range containing the ASN, or -1 if there is none
+     */
+    private int find (long asn) {
+        int index = Arrays.binarySearch(rangeStart, asn);
+
+        // No exact match on a range start, so check the range starting right before the ASN
+        if (index < 0) index = -index - 2;
+        if (index < 0 || asn > rangeEnd[index]) return -1;
 
-        return null;
+        return index;
     }
 }
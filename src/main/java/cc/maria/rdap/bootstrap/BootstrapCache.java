@@ -0,0 +1,59 @@
+/*
+ * Copyright (c) 2024 Maria Merkel
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the license at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the license for the specific language governing permissions and
+ * limitations under the license.
+ */
+
+package cc.maria.rdap.bootstrap;
+
+import java.nio.file.Path;
+
+/**
+ * Configuration of the on-disk cache for bootstrap registry files.
+ * <p>
+ * When a cache directory is set, the raw registry files downloaded from IANA are persisted there together with their
+ * ETag and Last-Modified validators. Later loads, including those in other processes, start from the persisted files
+ * immediately and revalidate them in the background with conditional requests. An unchanged registry then costs a
+ * single 304 response and is not parsed again.
+ * <p>
+ * The cache is disabled by default. It can also be enabled with the system property
+ * {@code cc.maria.rdap.bootstrap.cacheDirectory}.
+ */
+public final class BootstrapCache {
+    private static volatile Path directory = defaultDirectory();
+
+    private BootstrapCache () {}
+
+    /**
+     * Set the directory bootstrap registry files are persisted to. Registries that are already loaded are not affected.
+     *
+     * @param directory Cache directory, or null to disable the cache
+     */
+    public static void setDirectory (Path directory) {
+        BootstrapCache.directory = directory;
+    }
+
+    /**
+     * Get the directory bootstrap registry files are persisted to
+     *
+     * @return Cache directory, or null if the cache is disabled
+     */
+    public static Path getDirectory () {
+        return directory;
+    }
+
+    private static Path defaultDirectory () {
+        String property = System.getProperty("cc.maria.rdap.bootstrap.cacheDirectory");
+        return property == null || property.isEmpty() ? null : Path.of(property);
+    }
+}
@@ -0,0 +1,200 @@
+/*
+ * Copyright (c) 2024 Maria Merkel
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the license at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the license for the specific language governing permissions and
+ * limitations under the license.
+ */
+
+package cc.maria.rdap.bootstrap;
+
+import cc.maria.rdap.http.Freshness;
+import jakarta.ws.rs.client.Client;
+import jakarta.ws.rs.client.Invocation;
+import jakarta.ws.rs.core.HttpHeaders;
+import jakarta.ws.rs.core.Response;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Properties;
+
+/**
+ * Raw contents of a bootstrap registry file together with the HTTP validators and freshness it was served with.
+ * <p>
+ * A {@link BootstrapSource} returns a file without a body if the version the caller already has is still current.
+ */
+public final class BootstrapFile {
+    private final byte[] body;
+    private final String etag;
+    private final String lastModified;
+    private final long expires;
+
+    /**
+     * @param body Contents of the file, or null if the file was not modified
+     * @param etag Entity tag of the file, or null
+     * @param lastModified Last modification date of the file as an HTTP date, or null
+     */
+    public BootstrapFile (byte[] body, String etag, String lastModified) {
+        this (body, etag, lastModified, 0);
+    }
+
+    /**
+     * @param body Contents of the file, or null if the file was not modified
+     * @param etag Entity tag of the file, or null
+     * @param lastModified Last modification date of the file as an HTTP date, or null
+     * @param expires Time until which the file does not need to be revalidated as epoch milliseconds, or 0
+     */
+    public BootstrapFile (byte[] body, String etag, String lastModified, long expires) {
+        this.body = body;
+        this.etag = etag;
+        this.lastModified = lastModified;
+        this.expires = expires;
+    }
+
+    /**
+     * @return Contents of the file, or null if the file was not modified since it was last fetched
+     */
+    public byte[] getBody () {
+        return body;
+    }
+
+    /**
+     * @return Entity tag of the file, or null
+     */
+    public String getETag () {
+        return etag;
+    }
+
+    /**
+     * @return Last modification date of the file, or null
+     */
+    public String getLastModified () {
+        return lastModified;
+    }
+
+    /**
+     * Check whether the file is still fresh according to the Cache-Control or Expires header it was served with
+     *
+     * @return Whether the file does not need to be revalidated yet
+     */
+    public boolean isFresh () {
+        return System.currentTimeMillis() < expires;
+    }
+
+    /**
+     * Drop the body and keep only the validators, to remember which version of a file is loaded without keeping its
+     * contents in memory
+     *
+     * @return Validators of this file
+     */
+    BootstrapFile validators () {
+        return new BootstrapFile(null, etag, lastModified, expires);
+    }
+
+    /**
+     * Download a bootstrap registry file, revalidating a previously downloaded version if there is one
+     *
+     * @param client HTTP client to download the file with
+     * @param url URL of the file
+     * @param cached Validators of the previously downloaded version, or null
+     * @return The downloaded file, or a file without a body carrying the updated validators if the previously
+     * downloaded version is still current
+     * @throws IOException The server did not return the file
+     */
+    static BootstrapFile download (Client client, String url, BootstrapFile cached) throws IOException {
+        Invocation.Builder request = client.target(url).request();
+
+        if (cached != null && cached.etag != null) request.header(HttpHeaders.IF_NONE_MATCH, cached.etag);
+        if (cached != null && cached.lastModified != null) request.header(HttpHeaders.IF_MODIFIED_SINCE, cached.lastModified);
+
+        Response response = request.get();
+        try {
+            if (response.getStatus() == 304 && cached != null) {
+                String etag = response.getHeaderString(HttpHeaders.ETAG);
+                return new BootstrapFile(null, etag == null ? cached.etag : etag, cached.lastModified, Freshness.expires(response, 0));
+            }
+
+            if (response.getStatus() != 200) throw new IOException("Unexpected status " + response.getStatus() + " for " + url);
+
+            return new BootstrapFile(response.readEntity(byte[].class), response.getHeaderString(HttpHeaders.ETAG), response.getHeaderString(HttpHeaders.LAST_MODIFIED), Freshness.expires(response, 0));
+        } finally {
+            response.close();
+        }
+    }
+
+    /**
+     * Read a persisted bootstrap registry file
+     *
+     * @param directory Cache directory
+     * @param name File name, such as dns.json
+     * @return The persisted file, or null if there is none
+     * @throws IOException The file exists but could not be read
+     */
+    static BootstrapFile read (Path directory, String name) throws IOException {
+        byte[] body;
+        try {
+            body = Files.readAllBytes(directory.resolve(name));
+        } catch (NoSuchFileException e) {
+            return null;
+        }
+
+        Properties validators = new Properties();
+        try (InputStream in = Files.newInputStream(directory.resolve(name + ".properties"))) {
+            validators.load(in);
+        } catch (NoSuchFileException ignored) {}
+
+        return new BootstrapFile(body, validators.getProperty("etag"), validators.getProperty("lastModified"), Long.parseLong(validators.getProperty("expires", "0")));
+    }
+
+    /**
+     * Persist this bootstrap registry file. Both the file and its validators are replaced atomically, so concurrent
+     * readers in other processes never see a partially written file.
+     *
+     * @param directory Cache directory
+     * @param name File name, such as dns.json
+     * @throws IOException The file could not be written
+     */
+    void write (Path directory, String name) throws IOException {
+        Files.createDirectories(directory);
+
+        Path bodyFile = Files.createTempFile(directory, name, ".tmp");
+        Files.write(bodyFile, body);
+        Files.move(bodyFile, directory.resolve(name), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+        writeValidators(directory, name);
+    }
+
+    /**
+     * Persist only the validators and freshness of this file, after the server confirmed that the persisted file is
+     * still current. The validators are replaced atomically, the persisted file is left as is.
+     *
+     * @param directory Cache directory
+     * @param name File name, such as dns.json
+     * @throws IOException The validators could not be written
+     */
+    void writeValidators (Path directory, String name) throws IOException {
+        Properties validators = new Properties();
+        if (etag != null) validators.setProperty("etag", etag);
+        if (lastModified != null) validators.setProperty("lastModified", lastModified);
+        validators.setProperty("expires", Long.toString(expires));
+
+        Path validatorFile = Files.createTempFile(directory, name, ".tmp");
+        try (OutputStream out = Files.newOutputStream(validatorFile)) {
+            validators.store(out, null);
+        }
+        Files.move(validatorFile, directory.resolve(name + ".properties"), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+}
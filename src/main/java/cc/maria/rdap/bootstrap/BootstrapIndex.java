@@ -0,0 +1,419 @@
+/*
+ * Copyright (c) 2024 Maria Merkel
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the license at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the license for the specific language governing permissions and
+ * limitations under the license.
+ */
+package cc.maria.rdap.bootstrap;
+
+import inet.ipaddr.IPAddress;
+import inet.ipaddr.IPAddressString;
+import jakarta.ws.rs.client.Client;
+import jakarta.ws.rs.client.ClientBuilder;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+import static cc.maria.rdap.bootstrap.BootstrapIndexCompiler.*;
+
+/**
+ * Read-only index of all five bootstrap registries in a single compact binary file.
+ * <p>
+ * The file is opened with {@link FileChannel#map}, so every process on a host that opens the same index shares one copy
+ * of it in the page cache instead of holding its own registries on the heap, and opening it does not parse anything.
+ * Lookups are binary searches directly on the mapped bytes. Only the service URLs that are actually returned are
+ * decoded, once each.
+ * <p>
+ * A client resolves objects through an index instead of the bootstrap registries once it is passed to
+ * {@link cc.maria.rdap.RDAPClient#setBootstrapIndex(BootstrapIndex)}.
+ * <p>
+ * The index is a snapshot and is not refreshed. To update it, compile a new file with {@link #compile(BootstrapSource,
+ * Path)} and open it again. Replacing the file is atomic, so processes that still have the old file mapped are not
+ * affected.
+ */
+public final class BootstrapIndex {
+    private static final int IPV4 = 0;
+    private static final int IPV6 = 1;
+    private static final int ASN = 2;
+    private static final int DOMAIN = 3;
+    private static final int ENTITY = 4;
+
+    private final ByteBuffer buffer;
+    private final int stringTable;
+    private final int stringData;
+    private final int serviceTable;
+    private final int[] offsets = new int[5];
+    private final int[] counts = new int[5];
+
+    // Decoded strings and service URL lists, filled on first use. Both are immutable, so racing threads at most decode
+    // one twice.
+    private final String[] decoded;
+    private final List<?>[] services;
+
+    BootstrapIndex (ByteBuffer buffer) throws IOException {
+        if (buffer.capacity() < HEADER_SIZE || buffer.getInt(0) != MAGIC) throw new IOException("Not a bootstrap index");
+        if (buffer.getInt(4) != VERSION) throw new IOException("Unsupported bootstrap index version " + buffer.getInt(4));
+
+        this.buffer = buffer;
+        decoded = new String[buffer.getInt(8)];
+        stringTable = buffer.getInt(12);
+        stringData = buffer.getInt(16);
+        services = new List<?>[buffer.getInt(80)];
+        serviceTable = buffer.getInt(84);
+
+        for (int i = 0; i < 5; i++) {
+            offsets[i] = buffer.getInt(20 + i * 8);
+            counts[i] = buffer.getInt(24 + i * 8);
+        }
+    }
+
+    /**
+     * Map an index file into memory
+     *
+     * @param file Index file
+     * @return Index backed by the mapped file
+     * @throws IOException The file could not be mapped or is not an index
+     */
+    public static BootstrapIndex open (Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            // The mapping stays valid after the channel is closed
+            return new BootstrapIndex(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    /**
+     * Compile the registries of a bootstrap source into an index file. The file is replaced atomically.
+     *
+     * @param source Source to fetch the five registry files from
+     * @param file Index file to write
+     * @throws IOException The registries could not be fetched or the file could not be written
+     */
+    public static void compile (BootstrapSource source, Path file) throws IOException {
+        byte[] index = new BootstrapIndexCompiler().compile(source);
+
+        Path directory = file.toAbsolutePath().getParent();
+        Path temp = Files.createTempFile(directory, file.getFileName().toString(), ".tmp");
+        Files.write(temp, index);
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Compile an index file from the command line
+     * <p>
+     * Usage: {@code BootstrapIndex <index file> [registry directory or base URL]}. Without a source, the registries are
+     * downloaded from the default base URL of {@link HTTPBootstrapSource}.
+     *
+     * @param args Command line arguments
+     * @throws IOException The index could not be compiled
+     */
+    public static void main (String[] args) throws IOException {
+        if (args.length < 1 || args.length > 2) {
+            System.err.println("Usage: BootstrapIndex <index file> [registry directory or base URL]");
+            System.exit(2);
+        }
+
+        Client client = null;
+        BootstrapSource source;
+
+        if (args.length == 2 && !args[1].startsWith("http://") && !args[1].startsWith("https://")) {
+            source = new FileBootstrapSource(Path.of(args[1]));
+        } else {
+            client = ClientBuilder.newClient();
+            source = args.length == 2 ? new HTTPBootstrapSource(client, args[1]) : new HTTPBootstrapSource(client);
+        }
+
+        try {
+            compile(source, Path.of(args[0]));
+        } finally {
+            if (client != null) client.close();
+        }
+    }
+
+    /**
+     * Get the publication date of a registry the index was compiled from
+     *
+     * @param name File name of the registry, such as dns.json
+     * @return Publication date, or null if the registry has none
+     */
+    public String getPublication (String name) {
+        for (int i = 0; i < FILES.length; i++) {
+            if (FILES[i].equals(name)) return string(buffer.getInt(60 + i * 4));
+        }
+
+        throw new IllegalArgumentException("Unknown registry " + name);
+    }
+
+    /**
+     * Get the RDAP service URL for a given IPv4 or IPv6 address or subnet
+     *
+     * @param ip IP address or subnet to look up
+     * @return RDAP service URL
+     */
+    public String getServiceURLForIP (String ip) {
+        IPAddress address = new IPAddressString(ip).getAddress();
+        if (address == null) return null;
+
+        return first(lookupIP(address));
+    }
+
+    /**
+     * Get all RDAP service URLs for a given IPv4 or IPv6 address or subnet, with HTTPS URLs first
+     *
+     * @param ip IP address or subnet to look up
+     * @return RDAP service URLs, or an empty list if no service is responsible
+     */
+    public List<String> getServiceURLsForIP (String ip) {
+        IPAddress address = new IPAddressString(ip).getAddress();
+        return address == null ? List.of() : services(lookupIP(address));
+    }
+
+    private int lookupIP (IPAddress address) {
+        byte[] first = address.getLower().getBytes();
+        byte[] last = address.getUpper().getBytes();
+
+        if (address.isIPv4()) return lookup(IPV4, 0, Integer.toUnsignedLong(ByteBuffer.wrap(first).getInt()), 0, Integer.toUnsignedLong(ByteBuffer.wrap(last).getInt()));
+
+        ByteBuffer lower = ByteBuffer.wrap(first);
+        ByteBuffer upper = ByteBuffer.wrap(last);
+        return lookup(IPV6, lower.getLong(), lower.getLong(), upper.getLong(), upper.getLong());
+    }
+
+    /**
+     * Get the RDAP service URL for a given IPv4 address. This lookup does not allocate after the first call for a service.
+     *
+     * @param address IPv4 address as a 32-bit integer in network byte order
+     * @return RDAP service URL
+     */
+    public String getServiceURLForIP (int address) {
+        long value = Integer.toUnsignedLong(address);
+        return first(lookup(IPV4, 0, value, 0, value));
+    }
+
+    /**
+     * Get the RDAP service URL for a given IPv6 address. This lookup does not allocate after the first call for a service.
+     *
+     * @param high Upper 64 bits of the address
+     * @param low Lower 64 bits of the address
+     * @return RDAP service URL
+     */
+    public String getServiceURLForIP (long high, long low) {
+        return first(lookup(IPV6, high, low, high, low));
+    }
+
+    /**
+     * Get the RDAP service URL for a given ASN
+     *
+     * @param asn ASN to look up, between 0 and 4294967295
+     * @return RDAP service URL
+     */
+    public String getServiceURLForASN (long asn) {
+        return first(lookup(ASN, 0, asn, 0, asn));
+    }
+
+    /**
+     * Get all RDAP service URLs for a given ASN, with HTTPS URLs first
+     *
+     * @param asn ASN to look up, between 0 and 4294967295
+     * @return RDAP service URLs, or an empty list if no service is responsible
+     */
+    public List<String> getServiceURLsForASN (long asn) {
+        return services(lookup(ASN, 0, asn, 0, asn));
+    }
+
+    /**
+     * Get all RDAP service URLs for a block of ASNs, with HTTPS URLs first
+     *
+     * @param start First ASN of the block
+     * @param end Last ASN of the block
+     * @return RDAP service URLs, or an empty list if no single registry entry contains the whole block
+     */
+    public List<String> getServiceURLsForASNs (long start, long end) {
+        return start > end ? List.of() : services(lookup(ASN, 0, start, 0, end));
+    }
+
+    /**
+     * Get the RDAP service URL for a given FQDN. The longest matching label wins, labels are matched case-insensitively
+     * and a trailing dot is ignored.
+     *
+     * @param fqdn FQDN to look up
+     * @return RDAP service URL
+     */
+    public String getServiceURLForFQDN (String fqdn) {
+        return first(lookupFQDN(fqdn));
+    }
+
+    /**
+     * Get all RDAP service URLs for a given FQDN, with HTTPS URLs first, matched like
+     * {@link #getServiceURLForFQDN(String)}
+     *
+     * @param fqdn FQDN to look up
+     * @return RDAP service URLs, or an empty list if no service is responsible
+     */
+    public List<String> getServiceURLsForFQDN (String fqdn) {
+        return services(lookupFQDN(fqdn));
+    }
+
+    private int lookupFQDN (String fqdn) {
+        int end = fqdn.endsWith(".") ? fqdn.length() - 1 : fqdn.length();
+        if (end == 0) return -1;
+
+        // Try every suffix that starts at a label boundary, longest first
+        int start = 0;
+        while (true) {
+            int service = find(DOMAIN, fqdn, start, end, true);
+            if (service != -1) return service;
+
+            int dot = fqdn.indexOf('.', start);
+            if (dot == -1 || dot >= end) return -1;
+            start = dot + 1;
+        }
+    }
+
+    /**
+     * Get the RDAP service URL for a given entity handle
+     *
+     * @param handle Handle to look up
+     * @return RDAP service URL
+     */
+    public String getServiceURLForHandle (String handle) {
+        return first(find(ENTITY, handle, handle.lastIndexOf('-') + 1, handle.length(), false));
+    }
+
+    /**
+     * Get all RDAP service URLs for a given entity handle, with HTTPS URLs first
+     *
+     * @param handle Handle to look up
+     * @return RDAP service URLs, or an empty list if no service is responsible
+     */
+    public List<String> getServiceURLsForHandle (String handle) {
+        return services(find(ENTITY, handle, handle.lastIndexOf('-') + 1, handle.length(), false));
+    }
+
+    /**
+     * Find the service of the most specific interval containing a range
+     */
+    private int lookup (int section, long firstHigh, long firstLow, long lastHigh, long lastLow) {
+        int base = offsets[section];
+        int low = 0;
+        int high = counts[section] - 1;
+        int candidate = -1;
+
+        // Last interval starting at or before the first address
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int record = base + mid * INTERVAL_SIZE;
+
+            if (compare(buffer.getLong(record), buffer.getLong(record + 8), firstHigh, firstLow) <= 0) {
+                candidate = mid;
+                low = mid + 1;
+            } else {
+                high = mid - 1;
+            }
+        }
+
+        // Intervals are nested, so the intervals containing the candidate are its ancestors
+        while (candidate != -1) {
+            int record = base + candidate * INTERVAL_SIZE;
+            if (compare(buffer.getLong(record + 16), buffer.getLong(record + 24), lastHigh, lastLow) >= 0) return buffer.getInt(record + 36);
+            candidate = buffer.getInt(record + 32);
+        }
+
+        return -1;
+    }
+
+    /**
+     * Find the service of a key matching a region of a string
+     */
+    private int find (int section, String string, int start, int end, boolean ignoreCase) {
+        int base = offsets[section];
+        int low = 0;
+        int high = counts[section] - 1;
+
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int record = base + mid * KEY_SIZE;
+            int comparison = compareKey(buffer.getInt(record), string, start, end, ignoreCase);
+
+            if (comparison == 0) return buffer.getInt(record + 4);
+            if (comparison < 0) low = mid + 1;
+            else high = mid - 1;
+        }
+
+        return -1;
+    }
+
+    /**
+     * Compare a key in the string pool to a region of a string without decoding the key. Keys are expected to be ASCII,
+     * any other character sorts after every ASCII character and does not match.
+     */
+    private int compareKey (int key, String string, int start, int end, boolean ignoreCase) {
+        int offset = stringData + buffer.getInt(stringTable + key * 8);
+        int length = buffer.getInt(stringTable + key * 8 + 4);
+        int regionLength = end - start;
+
+        for (int i = 0; i < length && i < regionLength; i++) {
+            int a = buffer.get(offset + i) & 0xFF;
+            int b = string.charAt(start + i);
+            if (ignoreCase && b >= 'A' && b <= 'Z') b += 'a' - 'A';
+            if (b > 0x7F) b = 0x100;
+
+            if (a != b) return a - b;
+        }
+
+        return length - regionLength;
+    }
+
+    private String first (int id) {
+        return id == -1 ? null : services(id).get(0);
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<String> services (int id) {
+        if (id == -1) return List.of();
+
+        List<String> list = (List<String>) services[id];
+        if (list == null) {
+            int data = serviceTable + services.length * 8 + buffer.getInt(serviceTable + id * 8);
+            String[] urls = new String[buffer.getInt(serviceTable + id * 8 + 4)];
+            for (int i = 0; i < urls.length; i++) urls[i] = string(buffer.getInt(data + i * 4));
+
+            list = List.of(urls);
+            services[id] = list;
+        }
+
+        return list;
+    }
+
+    private String string (int id) {
+        if (id == -1) return null;
+
+        String string = decoded[id];
+        if (string == null) {
+            byte[] bytes = new byte[buffer.getInt(stringTable + id * 8 + 4)];
+            ByteBuffer view = buffer.duplicate();
+            view.position(stringData + buffer.getInt(stringTable + id * 8));
+            view.get(bytes);
+
+            string = new String(bytes, StandardCharsets.UTF_8);
+            decoded[id] = string;
+        }
+
+        return string;
+    }
+}
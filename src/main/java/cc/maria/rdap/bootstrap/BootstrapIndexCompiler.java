@@ -0,0 +1,274 @@
+/*
+ * Copyright (c) 2024 Maria Merkel
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the license at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the license for the specific language governing permissions and
+ * limitations under the license.
+ */
+package cc.maria.rdap.bootstrap;
+
+import inet.ipaddr.IPAddress;
+import inet.ipaddr.IPAddressString;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+/**
+ * Compiles the five bootstrap registries into the binary format read by {@link BootstrapIndex}.
+ * <p>
+ * All integers are big-endian. The file starts with a header of {@value #HEADER_SIZE} bytes:
+ * <pre>
+ * int magic, int version
+ * int string count, int string table offset, int string data offset
+ * int offset, int count  for each section: IPv4, IPv6, ASN, domain, entity
+ * int publication        for each registry in the same order, a string id or -1
+ * int service count, int service table offset
+ * </pre>
+ * The IPv4, IPv6 and ASN sections hold intervals of {@value #INTERVAL_SIZE} bytes, sorted by start with less specific
+ * intervals before the more specific intervals they contain: {@code long startHigh, long startLow, long endHigh,
+ * long endLow, int parent, int service}. IPv4 addresses and ASNs are stored in the low word. The parent is the index of
+ * the innermost interval containing this one, or -1.
+ * <p>
+ * The domain and entity sections hold keys of {@value #KEY_SIZE} bytes, sorted by the UTF-8 bytes of the key:
+ * {@code int key, int service}. Domain labels are stored in lower case without a trailing dot.
+ * <p>
+ * The service of an interval or key is the id of the list of service URLs of its registry entry. The service table has
+ * an {@code int offset, int count} pair for each service into the service data that follows it, which holds the string
+ * id of each URL, HTTPS URLs first.
+ * <p>
+ * The string table has an {@code int offset, int length} pair for each string into the string data. Every list of
+ * service URLs, URL, key and publication date is stored once.
+ */
+class BootstrapIndexCompiler {
+    static final int MAGIC = 0x52444958;
+    static final int VERSION = 3;
+    static final int HEADER_SIZE = 88;
+    static final int INTERVAL_SIZE = 40;
+    static final int KEY_SIZE = 8;
+
+    static final String[] FILES = {"ipv4.json", "ipv6.json", "asn.json", "dns.json", "object-tags.json"};
+
+    private final LinkedHashMap<String, Integer> strings = new LinkedHashMap<>();
+    private final LinkedHashMap<List<String>, Integer> services = new LinkedHashMap<>();
+
+    /**
+     * Compile the registries of a bootstrap source
+     *
+     * @param source Source to fetch the five registry files from
+     * @return Contents of the index file
+     * @throws IOException A registry file could not be fetched or parsed
+     */
+    byte[] compile (BootstrapSource source) throws IOException {
+        byte[][] sections = new byte[5][];
+        int[] counts = new int[5];
+        int[] publications = new int[5];
+
+        for (int i = 0; i < FILES.length; i++) {
+            BootstrapFile file = source.fetch(FILES[i], null);
+            if (file.getBody() == null) throw new IOException("Source returned " + FILES[i] + " without contents");
+
+            List<long[]> intervals = new ArrayList<>();
+            TreeMap<byte[], Integer> keys = new TreeMap<>(Arrays::compareUnsigned);
+            int registry = i;
+
+            String publication = BootstrapParser.parse(new ByteArrayInputStream(file.getBody()), registry == 4 ? 3 : 2, entry -> {
+                if (registry == 4) {
+                    int service = service(BootstrapParser.serviceURLs(entry[2]));
+                    for (String tag : entry[1]) keys.putIfAbsent(tag.getBytes(StandardCharsets.UTF_8), service);
+                    return;
+                }
+
+                int service = service(BootstrapParser.serviceURLs(entry[1]));
+                for (String key : entry[0]) {
+                    if (registry == 3) keys.putIfAbsent(label(key).getBytes(StandardCharsets.UTF_8), service);
+                    else addInterval(intervals, registry, key, service);
+                }
+            });
+
+            publications[i] = publication == null ? -1 : intern(publication);
+            sections[i] = i < 3 ? intervals(intervals) : keys(keys);
+            counts[i] = i < 3 ? sections[i].length / INTERVAL_SIZE : keys.size();
+        }
+
+        ByteArrayOutputStream serviceTable = new ByteArrayOutputStream();
+        DataOutputStream serviceTableOut = new DataOutputStream(serviceTable);
+        ByteArrayOutputStream serviceData = new ByteArrayOutputStream();
+        DataOutputStream serviceDataOut = new DataOutputStream(serviceData);
+
+        for (List<String> serviceURLs : services.keySet()) {
+            serviceTableOut.writeInt(serviceData.size());
+            serviceTableOut.writeInt(serviceURLs.size());
+            for (String url : serviceURLs) serviceDataOut.writeInt(intern(url));
+        }
+
+        // The keys were interned while their sections were written, so the string data is complete only now
+        ByteArrayOutputStream data = new ByteArrayOutputStream();
+        ByteArrayOutputStream table = new ByteArrayOutputStream();
+        DataOutputStream tableOut = new DataOutputStream(table);
+
+        for (String string : strings.keySet()) {
+            byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+            tableOut.writeInt(data.size());
+            tableOut.writeInt(bytes.length);
+            data.write(bytes);
+        }
+
+        ByteArrayOutputStream file = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(file);
+        int offset = HEADER_SIZE;
+        int[] offsets = new int[5];
+
+        for (int i = 0; i < 5; i++) {
+            offsets[i] = offset;
+            offset = align(offset + sections[i].length);
+        }
+
+        int serviceOffset = offset;
+        int tableOffset = align(serviceOffset + serviceTable.size() + serviceData.size());
+        int dataOffset = tableOffset + table.size();
+
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        out.writeInt(strings.size());
+        out.writeInt(tableOffset);
+        out.writeInt(dataOffset);
+        for (int i = 0; i < 5; i++) {
+            out.writeInt(offsets[i]);
+            out.writeInt(counts[i]);
+        }
+        for (int publication : publications) out.writeInt(publication);
+        out.writeInt(services.size());
+        out.writeInt(serviceOffset);
+
+        for (byte[] section : sections) {
+            out.write(section);
+            while (file.size() % 8 != 0) out.writeByte(0);
+        }
+
+        serviceTable.writeTo(out);
+        serviceData.writeTo(out);
+        while (file.size() % 8 != 0) out.writeByte(0);
+
+        table.writeTo(out);
+        data.writeTo(out);
+
+        return file.toByteArray();
+    }
+
+    private int service (List<String> serviceURLs) {
+        return services.computeIfAbsent(serviceURLs, s -> services.size());
+    }
+
+    private int intern (String string) {
+        return strings.computeIfAbsent(string, s -> strings.size());
+    }
+
+    private void addInterval (List<long[]> intervals, int registry, String key, int service) {
+        if (registry == 2) {
+            int separator = key.indexOf('-');
+            long first = Long.parseLong((separator == -1 ? key : key.substring(0, separator)).trim());
+            long last = separator == -1 ? first : Long.parseLong(key.substring(separator + 1).trim());
+
+            intervals.add(new long[]{0, first, 0, last, service});
+            return;
+        }
+
+        IPAddress subnet = new IPAddressString(key).getAddress();
+        if (subnet == null || subnet.isIPv4() != (registry == 0)) return;
+
+        long[] first = words(subnet.getLower().getValue());
+        long[] last = words(subnet.toPrefixBlock().getUpper().getValue());
+        intervals.add(new long[]{first[0], first[1], last[0], last[1], service});
+    }
+
+    private static long[] words (BigInteger value) {
+        return new long[]{value.shiftRight(64).longValue(), value.longValue()};
+    }
+
+    /**
+     * Normalize a domain label the same way {@link BootstrapIndex} normalizes FQDNs
+     */
+    static String label (String label) {
+        label = label.toLowerCase(Locale.ROOT);
+        return label.endsWith(".") ? label.substring(0, label.length() - 1) : label;
+    }
+
+    private static byte[] intervals (List<long[]> intervals) throws IOException {
+        // Less specific intervals sort before the more specific intervals they contain, the sort is stable so the first
+        // of several identical intervals stays in front
+        intervals.sort((a, b) -> {
+            int start = compare(a[0], a[1], b[0], b[1]);
+            return start != 0 ? start : compare(b[2], b[3], a[2], a[3]);
+        });
+
+        List<long[]> unique = new ArrayList<>();
+        for (long[] interval : intervals) {
+            long[] previous = unique.isEmpty() ? null : unique.get(unique.size() - 1);
+
+            // Duplicate intervals are ignored, the first entry in the registry wins
+            if (previous != null && compare(previous[0], previous[1], interval[0], interval[1]) == 0 && compare(previous[2], previous[3], interval[2], interval[3]) == 0) continue;
+            unique.add(interval);
+        }
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        int[] stack = new int[unique.size()];
+        int depth = 0;
+
+        for (int i = 0; i < unique.size(); i++) {
+            long[] interval = unique.get(i);
+
+            // Close the intervals that end before this one starts, the innermost one left open is the parent
+            while (depth > 0) {
+                long[] top = unique.get(stack[depth - 1]);
+                if (compare(top[2], top[3], interval[0], interval[1]) >= 0) break;
+                depth--;
+            }
+
+            out.writeLong(interval[0]);
+            out.writeLong(interval[1]);
+            out.writeLong(interval[2]);
+            out.writeLong(interval[3]);
+            out.writeInt(depth == 0 ? -1 : stack[depth - 1]);
+            out.writeInt((int) interval[4]);
+
+            stack[depth++] = i;
+        }
+
+        return bytes.toByteArray();
+    }
+
+    private byte[] keys (TreeMap<byte[], Integer> keys) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+
+        for (Map.Entry<byte[], Integer> key : keys.entrySet()) {
+            out.writeInt(intern(new String(key.getKey(), StandardCharsets.UTF_8)));
+            out.writeInt(key.getValue());
+        }
+
+        return bytes.toByteArray();
+    }
+
+    static int compare (long high1, long low1, long high2, long low2) {
+        int high = Long.compareUnsigned(high1, high2);
+        return high != 0 ? high : Long.compareUnsigned(low1, low2);
+    }
+
+    private static int align (int offset) {
+        return (offset + 7) & ~7;
+    }
+}
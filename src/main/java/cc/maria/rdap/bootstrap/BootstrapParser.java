@@ -0,0 +1,159 @@
+/*
+ * Copyright (c) 2024 Maria Merkel
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the license at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the license for the specific language governing permissions and
+ * limitations under the license.
+ */
+package cc.maria.rdap.bootstrap;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Streaming parser for RFC 9224 bootstrap registry files.
+ * <p>
+ * The file is tokenized directly from its bytes and each entry of the services array is handed to the registry as
+ * plain string arrays, so no decoded copy of the file and no tree of the whole document is built.
+ */
+final class BootstrapParser {
+    private static final JsonFactory factory = new JsonFactory();
+
+    private BootstrapParser () {}
+
+    /**
+     * Parse a bootstrap registry file
+     *
+     * @param in Contents of the file
+     * @param consumer Receives each entry of the services array, such as {@code [["1-1876"], ["https://..."]]}
+     * @return Publication date of the file, or null if it has none
+     * @throws IOException The file is not a valid bootstrap registry file
+     */
+    static String parse (InputStream in, ServiceConsumer consumer) throws IOException {
+        return parse(in, 0, consumer);
+    }
+
+    /**
+     * Parse a bootstrap registry file whose entries consist of a fixed number of arrays, the last of which holds the
+     * service URLs
+     *
+     * @param in Contents of the file
+     * @param arity Number of arrays in each entry, 2 for the keys and service URLs or 3 if the keys are preceded by
+     * contacts, or 0 to accept any entry
+     * @param consumer Receives each entry of the services array
+     * @return Publication date of the file, or null if it has none
+     * @throws IOException The file is not a valid bootstrap registry file, or an entry has a different number of arrays
+     * or no service URLs
+     */
+    static String parse (InputStream in, int arity, ServiceConsumer consumer) throws IOException {
+        String publication = null;
+
+        try (JsonParser parser = factory.createParser(in)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) throw new JsonParseException(parser, "Bootstrap registry file is not an object");
+
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.currentName();
+                JsonToken value = parser.nextToken();
+
+                if (field.equals("publication") && value == JsonToken.VALUE_STRING) {
+                    publication = parser.getText();
+                } else if (field.equals("services") && value == JsonToken.START_ARRAY) {
+                    while (parser.nextToken() == JsonToken.START_ARRAY) consumer.accept(readEntry(parser, arity));
+                    expect(parser, JsonToken.END_ARRAY);
+                } else {
+                    parser.skipChildren();
+                }
+            }
+
+            expect(parser, JsonToken.END_OBJECT);
+        }
+
+        return publication;
+    }
+
+    /**
+     * Read only the publication date of a bootstrap registry file, skipping over everything else without building it
+     *
+     * @param in Contents of the file
+     * @return Publication date of the file, or null if it has none
+     * @throws IOException The file is not a valid JSON object
+     */
+    static String publication (InputStream in) throws IOException {
+        try (JsonParser parser = factory.createParser(in)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) throw new JsonParseException(parser, "Bootstrap registry file is not an object");
+
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.currentName();
+                JsonToken value = parser.nextToken();
+
+                if (field.equals("publication") && value == JsonToken.VALUE_STRING) return parser.getText();
+                parser.skipChildren();
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * Order the service URLs of an entry with HTTPS URLs first, as RFC 9224 asks clients to prefer them. The order of
+     * the registry is kept otherwise.
+     *
+     * @param urls Service URLs of an entry
+     * @return Unmodifiable list of the service URLs
+     */
+    static List<String> serviceURLs (String[] urls) {
+        ArrayList<String> ordered = new ArrayList<>(urls.length);
+        for (String url : urls) if (url.regionMatches(true, 0, "https:", 0, 6)) ordered.add(url);
+        for (String url : urls) if (!url.regionMatches(true, 0, "https:", 0, 6)) ordered.add(url);
+
+        return List.copyOf(ordered);
+    }
+
+    private static String[][] readEntry (JsonParser parser, int arity) throws IOException {
+        ArrayList<String[]> arrays = new ArrayList<>(3);
+        while (parser.nextToken() == JsonToken.START_ARRAY) arrays.add(readStrings(parser));
+        expect(parser, JsonToken.END_ARRAY);
+
+        if (arity > 0 && arrays.size() != arity) throw new JsonParseException(parser, "Bootstrap registry entry has " + arrays.size() + " arrays instead of " + arity);
+        if (arity > 0 && arrays.get(arity - 1).length == 0) throw new JsonParseException(parser, "Bootstrap registry entry has no service URLs");
+
+        return arrays.toArray(new String[0][]);
+    }
+
+    private static String[] readStrings (JsonParser parser) throws IOException {
+        ArrayList<String> strings = new ArrayList<>();
+        while (parser.nextToken() == JsonToken.VALUE_STRING) strings.add(parser.getText());
+        expect(parser, JsonToken.END_ARRAY);
+
+        return strings.toArray(new String[0]);
+    }
+
+    private static void expect (JsonParser parser, JsonToken token) throws IOException {
+        if (parser.currentToken() != token) throw new JsonParseException(parser, "Expected " + token + " but found " + parser.currentToken());
+    }
+
+    /**
+     * Receives the entries of the services array of a bootstrap registry file
+     */
+    interface ServiceConsumer {
+        /**
+         * @param entry Arrays of the entry, usually the keys followed by the service URLs
+         */
+        void accept (String[][] entry);
+    }
+}
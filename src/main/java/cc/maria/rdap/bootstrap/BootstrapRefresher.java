@@ -0,0 +1,156 @@
+/*
+ * Copyright (c) 2024 Maria Merkel
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the license at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the license for the specific language governing permissions and
+ * limitations under the license.
+ */
+
+package cc.maria.rdap.bootstrap;
+
+import jakarta.ws.rs.client.Client;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Periodically refreshes the bootstrap registries of an HTTP client in the background.
+ * <p>
+ * Each round revalidates the registries that have been loaded for the client and are no longer fresh according to the
+ * Cache-Control or Expires header they were served with. Registries whose file was not modified or whose publication
+ * date did not change are kept as they are. Changed registries are built on the refresher thread and then swapped in
+ * atomically, so queries never wait for a reload.
+ */
+public class BootstrapRefresher implements AutoCloseable {
+    private final Client client;
+    private final List<RegistryInstances<?>> registries;
+    private final ScheduledExecutorService scheduler;
+
+    // A lock instead of synchronized, so that virtual threads calling refresh() do not pin their carrier while waiting on the network
+    private final ReentrantLock lock = new ReentrantLock();
+
+    private volatile Instant lastRefresh = null;
+    private volatile Outcome lastOutcome = null;
+    private volatile RuntimeException lastError = null;
+
+    /**
+     * Start refreshing the bootstrap registries of an HTTP client
+     *
+     * @param client HTTP client the registries were loaded with
+     * @param interval Time between the end of one refresh round and the start of the next
+     */
+    public BootstrapRefresher (Client client, Duration interval) {
+        this (client, interval, Arrays.asList(ASNBootstrapRegistry.instances, DomainBootstrapRegistry.instances,
+                EntityBootstrapRegistry.instances, IPv4BootstrapRegistry.instances, IPv6BootstrapRegistry.instances));
+    }
+
+    BootstrapRefresher (Client client, Duration interval, List<RegistryInstances<?>> registries) {
+        this.client = client;
+        this.registries = registries;
+
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "rdap-bootstrap-refresher");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(this::refresh, interval.toMillis(), interval.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Run a refresh round immediately on the calling thread
+     *
+     * @return Outcome of the round
+     */
+    public Outcome refresh () {
+        lock.lock();
+        try {
+            Outcome outcome = Outcome.UNCHANGED;
+            RuntimeException error = null;
+
+            for (RegistryInstances<?> registry : registries) {
+                try {
+                    if (registry.refreshIfStale(client)) outcome = Outcome.UPDATED;
+                } catch (RuntimeException e) {
+                    // One failing registry should not keep the others from being refreshed
+                    error = e;
+                }
+            }
+
+            if (error != null) outcome = Outcome.FAILED;
+
+            lastError = error;
+            lastOutcome = outcome;
+            lastRefresh = Instant.now();
+
+            return outcome;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Get the time the last refresh round finished
+     *
+     * @return Time of the last refresh, or null if no round has finished yet
+     */
+    public Instant getLastRefresh () {
+        return lastRefresh;
+    }
+
+    /**
+     * Get the outcome of the last refresh round
+     *
+     * @return Outcome of the last refresh, or null if no round has finished yet
+     */
+    public Outcome getLastOutcome () {
+        return lastOutcome;
+    }
+
+    /**
+     * Get the error of the last refresh round if it failed. If several registries failed, this is the last error.
+     *
+     * @return Error of the last refresh, or null if it did not fail
+     */
+    public RuntimeException getLastError () {
+        return lastError;
+    }
+
+    /**
+     * Stop refreshing. The registries keep their current data.
+     */
+    @Override
+    public void close () {
+        scheduler.shutdownNow();
+    }
+
+    public enum Outcome {
+        /**
+         * At least one registry changed and was replaced
+         */
+        UPDATED,
+
+        /**
+         * All registries were still fresh, not modified or had the same publication date
+         */
+        UNCHANGED,
+
+        /**
+         * At least one registry could not be refreshed and keeps its previous data
+         */
+        FAILED
+    }
+}
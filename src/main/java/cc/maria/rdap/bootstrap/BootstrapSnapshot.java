@@ -0,0 +1,178 @@
+/*
+ * Copyright (c) 2024 Maria Merkel
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the license at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the license for the specific language governing permissions and
+ * limitations under the license.
+ */
+
+package cc.maria.rdap.bootstrap;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.format.DateTimeParseException;
+import java.util.Properties;
+
+/**
+ * Configuration of the bootstrap registry snapshot bundled with the library.
+ * <p>
+ * Builds with the {@code bootstrap-snapshot} Maven profile embed the IANA bootstrap registry files as classpath
+ * resources under {@code cc/maria/rdap/bootstrap/snapshot}. When a registry is first loaded and there is no newer file
+ * in the {@link BootstrapCache}, it starts from the snapshot without any network request.
+ * <p>
+ * The snapshot counts as fresh for a maximum age after it was built, or after the publication date of the registry if
+ * the build time is unknown, like a downloaded file that is fresh until it expires. Registries started from a fresh
+ * snapshot are not upgraded until a refresh finds them stale. A stale snapshot is upgraded to the live data by a
+ * revalidation in the background after an upgrade delay, so short-lived processes do not download the registries at
+ * all.
+ * <p>
+ * The snapshot is used by default if it is present. It can be disabled with the system property
+ * {@code cc.maria.rdap.bootstrap.snapshot=false}. The maximum age defaults to seven days and the upgrade delay to one
+ * minute, and can be set with the ISO-8601 durations in {@code cc.maria.rdap.bootstrap.snapshot.maxAge} and
+ * {@code cc.maria.rdap.bootstrap.snapshot.upgradeDelay}.
+ */
+public final class BootstrapSnapshot {
+    private static volatile boolean enabled = !"false".equalsIgnoreCase(System.getProperty("cc.maria.rdap.bootstrap.snapshot"));
+    private static volatile Duration maxAge = duration("cc.maria.rdap.bootstrap.snapshot.maxAge", Duration.ofDays(7));
+    private static volatile Duration upgradeDelay = duration("cc.maria.rdap.bootstrap.snapshot.upgradeDelay", Duration.ofMinutes(1));
+
+    private BootstrapSnapshot () {}
+
+    /**
+     * Enable or disable starting from the bundled snapshot. Registries that are already loaded are not affected.
+     *
+     * @param enabled Whether registries start from the snapshot
+     */
+    public static void setEnabled (boolean enabled) {
+        BootstrapSnapshot.enabled = enabled;
+    }
+
+    /**
+     * Check whether registries start from the bundled snapshot if it is present
+     *
+     * @return Whether the snapshot is enabled
+     */
+    public static boolean isEnabled () {
+        return enabled;
+    }
+
+    /**
+     * Set how long after it was built the snapshot counts as fresh. Registries that are already loaded are not
+     * affected.
+     *
+     * @param maxAge Maximum age of the snapshot, or zero to revalidate it right away
+     */
+    public static void setMaxAge (Duration maxAge) {
+        if (maxAge.isNegative()) throw new IllegalArgumentException("The maximum age must not be negative");
+        BootstrapSnapshot.maxAge = maxAge;
+    }
+
+    /**
+     * Get how long after it was built the snapshot counts as fresh
+     *
+     * @return Maximum age of the snapshot
+     */
+    public static Duration getMaxAge () {
+        return maxAge;
+    }
+
+    /**
+     * Set how long a registry started from a stale snapshot waits before it is upgraded to the live data
+     *
+     * @param upgradeDelay Delay of the upgrade, or zero to upgrade right away
+     */
+    public static void setUpgradeDelay (Duration upgradeDelay) {
+        if (upgradeDelay.isNegative()) throw new IllegalArgumentException("The upgrade delay must not be negative");
+        BootstrapSnapshot.upgradeDelay = upgradeDelay;
+    }
+
+    /**
+     * Get how long a registry started from a stale snapshot waits before it is upgraded to the live data
+     *
+     * @return Delay of the upgrade
+     */
+    public static Duration getUpgradeDelay () {
+        return upgradeDelay;
+    }
+
+    /**
+     * Check whether a snapshot of a bootstrap registry file is bundled
+     *
+     * @param name File name, such as dns.json
+     * @return Whether the file is bundled
+     */
+    public static boolean isAvailable (String name) {
+        return BootstrapSnapshot.class.getResource("snapshot/" + name) != null;
+    }
+
+    /**
+     * Read a bundled bootstrap registry file. The file carries no validators, so it is fully downloaded once it is
+     * stale.
+     *
+     * @param name File name, such as dns.json
+     * @return The bundled file, fresh until the maximum age after it was built, or null if it is not bundled or the
+     * snapshot is disabled
+     * @throws IOException The file could not be read
+     */
+    static BootstrapFile read (String name) throws IOException {
+        if (!enabled) return null;
+
+        byte[] body;
+        try (InputStream in = BootstrapSnapshot.class.getResourceAsStream("snapshot/" + name)) {
+            if (in == null) return null;
+            body = in.readAllBytes();
+        }
+
+        Instant built = built();
+        if (built == null) built = parse(BootstrapParser.publication(new ByteArrayInputStream(body)));
+
+        long expires = built == null ? 0 : Math.max(0, built.plus(maxAge).toEpochMilli());
+        return new BootstrapFile(body, null, null, expires);
+    }
+
+    /**
+     * Read the build time the {@code bootstrap-snapshot} profile records next to the registry files
+     */
+    private static Instant built () throws IOException {
+        try (InputStream in = BootstrapSnapshot.class.getResourceAsStream("snapshot/snapshot.properties")) {
+            if (in == null) return null;
+
+            Properties properties = new Properties();
+            properties.load(in);
+            return parse(properties.getProperty("built"));
+        }
+    }
+
+    private static Instant parse (String instant) {
+        if (instant == null) return null;
+
+        try {
+            return Instant.parse(instant);
+        } catch (DateTimeParseException e) {
+            return null;
+        }
+    }
+
+    private static Duration duration (String property, Duration fallback) {
+        String value = System.getProperty(property);
+        if (value == null || value.isEmpty()) return fallback;
+
+        try {
+            Duration duration = Duration.parse(value);
+            return duration.isNegative() ? fallback : duration;
+        } catch (DateTimeParseException e) {
+            return fallback;
+        }
+    }
+}
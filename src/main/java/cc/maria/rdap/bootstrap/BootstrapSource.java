@@ -0,0 +1,37 @@
+/*
+ * Copyright (c) 2024 Maria Merkel
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the license at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the license for the specific language governing permissions and
+ * limitations under the license.
+ */
+package cc.maria.rdap.bootstrap;
+
+import java.io.IOException;
+
+/**
+ * Source of bootstrap registry files, such as IANA, an internal mirror, a local directory or the classpath.
+ * <p>
+ * Registries are loaded from IANA by default, but every registry can also be loaded from any source, for example
+ * {@code DomainBootstrapRegistry.load(new FileBootstrapSource(directory))}.
+ */
+public interface BootstrapSource {
+    /**
+     * Fetch a bootstrap registry file
+     *
+     * @param name File name, such as dns.json
+     * @param cached Version of the file the caller already has, or null. Sources should return a file without a body
+     *               if this version is still current.
+     * @return The file, or a file without a body carrying updated validators if the cached version is still current
+     * @throws IOException The file could not be fetched
+     */
+    BootstrapFile fetch (String name, BootstrapFile cached) throws IOException;
+}
@@ -0,0 +1,58 @@
+/*
+ * Copyright (c) 2024 Maria Merkel
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the license at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the license for the specific language governing permissions and
+ * limitations under the license.
+ */
+package cc.maria.rdap.bootstrap;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Reads bootstrap registry files from classpath resources. Resources do not change at runtime, so a file is only read
+ * once.
+ */
+public class ClasspathBootstrapSource implements BootstrapSource {
+    private final ClassLoader classLoader;
+    private final String path;
+
+    /**
+     * @param path Resource path of the directory containing the files, such as {@code com/example/bootstrap/}
+     */
+    public ClasspathBootstrapSource (String path) {
+        this (ClasspathBootstrapSource.class.getClassLoader(), path);
+    }
+
+    /**
+     * @param classLoader Class loader to load the resources with
+     * @param path Resource path of the directory containing the files, such as {@code com/example/bootstrap/}
+     */
+    public ClasspathBootstrapSource (ClassLoader classLoader, String path) {
+        if (path.startsWith("/")) path = path.substring(1);
+        if (!path.isEmpty() && !path.endsWith("/")) path += "/";
+
+        this.classLoader = classLoader;
+        this.path = path;
+    }
+
+    @Override
+    public BootstrapFile fetch (String name, BootstrapFile cached) throws IOException {
+        if (cached != null) return cached.validators();
+
+        try (InputStream in = classLoader.getResourceAsStream(path + name)) {
+            if (in == null) throw new FileNotFoundException("Resource " + path + name + " not found");
+            return new BootstrapFile(in.readAllBytes(), null, null);
+        }
+    }
+}
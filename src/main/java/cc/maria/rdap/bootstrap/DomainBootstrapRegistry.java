@@ -17,21 +17,21 @@
 package cc.maria.rdap.bootstrap;
 
 import jakarta.ws.rs.client.Client;
-import org.json.JSONArray;
-import org.json.JSONObject;
 
 import java.io.IOException;
 import java.io.InputStream;
-import java.net.URL;
-import java.util.HashMap;
+import java.util.ArrayList;
+import java.util.List;
 
 /**
  * RFC 9224-compliant wrapper around the IANA RDAP Bootstrap Service Registry for the Domain Name Space
  */
 public class DomainBootstrapRegistry {
-    private HashMap<String, String> labelToServiceMap = new HashMap<>();
+    private final DomainSuffixTable labels;
+    private final String[] services;
+    private final List<List<String>> serviceURLs;
 
-    private static HashMap<Client, DomainBootstrapRegistry> instances = new HashMap<>();
+    static final RegistryInstances<DomainBootstrapRegistry> instances = new RegistryInstances<>("dns.json", DomainBootstrapRegistry::new);
 
     /**
      * Get current instance of the wrapper
@@ -41,43 +41,54 @@ public class DomainBootstrapRegistry {
      * @return DomainBootstrapRegistry instance
      */
     public static DomainBootstrapRegistry getInstance (Client client) {
-        if (!instances.containsKey(client)) refresh(client);
-
         return instances.get(client);
     }
 
     /**
-     * Throw away the current instance and get a new one with updated bootstrap data
+     * Build a new instance from a bootstrap source, such as a mirror, a local directory or the classpath. The instance
+     * is independent of the instances returned by {@link #getInstance(Client)}.
      *
-     * @param client HTTP client for fetching bootstrap data
+     * @param source Source to fetch dns.json from
      *
      * @return DomainBootstrapRegistry instance
+     * @throws IOException The bootstrap data could not be fetched
      */
-    public static DomainBootstrapRegistry refresh (Client client) {
-        try {
-            instances.put(client, new DomainBootstrapRegistry(client));
-        } catch (IOException e) {
-            throw new RuntimeException(e);
-        }
-
-        return instances.get(client);
+    public static DomainBootstrapRegistry load (BootstrapSource source) throws IOException {
+        return instances.load(source);
     }
 
-    private DomainBootstrapRegistry (Client client) throws IOException {
-        this (client, "https://data.iana.org/rdap/dns.json");
+    /**
+     * Revalidate the bootstrap data and replace the current instance if the data changed
+     *
+     * @param client HTTP client for fetching bootstrap data
+     *
+     * @return DomainBootstrapRegistry instance
+     */
+    public static DomainBootstrapRegistry refresh (Client client) {
+        return instances.refresh(client);
     }
 
-    private DomainBootstrapRegistry (Client client, String url) {
-        JSONObject json = new JSONObject(client.target(url).request().get().readEntity(String.class));
-        JSONArray services = json.getJSONArray("services");
+    DomainBootstrapRegistry (InputStream in) throws IOException {
+        ArrayList<List<String>> serviceList = new ArrayList<>();
+        ArrayList<String> labelList = new ArrayList<>();
+        ArrayList<Integer> labelServices = new ArrayList<>();
 
-        for (Object a : services) {
-            JSONArray array = (JSONArray) a;
+        BootstrapParser.parse(in, 2, entry -> {
+            serviceList.add(BootstrapParser.serviceURLs(entry[1]));
 
-            for (Object s : array.getJSONArray(0)) {
-                labelToServiceMap.put((String) s, ((JSONArray) array.get(1)).getString(0));
+            for (String label : entry[0]) {
+                labelList.add(label);
+                labelServices.add(serviceList.size() - 1);
             }
-        }
+        });
+
+        int[] values = new int[labelServices.size()];
+        for (int i = 0; i < values.length; i++) values[i] = labelServices.get(i);
+
+        labels = new DomainSuffixTable(labelList.toArray(new String[0]), values);
+        serviceURLs = List.copyOf(serviceList);
+        services = new String[serviceURLs.size()];
+        for (int i = 0; i < services.length; i++) services[i] = serviceURLs.get(i).get(0);
     }
 
     /**
@@ -87,18 +98,30 @@ public class DomainBootstrapRegistry {
      * @return RDAP service URL
      */
     public String getServiceURL (String label) {
-        return labelToServiceMap.get(label);
+        int service = labels.lookupExact(label);
+        return service == -1 ? null : services[service];
     }
 
     /**
-     * Get the RDAP service URL for a given FQDN
+     * Get the RDAP service URL for a given FQDN. The longest matching label wins, labels are matched case-insensitively
+     * and a trailing dot is ignored. This lookup does not allocate.
      *
      * @param fqdn FQDN to look up
      * @return RDAP service URL
      */
     public String getServiceURLForFQDN (String fqdn) {
-        if (labelToServiceMap.containsKey(fqdn)) return labelToServiceMap.get(fqdn);
-        if (!fqdn.contains(".")) return null;
-        return getServiceURLForFQDN(fqdn.substring(fqdn.indexOf('.') + 1));
+        int service = labels.lookup(fqdn);
+        return service == -1 ? null : services[service];
+    }
+
+    /**
+     * Get all RDAP service URLs for a given FQDN, with HTTPS URLs first
+     *
+     * @param fqdn FQDN to look up
+     * @return RDAP service URLs, or an empty list if no service is responsible
+     */
+    public List<String> getServiceURLsForFQDN (String fqdn) {
+        int service = labels.lookup(fqdn);
+        return service == -1 ? List.of() : serviceURLs.get(service);
     }
 }
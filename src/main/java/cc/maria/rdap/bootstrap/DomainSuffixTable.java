@@ -0,0 +1,191 @@
+/*
+ * Copyright (c) 2024 Maria Merkel
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the license at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the license for the specific language governing permissions and
+ * limitations under the license.
+ */
+
+package cc.maria.rdap.bootstrap;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Reversed-label suffix trie for domain names.
+ * <p>
+ * Each node is a domain suffix, and the edges between a node and its children are kept in a single open-addressing hash
+ * table keyed on the parent node and the label. Names are scanned from the right in place, with hashing and comparison
+ * done on the characters of the name itself, so lookups neither copy nor allocate. Labels are compared
+ * case-insensitively for ASCII letters and a trailing dot is ignored.
+ */
+class DomainSuffixTable {
+    private final int[] nodeValue;
+
+    private final int[] edgeParent;
+    private final String[] edgeLabel;
+    private final int[] edgeChild;
+    private final int mask;
+
+    /**
+     * Build a suffix table
+     *
+     * @param names Domain names, such as TLDs, to add to the table
+     * @param values Value associated with each name, must not be negative
+     */
+    DomainSuffixTable (String[] names, int[] values) {
+        ArrayList<HashMap<String, Integer>> children = new ArrayList<>();
+        ArrayList<Integer> valueList = new ArrayList<>();
+        children.add(new HashMap<>());
+        valueList.add(-1);
+        int edges = 0;
+
+        for (int i = 0; i < names.length; i++) {
+            String name = names[i];
+            int end = name.endsWith(".") ? name.length() - 1 : name.length();
+            if (end == 0) continue;
+
+            int node = 0;
+            while (true) {
+                int dot = name.lastIndexOf('.', end - 1);
+                String label = lowerCase(name, dot + 1, end);
+
+                Integer child = children.get(node).get(label);
+                if (child == null) {
+                    child = children.size();
+                    children.get(node).put(label, child);
+                    children.add(new HashMap<>());
+                    valueList.add(-1);
+                    edges++;
+                }
+
+                node = child;
+                if (dot < 0) break;
+                end = dot;
+            }
+
+            // Duplicate names are ignored, the first entry in the registry wins
+            if (valueList.get(node) == -1) valueList.set(node, values[i]);
+        }
+
+        nodeValue = new int[valueList.size()];
+        for (int i = 0; i < nodeValue.length; i++) nodeValue[i] = valueList.get(i);
+
+        // Keep the load factor at or below 50% so probe sequences stay short
+        int capacity = Integer.highestOneBit(Math.max(edges, 1) * 2 - 1) << 1;
+        mask = capacity - 1;
+        edgeParent = new int[capacity];
+        edgeLabel = new String[capacity];
+        edgeChild = new int[capacity];
+        Arrays.fill(edgeParent, -1);
+
+        for (int parent = 0; parent < children.size(); parent++) {
+            for (Map.Entry<String, Integer> edge : children.get(parent).entrySet()) {
+                String label = edge.getKey();
+                int slot = hash(parent, label, 0, label.length()) & mask;
+                while (edgeParent[slot] != -1) slot = (slot + 1) & mask;
+
+                edgeParent[slot] = parent;
+                edgeLabel[slot] = label;
+                edgeChild[slot] = edge.getValue();
+            }
+        }
+    }
+
+    /**
+     * Find the value of the longest suffix of a domain name present in the table
+     *
+     * @param name Domain name to look up
+     * @return Value of the longest matching suffix, or -1 if no suffix matches
+     */
+    int lookup (String name) {
+        int end = name.endsWith(".") ? name.length() - 1 : name.length();
+        int node = 0;
+        int best = -1;
+
+        while (end > 0) {
+            int dot = name.lastIndexOf('.', end - 1);
+
+            node = child(node, name, dot + 1, end);
+            if (node == -1) break;
+            if (nodeValue[node] != -1) best = nodeValue[node];
+
+            if (dot < 0) break;
+            end = dot;
+        }
+
+        return best;
+    }
+
+    /**
+     * Find the value of a domain name that is present in the table as a whole
+     *
+     * @param name Domain name to look up
+     * @return Value of the name, or -1 if it is not present
+     */
+    int lookupExact (String name) {
+        int end = name.endsWith(".") ? name.length() - 1 : name.length();
+        int node = 0;
+
+        while (end > 0) {
+            int dot = name.lastIndexOf('.', end - 1);
+
+            node = child(node, name, dot + 1, end);
+            if (node == -1) return -1;
+
+            if (dot < 0) return nodeValue[node];
+            end = dot;
+        }
+
+        return -1;
+    }
+
+    private int child (int parent, String name, int from, int to) {
+        int slot = hash(parent, name, from, to) & mask;
+
+        while (edgeParent[slot] != -1) {
+            if (edgeParent[slot] == parent && matches(edgeLabel[slot], name, from, to)) return edgeChild[slot];
+            slot = (slot + 1) & mask;
+        }
+
+        return -1;
+    }
+
+    private static boolean matches (String label, String name, int from, int to) {
+        if (label.length() != to - from) return false;
+
+        for (int i = 0; i < label.length(); i++) {
+            if (label.charAt(i) != lowerCase(name.charAt(from + i))) return false;
+        }
+
+        return true;
+    }
+
+    private static int hash (int parent, String name, int from, int to) {
+        int hash = parent * 0x9E3779B9;
+        for (int i = from; i < to; i++) hash = 31 * hash + lowerCase(name.charAt(i));
+
+        return hash ^ (hash >>> 16);
+    }
+
+    private static char lowerCase (char c) {
+        return c >= 'A' && c <= 'Z' ? (char) (c + ('a' - 'A')) : c;
+    }
+
+    private static String lowerCase (String name, int from, int to) {
+        char[] chars = new char[to - from];
+        for (int i = 0; i < chars.length; i++) chars[i] = lowerCase(name.charAt(from + i));
+
+        return new String(chars);
+    }
+}
@@ -17,19 +17,19 @@
 package cc.maria.rdap.bootstrap;
 
 import jakarta.ws.rs.client.Client;
-import org.json.JSONArray;
-import org.json.JSONObject;
 
 import java.io.IOException;
+import java.io.InputStream;
 import java.util.HashMap;
+import java.util.List;
 
 /**
  * RFC 8521-compliant wrapper around the IANA RDAP Bootstrap Service Registry for Entities
  */
 public class EntityBootstrapRegistry {
-    private HashMap<String, String> tagToServiceMap = new HashMap<>();
+    private HashMap<String, List<String>> tagToServiceMap = new HashMap<>();
 
-    private static HashMap<Client, EntityBootstrapRegistry> instances = new HashMap<>();
+    static final RegistryInstances<EntityBootstrapRegistry> instances = new RegistryInstances<>("object-tags.json", EntityBootstrapRegistry::new);
 
     /**
      * Get current instance of the wrapper
@@ -39,43 +39,41 @@ public class EntityBootstrapRegistry {
      * @return EntityBootstrapRegistry instance
      */
     public static EntityBootstrapRegistry getInstance (Client client) {
-        if (!instances.containsKey(client)) refresh(client);
-
         return instances.get(client);
     }
 
     /**
-     * Throw away the current instance and get a new one with updated bootstrap data
+     * Build a new instance from a bootstrap source, such as a mirror, a local directory or the classpath. The instance
+     * is independent of the instances returned by {@link #getInstance(Client)}.
      *
-     * @param client HTTP client for fetching bootstrap data
+     * @param source Source to fetch object-tags.json from
      *
      * @return EntityBootstrapRegistry instance
+     * @throws IOException The bootstrap data could not be fetched
      */
-    public static EntityBootstrapRegistry refresh (Client client) {
-        try {
-            instances.put(client, new EntityBootstrapRegistry(client));
-        } catch (IOException e) {
-            throw new RuntimeException(e);
-        }
-
-        return instances.get(client);
+    public static EntityBootstrapRegistry load (BootstrapSource source) throws IOException {
+        return instances.load(source);
     }
 
-    private EntityBootstrapRegistry(Client client) throws IOException {
-        this (client, "https://data.iana.org/rdap/object-tags.json");
+    /**
+     * Revalidate the bootstrap data and replace the current instance if the data changed
+     *
+     * @param client HTTP client for fetching bootstrap data
+     *
+     * @return EntityBootstrapRegistry instance
+     */
+    public static EntityBootstrapRegistry refresh (Client client) {
+        return instances.refresh(client);
     }
 
-    private EntityBootstrapRegistry(Client client, String url) {
-        JSONObject json = new JSONObject(client.target(url).request().get().readEntity(String.class));
-        JSONArray services = json.getJSONArray("services");
-
-        for (Object a : services) {
-            JSONArray array = (JSONArray) a;
+    EntityBootstrapRegistry(InputStream in) throws IOException {
+        BootstrapParser.parse(in, 3, entry -> {
+            List<String> serviceURLs = BootstrapParser.serviceURLs(entry[2]);
 
-            for (Object s : array.getJSONArray(1)) {
-                tagToServiceMap.put((String) s, ((JSONArray) array.get(2)).getString(0));
+            for (String tag : entry[1]) {
+                tagToServiceMap.put(tag, serviceURLs);
             }
-        }
+        });
     }
 
     /**
@@ -85,7 +83,8 @@ public class EntityBootstrapRegistry {
      * @return RDAP service URL
      */
     public String getServiceURL (String tag) {
-        return tagToServiceMap.get(tag);
+        List<String> serviceURLs = tagToServiceMap.get(tag);
+        return serviceURLs == null ? null : serviceURLs.get(0);
     }
 
     /**
@@ -96,7 +95,17 @@ public class EntityBootstrapRegistry {
      */
     public String getServiceURLForHandle (String handle) {
         String tag = handle.substring(handle.lastIndexOf('-') + 1);
-        if (!tagToServiceMap.containsKey(tag)) return null;
-        return tagToServiceMap.get(tag);
+        return getServiceURL(tag);
+    }
+
+    /**
+     * Get all RDAP service URLs for a given handle, with HTTPS URLs first
+     *
+     * @param handle Handle to look up
+     * @return RDAP service URLs, or an empty list if no service is responsible
+     */
+    public List<String> getServiceURLsForHandle (String handle) {
+        String tag = handle.substring(handle.lastIndexOf('-') + 1);
+        return tagToServiceMap.getOrDefault(tag, List.of());
     }
 }
@@ -0,0 +1,44 @@
+/*
+ * Copyright (c) 2024 Maria Merkel
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the license at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the license for the specific language governing permissions and
+ * limitations under the license.
+ */
+package cc.maria.rdap.bootstrap;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Reads bootstrap registry files from a local directory, such as a copy synchronised from IANA by a cron job. A file
+ * is only read again once its modification time or size changed.
+ */
+public class FileBootstrapSource implements BootstrapSource {
+    private final Path directory;
+
+    /**
+     * @param directory Directory containing the files
+     */
+    public FileBootstrapSource (Path directory) {
+        this.directory = directory;
+    }
+
+    @Override
+    public BootstrapFile fetch (String name, BootstrapFile cached) throws IOException {
+        Path file = directory.resolve(name);
+        String etag = "\"" + Files.getLastModifiedTime(file).toMillis() + "-" + Files.size(file) + "\"";
+
+        if (cached != null && etag.equals(cached.getETag())) return new BootstrapFile(null, etag, null);
+        return new BootstrapFile(Files.readAllBytes(file), etag, null);
+    }
+}
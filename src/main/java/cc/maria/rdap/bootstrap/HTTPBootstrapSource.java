@@ -0,0 +1,87 @@
+/*
+ * Copyright (c) 2024 Maria Merkel
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the license at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the license for the specific language governing permissions and
+ * limitations under the license.
+ */
+package cc.maria.rdap.bootstrap;
+
+import jakarta.ws.rs.client.Client;
+
+import java.io.IOException;
+
+/**
+ * Fetches bootstrap registry files over HTTP from IANA or a mirror, revalidating cached versions with conditional
+ * requests
+ * <p>
+ * The base URL used by {@code getInstance} defaults to IANA. It can be pointed at a mirror with
+ * {@link #setDefaultBaseURL(String)} or the system property {@code cc.maria.rdap.bootstrap.baseURL}.
+ */
+public class HTTPBootstrapSource implements BootstrapSource {
+    /**
+     * Base URL of the IANA RDAP bootstrap service registries
+     */
+    public static final String IANA_BASE_URL = "https://data.iana.org/rdap/";
+
+    private static volatile String defaultBaseURL = normalize(System.getProperty("cc.maria.rdap.bootstrap.baseURL", IANA_BASE_URL));
+
+    private final Client client;
+    private final String baseURL;
+
+    /**
+     * Create a source for the default base URL
+     *
+     * @param client HTTP client to fetch the files with
+     */
+    public HTTPBootstrapSource (Client client) {
+        this (client, defaultBaseURL);
+    }
+
+    /**
+     * Create a source for a mirror
+     *
+     * @param client HTTP client to fetch the files with
+     * @param baseURL URL of the directory containing the files
+     */
+    public HTTPBootstrapSource (Client client, String baseURL) {
+        this.client = client;
+        this.baseURL = normalize(baseURL);
+    }
+
+    @Override
+    public BootstrapFile fetch (String name, BootstrapFile cached) throws IOException {
+        return BootstrapFile.download(client, baseURL + name, cached);
+    }
+
+    /**
+     * Set the base URL registries are fetched from by {@code getInstance}. Registries that are already loaded switch to the
+     * new base URL on their next revalidation.
+     *
+     * @param baseURL URL of the directory containing the files
+     */
+    public static void setDefaultBaseURL (String baseURL) {
+        defaultBaseURL = normalize(baseURL);
+    }
+
+    /**
+     * Get the base URL registries are fetched from by {@code getInstance}
+     *
+     * @return URL of the directory containing the files
+     */
+    public static String getDefaultBaseURL () {
+        return defaultBaseURL;
+    }
+
+    private static String normalize (String baseURL) {
+        return baseURL.endsWith("/") ? baseURL : baseURL + "/";
+    }
+}
@@ -16,21 +16,24 @@
 
 package cc.maria.rdap.bootstrap;
 
+import inet.ipaddr.IPAddress;
 import inet.ipaddr.IPAddressString;
 import jakarta.ws.rs.client.Client;
-import org.json.JSONArray;
-import org.json.JSONObject;
 
 import java.io.IOException;
-import java.util.HashMap;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
 
 /**
  * RFC 9224-compliant wrapper around the IANA RDAP Bootstrap Service Registry for the IPv4 address space
  */
 public class IPv4BootstrapRegistry {
-    private HashMap<IPAddressString, String> subnetsToServiceMap = new HashMap<>();
+    private final IPv4PrefixTable subnets;
+    private final String[] services;
+    private final List<List<String>> serviceURLs;
 
-    private static HashMap<Client, IPv4BootstrapRegistry> instances = new HashMap<>();
+    static final RegistryInstances<IPv4BootstrapRegistry> instances = new RegistryInstances<>("ipv4.json", IPv4BootstrapRegistry::new);
 
     /**
      * Get current instance of the wrapper
@@ -40,43 +43,65 @@ public class IPv4BootstrapRegistry {
      * @return IPv4BootstrapRegistry instance
      */
     public static IPv4BootstrapRegistry getInstance (Client client) {
-        if (!instances.containsKey(client)) refresh(client);
-
         return instances.get(client);
     }
 
     /**
-     * Throw away the current instance and get a new one with updated bootstrap data
+     * Build a new instance from a bootstrap source, such as a mirror, a local directory or the classpath. The instance
+     * is independent of the instances returned by {@link #getInstance(Client)}.
+     *
+     * @param source Source to fetch ipv4.json from
+     *
+     * @return IPv4BootstrapRegistry instance
+     * @throws IOException The bootstrap data could not be fetched
+     */
+    public static IPv4BootstrapRegistry load (BootstrapSource source) throws IOException {
+        return instances.load(source);
+    }
+
+    /**
+     * Revalidate the bootstrap data and replace the current instance if the data changed
      *
      * @param client HTTP client for fetching bootstrap data
      *
      * @return IPv4BootstrapRegistry instance
      */
     public static IPv4BootstrapRegistry refresh (Client client) {
-        try {
-            instances.put(client, new IPv4BootstrapRegistry(client));
-        } catch (IOException e) {
-            throw new RuntimeException(e);
-        }
-
-        return instances.get(client);
+        return instances.refresh(client);
     }
 
-    private IPv4BootstrapRegistry(Client client) throws IOException {
-        this (client, "https://data.iana.org/rdap/ipv4.json");
-    }
+    IPv4BootstrapRegistry(InputStream in) throws IOException {
+        ArrayList<List<String>> serviceList = new ArrayList<>();
+        ArrayList<IPAddress> subnetList = new ArrayList<>();
+        ArrayList<Integer> subnetServices = new ArrayList<>();
 
-    private IPv4BootstrapRegistry(Client client, String url) {
-        JSONObject json = new JSONObject(client.target(url).request().get().readEntity(String.class));
-        JSONArray services = json.getJSONArray("services");
+        BootstrapParser.parse(in, 2, entry -> {
+            serviceList.add(BootstrapParser.serviceURLs(entry[1]));
 
-        for (Object a : services) {
-            JSONArray array = (JSONArray) a;
+            for (String s : entry[0]) {
+                IPAddress subnet = new IPAddressString(s).getAddress();
+                if (subnet == null || !subnet.isIPv4()) continue;
 
-            for (Object s : array.getJSONArray(0)) {
-                subnetsToServiceMap.put(new IPAddressString((String) s), ((JSONArray) array.get(1)).getString(0));
+                subnetList.add(subnet);
+                subnetServices.add(serviceList.size() - 1);
             }
+        });
+
+        int[] networks = new int[subnetList.size()];
+        int[] prefixLengths = new int[subnetList.size()];
+        int[] values = new int[subnetList.size()];
+
+        for (int i = 0; i < networks.length; i++) {
+            IPAddress subnet = subnetList.get(i);
+            networks[i] = subnet.getLower().toIPv4().intValue();
+            prefixLengths[i] = subnet.isPrefixed() ? subnet.getNetworkPrefixLength() : 32;
+            values[i] = subnetServices.get(i);
         }
+
+        subnets = new IPv4PrefixTable(networks, prefixLengths, values);
+        serviceURLs = List.copyOf(serviceList);
+        services = new String[serviceURLs.size()];
+        for (int i = 0; i < services.length; i++) services[i] = serviceURLs.get(i).get(0);
     }
 
     /**
@@ -86,12 +111,48 @@ public class IPv4BootstrapRegistry {
      * @return RDAP service URL
      */
     public String getServiceURLForIP (String ip) {
-        IPAddressString ipAddressString = new IPAddressString(ip);
+        int service = lookup(ip);
+        return service == -1 ? null : services[service];
+    }
 
-        for (IPAddressString subnet : subnetsToServiceMap.keySet()) {
-            if (subnet.contains(ipAddressString)) return subnetsToServiceMap.get(subnet);
-        }
+    /**
+     * Get all RDAP service URLs for a given IPv4 address or subnet, with HTTPS URLs first
+     *
+     * @param ip IP address to look up
+     * @return RDAP service URLs, or an empty list if no service is responsible
+     */
+    public List<String> getServiceURLsForIP (String ip) {
+        int service = lookup(ip);
+        return service == -1 ? List.of() : serviceURLs.get(service);
+    }
+
+    private int lookup (String ip) {
+        IPAddress address = new IPAddressString(ip).getAddress();
+        if (address == null || !address.isIPv4()) return -1;
+
+        return subnets.lookup(address.getLower().toIPv4().intValue(), address.getUpper().toIPv4().intValue());
+    }
+
+    /**
+     * Get the RDAP service URL for a given IPv4 address. This lookup does not allocate.
+     *
+     * @param ip IP address to look up, with the first octet in the most significant byte
+     * @return RDAP service URL
+     */
+    public String getServiceURLForIP (int ip) {
+        int service = subnets.lookup(ip);
+        return service == -1 ? null : services[service];
+    }
+
+    /**
+     * Get the RDAP service URL for a given IPv4 address. This lookup does not allocate.
+     *
+     * @param ip IP address to look up, as four bytes in network byte order
+     * @return RDAP service URL
+     */
+    public String getServiceURLForIP (byte[] ip) {
+        if (ip.length != 4) throw new IllegalArgumentException("IPv4 addresses must be 4 bytes long");
 
-        return null;
+        return getServiceURLForIP((ip[0] & 0xFF) << 24 | (ip[1] & 0xFF) << 16 | (ip[2] & 0xFF) << 8 | (ip[3] & 0xFF));
     }
 }
@@ -0,0 +1,173 @@
+/*
+ * Copyright (c) 2024 Maria Merkel
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the license at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the license for the specific language governing permissions and
+ * limitations under the license.
+ */
+
+package cc.maria.rdap.bootstrap;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+
+/**
+ * Longest-prefix-match table over the 32-bit IPv4 address space.
+ * <p>
+ * The prefixes are compiled once into a sorted array of disjoint segments, each of which is owned by the most specific
+ * prefix covering it. A lookup is a binary search over primitive ints and does not allocate.
+ * <p>
+ * All addresses are stored with the sign bit flipped, so that signed int comparison orders them like unsigned addresses.
+ */
+class IPv4PrefixTable {
+    private static final int BIAS = Integer.MIN_VALUE;
+
+    private final int[] prefixEnd;
+    private final int[] prefixParent;
+    private final int[] prefixValue;
+
+    private final int[] segmentStart;
+    private final int[] segmentOwner;
+
+    /**
+     * Compile a prefix table
+     *
+     * @param networks Network addresses of the prefixes
+     * @param prefixLengths Prefix lengths, between 0 and 32
+     * @param values Value associated with each prefix, must not be negative
+     */
+    IPv4PrefixTable (int[] networks, int[] prefixLengths, int[] values) {
+        int count = networks.length;
+        int[] start = new int[count];
+        int[] end = new int[count];
+        Integer[] order = new Integer[count];
+
+        for (int i = 0; i < count; i++) {
+            int mask = prefixLengths[i] == 0 ? 0 : -1 << (32 - prefixLengths[i]);
+            start[i] = (networks[i] & mask) ^ BIAS;
+            end[i] = (networks[i] | ~mask) ^ BIAS;
+            order[i] = i;
+        }
+
+        // Less specific prefixes sort before the more specific prefixes they contain
+        Arrays.sort(order, Comparator.<Integer>comparingInt(i -> start[i]).thenComparing(i -> end[i], Comparator.reverseOrder()));
+
+        ArrayList<Integer> prefixes = new ArrayList<>();
+        for (int i : order) {
+            int last = prefixes.isEmpty() ? -1 : prefixes.get(prefixes.size() - 1);
+
+            // Duplicate prefixes are ignored, the first entry in the registry wins
+            if (last != -1 && start[last] == start[i] && end[last] == end[i]) continue;
+            prefixes.add(i);
+        }
+
+        prefixEnd = new int[prefixes.size()];
+        prefixParent = new int[prefixes.size()];
+        prefixValue = new int[prefixes.size()];
+
+        SegmentBuilder segments = new SegmentBuilder();
+        int[] stack = new int[prefixes.size()];
+        int depth = 0;
+        int cursor = BIAS;
+        boolean exhausted = false;
+
+        for (int p = 0; p < prefixes.size(); p++) {
+            int i = prefixes.get(p);
+            prefixEnd[p] = end[i];
+            prefixValue[p] = values[i];
+
+            while (depth > 0 && prefixEnd[stack[depth - 1]] < start[i]) {
+                int closed = stack[--depth];
+                segments.add(cursor, closed);
+                cursor = prefixEnd[closed] + 1;
+            }
+
+            if (cursor < start[i]) segments.add(cursor, depth == 0 ? -1 : stack[depth - 1]);
+
+            cursor = start[i];
+            prefixParent[p] = depth == 0 ? -1 : stack[depth - 1];
+            stack[depth++] = p;
+        }
+
+        while (depth > 0) {
+            int closed = stack[--depth];
+            if (!exhausted) segments.add(cursor, closed);
+            if (prefixEnd[closed] == Integer.MAX_VALUE) exhausted = true;
+            cursor = prefixEnd[closed] + 1;
+        }
+
+        if (!exhausted) segments.add(cursor, -1);
+
+        segmentStart = Arrays.copyOf(segments.start, segments.size);
+        segmentOwner = Arrays.copyOf(segments.owner, segments.size);
+    }
+
+    /**
+     * Find the value of the most specific prefix containing an address
+     *
+     * @param address Address to look up
+     * @return Value of the matching prefix, or -1 if no prefix contains the address
+     */
+    int lookup (int address) {
+        int owner = segmentOwner[segment(address ^ BIAS)];
+        return owner == -1 ? -1 : prefixValue[owner];
+    }
+
+    /**
+     * Find the value of the most specific prefix containing an entire address range
+     *
+     * @param first First address of the range
+     * @param last Last address of the range
+     * @return Value of the matching prefix, or -1 if no prefix contains the range
+     */
+    int lookup (int first, int last) {
+        int owner = segmentOwner[segment(first ^ BIAS)];
+        int biasedLast = last ^ BIAS;
+
+        while (owner != -1 && prefixEnd[owner] < biasedLast) owner = prefixParent[owner];
+
+        return owner == -1 ? -1 : prefixValue[owner];
+    }
+
+    private int segment (int biasedAddress) {
+        int low = 0;
+        int high = segmentStart.length - 1;
+
+        while (low < high) {
+            int mid = (low + high + 1) >>> 1;
+            if (segmentStart[mid] <= biasedAddress) low = mid;
+            else high = mid - 1;
+        }
+
+        return low;
+    }
+
+    private static class SegmentBuilder {
+        private int[] start = new int[16];
+        private int[] owner = new int[16];
+        private int size = 0;
+
+        void add (int segmentStart, int segmentOwner) {
+            // Consecutive segments with the same owner are merged
+            if (size > 0 && owner[size - 1] == segmentOwner) return;
+
+            if (size == start.length) {
+                start = Arrays.copyOf(start, size * 2);
+                owner = Arrays.copyOf(owner, size * 2);
+            }
+
+            start[size] = segmentStart;
+            owner[size] = segmentOwner;
+            size++;
+        }
+    }
+}
@@ -16,21 +16,25 @@
 
 package cc.maria.rdap.bootstrap;
 
+import inet.ipaddr.IPAddress;
 import inet.ipaddr.IPAddressString;
 import jakarta.ws.rs.client.Client;
-import org.json.JSONArray;
-import org.json.JSONObject;
 
 import java.io.IOException;
-import java.util.HashMap;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
 
 /**
  * RFC 9224-compliant wrapper around the IANA RDAP Bootstrap Service Registry for the IPv4 address space
  */
 public class IPv6BootstrapRegistry {
-    private HashMap<IPAddressString, String> subnetsToServiceMap = new HashMap<>();
+    private final IPv6PrefixTrie subnets;
+    private final String[] services;
+    private final List<List<String>> serviceURLs;
 
-    private static HashMap<Client, IPv6BootstrapRegistry> instances = new HashMap<>();
+    static final RegistryInstances<IPv6BootstrapRegistry> instances = new RegistryInstances<>("ipv6.json", IPv6BootstrapRegistry::new);
 
     /**
      * Get current instance of the wrapper
@@ -40,58 +44,132 @@ public class IPv6BootstrapRegistry {
      * @return DomainBootstrapRegistry instance
      */
     public static IPv6BootstrapRegistry getInstance (Client client) {
-        if (!instances.containsKey(client)) refresh(client);
-
         return instances.get(client);
     }
 
     /**
-     * Throw away the current instance and get a new one with updated bootstrap data
+     * Build a new instance from a bootstrap source, such as a mirror, a local directory or the classpath. The instance
+     * is independent of the instances returned by {@link #getInstance(Client)}.
+     *
+     * @param source Source to fetch ipv6.json from
+     *
+     * @return IPv6BootstrapRegistry instance
+     * @throws IOException The bootstrap data could not be fetched
+     */
+    public static IPv6BootstrapRegistry load (BootstrapSource source) throws IOException {
+        return instances.load(source);
+    }
+
+    /**
+     * Revalidate the bootstrap data and replace the current instance if the data changed
      *
      * @param client HTTP client for fetching bootstrap data
      *
      * @return DomainBootstrapRegistry instance
      */
     public static IPv6BootstrapRegistry refresh (Client client) {
-        try {
-            instances.put(client, new IPv6BootstrapRegistry(client));
-        } catch (IOException e) {
-            throw new RuntimeException(e);
-        }
-
-        return instances.get(client);
+        return instances.refresh(client);
     }
 
-    private IPv6BootstrapRegistry(Client client) throws IOException {
-        this (client, "https://data.iana.org/rdap/ipv6.json");
-    }
+    IPv6BootstrapRegistry(InputStream in) throws IOException {
+        ArrayList<List<String>> serviceList = new ArrayList<>();
+        ArrayList<IPAddress> subnetList = new ArrayList<>();
+        ArrayList<Integer> subnetServices = new ArrayList<>();
 
-    private IPv6BootstrapRegistry(Client client, String url) {
-        JSONObject json = new JSONObject(client.target(url).request().get().readEntity(String.class));
-        JSONArray services = json.getJSONArray("services");
+        BootstrapParser.parse(in, 2, entry -> {
+            serviceList.add(BootstrapParser.serviceURLs(entry[1]));
 
-        for (Object a : services) {
-            JSONArray array = (JSONArray) a;
+            for (String s : entry[0]) {
+                IPAddress subnet = new IPAddressString(s).getAddress();
+                if (subnet == null || !subnet.isIPv6()) continue;
 
-            for (Object s : array.getJSONArray(0)) {
-                subnetsToServiceMap.put(new IPAddressString((String) s), ((JSONArray) array.get(1)).getString(0));
+                subnetList.add(subnet);
+                subnetServices.add(serviceList.size() - 1);
             }
+        });
+
+        long[] high = new long[subnetList.size()];
+        long[] low = new long[subnetList.size()];
+        int[] prefixLengths = new int[subnetList.size()];
+        int[] values = new int[subnetList.size()];
+
+        for (int i = 0; i < high.length; i++) {
+            IPAddress subnet = subnetList.get(i);
+            ByteBuffer bytes = ByteBuffer.wrap(subnet.getLower().getBytes());
+            high[i] = bytes.getLong();
+            low[i] = bytes.getLong();
+            prefixLengths[i] = subnet.isPrefixed() ? subnet.getNetworkPrefixLength() : 128;
+            values[i] = subnetServices.get(i);
         }
+
+        subnets = new IPv6PrefixTrie(high, low, prefixLengths, values);
+        serviceURLs = List.copyOf(serviceList);
+        services = new String[serviceURLs.size()];
+        for (int i = 0; i < services.length; i++) services[i] = serviceURLs.get(i).get(0);
     }
 
     /**
-     * Get the RDAP service URL for a given ASN
+     * Get the RDAP service URL for a given IPv6 address or subnet
      *
      * @param ip IP address to look up
      * @return RDAP service URL
      */
     public String getServiceURLForIP (String ip) {
-        IPAddressString ipAddressString = new IPAddressString(ip);
+        int service = lookup(ip);
+        return service == -1 ? null : services[service];
+    }
 
-        for (IPAddressString subnet : subnetsToServiceMap.keySet()) {
-            if (subnet.contains(ipAddressString)) return subnetsToServiceMap.get(subnet);
+    /**
+     * Get all RDAP service URLs for a given IPv6 address or subnet, with HTTPS URLs first
+     *
+     * @param ip IP address to look up
+     * @return RDAP service URLs, or an empty list if no service is responsible
+     */
+    public List<String> getServiceURLsForIP (String ip) {
+        int service = lookup(ip);
+        return service == -1 ? List.of() : serviceURLs.get(service);
+    }
+
+    private int lookup (String ip) {
+        IPAddress address = new IPAddressString(ip).getAddress();
+        if (address == null || !address.isIPv6()) return -1;
+
+        ByteBuffer lower = ByteBuffer.wrap(address.getLower().getBytes());
+        ByteBuffer upper = ByteBuffer.wrap(address.getUpper().getBytes());
+        long high = lower.getLong();
+        long low = lower.getLong();
+
+        return subnets.lookup(high, low, IPv6PrefixTrie.commonLength(high, low, upper.getLong(), upper.getLong()));
+    }
+
+    /**
+     * Get the RDAP service URL for a given IPv6 address. This lookup does not allocate.
+     *
+     * @param high Upper 64 bits of the IP address to look up
+     * @param low Lower 64 bits of the IP address to look up
+     * @return RDAP service URL
+     */
+    public String getServiceURLForIP (long high, long low) {
+        int service = subnets.lookup(high, low, 128);
+        return service == -1 ? null : services[service];
+    }
+
+    /**
+     * Get the RDAP service URL for a given IPv6 address. This lookup does not allocate.
+     *
+     * @param ip IP address to look up, as 16 bytes in network byte order
+     * @return RDAP service URL
+     */
+    public String getServiceURLForIP (byte[] ip) {
+        if (ip.length != 16) throw new IllegalArgumentException("IPv6 addresses must be 16 bytes long");
+
+        long high = 0;
+        long low = 0;
+        for (int i = 0; i < 8; i++) {
+            high = high << 8 | (ip[i] & 0xFF);
+            low = low << 8 | (ip[i + 8] & 0xFF);
         }
 
-        return null;
+        return getServiceURLForIP(high, low);
     }
 }
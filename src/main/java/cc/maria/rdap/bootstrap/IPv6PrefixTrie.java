@@ -0,0 +1,182 @@
+/*
+ * Copyright (c) 2024 Maria Merkel
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the license at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the license for the specific language governing permissions and
+ * limitations under the license.
+ */
+
+package cc.maria.rdap.bootstrap;
+
+import java.util.ArrayList;
+
+/**
+ * Path-compressed binary trie over the 128-bit IPv6 address space.
+ * <p>
+ * Addresses are represented by their upper and lower 64 bits. The trie is built once and then flattened into primitive
+ * arrays, so a lookup walks at most one node per prefix on the path and does not allocate. The most specific matching
+ * prefix always wins, independent of the order in which the prefixes were added.
+ */
+class IPv6PrefixTrie {
+    private final long[] nodeHigh;
+    private final long[] nodeLow;
+    private final int[] nodeLength;
+    private final int[] nodeValue;
+    private final int[] nodeChildren;
+
+    /**
+     * Build a prefix trie
+     *
+     * @param high Upper 64 bits of the network addresses of the prefixes
+     * @param low Lower 64 bits of the network addresses of the prefixes
+     * @param prefixLengths Prefix lengths, between 0 and 128
+     * @param values Value associated with each prefix, must not be negative
+     */
+    IPv6PrefixTrie (long[] high, long[] low, int[] prefixLengths, int[] values) {
+        Node root = new Node(0, 0, 0, -1);
+        int nodes = 1;
+
+        for (int i = 0; i < high.length; i++) {
+            nodes += root.insert(new Node(mask(high[i], prefixLengths[i]), mask(low[i], prefixLengths[i] - 64), prefixLengths[i], values[i]));
+        }
+
+        nodeHigh = new long[nodes];
+        nodeLow = new long[nodes];
+        nodeLength = new int[nodes];
+        nodeValue = new int[nodes];
+        nodeChildren = new int[nodes * 2];
+
+        // Flatten breadth-first, the root ends up at index 0
+        ArrayList<Node> queue = new ArrayList<>(nodes);
+        queue.add(root);
+
+        for (int n = 0; n < queue.size(); n++) {
+            Node node = queue.get(n);
+            nodeHigh[n] = node.high;
+            nodeLow[n] = node.low;
+            nodeLength[n] = node.length;
+            nodeValue[n] = node.value;
+
+            for (int bit = 0; bit < 2; bit++) {
+                if (node.children[bit] == null) {
+                    nodeChildren[n * 2 + bit] = -1;
+                } else {
+                    nodeChildren[n * 2 + bit] = queue.size();
+                    queue.add(node.children[bit]);
+                }
+            }
+        }
+    }
+
+    /**
+     * Find the value of the most specific prefix containing an address range given by its first address and the number
+     * of bits all addresses in the range have in common
+     *
+     * @param high Upper 64 bits of the first address
+     * @param low Lower 64 bits of the first address
+     * @param maxLength Number of leading bits shared by all addresses in the range, 128 for a single address
+     * @return Value of the matching prefix, or -1 if no prefix contains the range
+     */
+    int lookup (long high, long low, int maxLength) {
+        int best = -1;
+        int node = 0;
+
+        while (node != -1) {
+            int length = nodeLength[node];
+            if (length > maxLength || commonLength(high, low, nodeHigh[node], nodeLow[node]) < length) break;
+
+            if (nodeValue[node] != -1) best = nodeValue[node];
+            if (length == 128) break;
+
+            node = nodeChildren[node * 2 + bit(high, low, length)];
+        }
+
+        return best;
+    }
+
+    /**
+     * Count the leading bits two addresses have in common
+     */
+    static int commonLength (long high1, long low1, long high2, long low2) {
+        if (high1 != high2) return Long.numberOfLeadingZeros(high1 ^ high2);
+        return 64 + Long.numberOfLeadingZeros(low1 ^ low2);
+    }
+
+    private static int bit (long high, long low, int index) {
+        if (index < 64) return (int) (high >>> (63 - index)) & 1;
+        return (int) (low >>> (127 - index)) & 1;
+    }
+
+    private static long mask (long value, int bits) {
+        if (bits <= 0) return 0;
+        if (bits >= 64) return value;
+        return value & (-1L << (64 - bits));
+    }
+
+    private static class Node {
+        private final long high;
+        private final long low;
+        private final int length;
+        private int value;
+        private final Node[] children = new Node[2];
+
+        Node (long high, long low, int length, int value) {
+            this.high = high;
+            this.low = low;
+            this.length = length;
+            this.value = value;
+        }
+
+        /**
+         * Insert a prefix below this node, splitting compressed paths where necessary
+         *
+         * @return Number of nodes added to the trie
+         */
+        int insert (Node prefix) {
+            Node node = this;
+
+            while (true) {
+                if (node.length == prefix.length) {
+                    // Duplicate prefixes are ignored, the first entry in the registry wins
+                    if (node.value == -1) node.value = prefix.value;
+                    return 0;
+                }
+
+                int bit = bit(prefix.high, prefix.low, node.length);
+                Node child = node.children[bit];
+
+                if (child == null) {
+                    node.children[bit] = prefix;
+                    return 1;
+                }
+
+                int common = Math.min(Math.min(child.length, prefix.length), commonLength(child.high, child.low, prefix.high, prefix.low));
+
+                if (common == child.length) {
+                    node = child;
+                    continue;
+                }
+
+                if (common == prefix.length) {
+                    prefix.children[bit(child.high, child.low, common)] = child;
+                    node.children[bit] = prefix;
+                    return 1;
+                }
+
+                Node split = new Node(mask(prefix.high, common), mask(prefix.low, common - 64), common, -1);
+                split.children[bit(child.high, child.low, common)] = child;
+                split.children[bit(prefix.high, prefix.low, common)] = prefix;
+                node.children[bit] = split;
+                return 2;
+            }
+        }
+    }
+}
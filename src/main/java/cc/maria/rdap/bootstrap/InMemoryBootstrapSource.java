@@ -0,0 +1,45 @@
+/*
+ * Copyright (c) 2024 Maria Merkel
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the license at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the license for the specific language governing permissions and
+ * limitations under the license.
+ */
+package cc.maria.rdap.bootstrap;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Serves bootstrap registry files from memory, for tests and benchmarks that need deterministic data. The files are
+ * copied on creation and never change, so a file is only served once to each registry.
+ */
+public class InMemoryBootstrapSource implements BootstrapSource {
+    private final Map<String, byte[]> files = new HashMap<>();
+
+    /**
+     * @param files Contents of the files by file name, such as dns.json
+     */
+    public InMemoryBootstrapSource (Map<String, byte[]> files) {
+        for (Map.Entry<String, byte[]> file : files.entrySet()) this.files.put(file.getKey(), file.getValue().clone());
+    }
+
+    @Override
+    public BootstrapFile fetch (String name, BootstrapFile cached) throws IOException {
+        byte[] body = files.get(name);
+        if (body == null) throw new FileNotFoundException("File " + name + " not found");
+        if (cached != null) return cached.validators();
+
+        return new BootstrapFile(body, null, null);
+    }
+}
@@ -0,0 +1,316 @@
+/*
+ * Copyright (c) 2024 Maria Merkel
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the license at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the license for the specific language governing permissions and
+ * limitations under the license.
+ */
+
+package cc.maria.rdap.bootstrap;
+
+import cc.maria.rdap.VirtualThreads;
+import jakarta.ws.rs.client.Client;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.*;
+
+/**
+ * Thread-safe holder for the bootstrap registry instance of each HTTP client.
+ * <p>
+ * Loading is single-flight: the first caller for a client loads the registry, and every concurrent caller waits on the
+ * same future instead of downloading the same file again. A refresh builds the new instance first and then replaces the
+ * old one in a single step, so readers always see either the old or the new instance.
+ * <p>
+ * If a {@link BootstrapCache} directory is set, the first load starts from the persisted file and revalidates it in the
+ * background once it is stale. Otherwise it starts from the {@link BootstrapSnapshot} bundled with the library if there
+ * is one, which is revalidated after the upgrade delay once it is stale. Refreshes always send the validators of the
+ * loaded file, and a registry whose file is not modified or whose publication date did not change keeps its current
+ * instance.
+ *
+ * @param <T> Bootstrap registry type
+ */
+class RegistryInstances<T> {
+    private static final Executor revalidations = VirtualThreads.executor("rdap-bootstrap-revalidation");
+
+    private final ConcurrentHashMap<Client, CompletableFuture<Loaded<T>>> instances = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<Client, CompletableFuture<Loaded<T>>> refreshes = new ConcurrentHashMap<>();
+    private final String name;
+    private final Parser<T> parser;
+    private final Fetcher fetcher;
+
+    /**
+     * Create a holder for a registry downloaded from the default base URL of {@link HTTPBootstrapSource}
+     *
+     * @param name File name of the registry, such as dns.json
+     * @param parser Builds the registry from the file
+     */
+    RegistryInstances (String name, Parser<T> parser) {
+        this (name, parser, (client, cached) -> new HTTPBootstrapSource(client).fetch(name, cached));
+    }
+
+    RegistryInstances (String name, Parser<T> parser, Fetcher fetcher) {
+        this.name = name;
+        this.parser = parser;
+        this.fetcher = fetcher;
+    }
+
+    /**
+     * Build a new instance from a bootstrap source. The instance is not shared with other callers.
+     *
+     * @param source Source to fetch the registry file from
+     * @return Registry instance
+     * @throws IOException The file could not be fetched
+     */
+    T load (BootstrapSource source) throws IOException {
+        BootstrapFile file = source.fetch(name, null);
+        if (file.getBody() == null) throw new IOException("Source returned " + name + " without contents");
+
+        return parser.parse(new ByteArrayInputStream(file.getBody()));
+    }
+
+    /**
+     * Get the current instance for a client, loading it if there is none yet
+     *
+     * @param client HTTP client for fetching bootstrap data
+     * @return Registry instance
+     */
+    T get (Client client) {
+        CompletableFuture<Loaded<T>> instance = instances.get(client);
+        if (instance != null) return join(instance).instance;
+
+        CompletableFuture<Loaded<T>> load = new CompletableFuture<>();
+        instance = instances.putIfAbsent(client, load);
+        if (instance != null) return join(instance).instance;
+
+        try {
+            load.complete(load(client));
+        } catch (RuntimeException | Error e) {
+            // Do not keep failed loads around, the next caller tries again
+            instances.remove(client, load);
+            load.completeExceptionally(e);
+        }
+
+        return join(load).instance;
+    }
+
+    /**
+     * Revalidate the loaded file for a client and replace the current instance if the file changed. Concurrent
+     * refreshes for the same client share a single request.
+     *
+     * @param client HTTP client for fetching bootstrap data
+     * @return Current registry instance
+     */
+    T refresh (Client client) {
+        return refresh(client, true).instance;
+    }
+
+    /**
+     * Revalidate the loaded file for a client if it is no longer fresh according to the HTTP caching headers it was
+     * served with, and replace the current instance if the file changed. Nothing is loaded for clients that do not have
+     * an instance yet.
+     *
+     * @param client HTTP client for fetching bootstrap data
+     * @return Whether the instance was replaced
+     */
+    boolean refreshIfStale (Client client) {
+        CompletableFuture<Loaded<T>> current = instances.get(client);
+        if (current == null) return false;
+
+        T previous = join(current).instance;
+        return refresh(client, false).instance != previous;
+    }
+
+    private Loaded<T> refresh (Client client, boolean force) {
+        CompletableFuture<Loaded<T>> refresh = new CompletableFuture<>();
+        CompletableFuture<Loaded<T>> running = refreshes.putIfAbsent(client, refresh);
+        if (running != null) return join(running);
+
+        try {
+            refresh.complete(revalidate(client, force));
+        } catch (RuntimeException | Error e) {
+            refresh.completeExceptionally(e);
+        } finally {
+            refreshes.remove(client, refresh);
+        }
+
+        return join(refresh);
+    }
+
+    private Loaded<T> load (Client client) {
+        Path directory = BootstrapCache.getDirectory();
+
+        if (directory != null) {
+            try {
+                BootstrapFile file = BootstrapFile.read(directory, name);
+                if (file != null) return start(client, file, 0);
+            } catch (IOException | RuntimeException ignored) {
+                // The persisted file is unreadable, so fall back to the snapshot or downloading it
+            }
+        }
+
+        try {
+            BootstrapFile file = BootstrapSnapshot.read(name);
+            if (file != null) return start(client, file, BootstrapSnapshot.getUpgradeDelay().toMillis());
+        } catch (IOException | RuntimeException ignored) {
+            // The bundled snapshot is unreadable, so fall back to downloading the file
+        }
+
+        return download(client, null);
+    }
+
+    /**
+     * Build the first instance from a local file and revalidate it in the background after a delay if it is stale
+     */
+    private Loaded<T> start (Client client, BootstrapFile file, long delay) {
+        Loaded<T> loaded = new Loaded<>(parse(file), file.validators(), publication(file));
+
+        if (!file.isFresh()) {
+            Executor executor = delay > 0 ? CompletableFuture.delayedExecutor(delay, TimeUnit.MILLISECONDS, revalidations) : revalidations;
+            executor.execute(() -> {
+                try {
+                    refresh(client);
+                } catch (RuntimeException ignored) {
+                    // Keep using the local file until a later refresh succeeds
+                }
+            });
+        }
+
+        return loaded;
+    }
+
+    private Loaded<T> revalidate (Client client, boolean force) {
+        CompletableFuture<Loaded<T>> current = instances.get(client);
+        Loaded<T> previous = null;
+
+        if (current != null) {
+            try {
+                previous = join(current);
+            } catch (RuntimeException ignored) {
+                // The initial load failed, so there is nothing to revalidate
+            }
+        }
+
+        if (!force && previous != null && previous.validators.isFresh()) return previous;
+
+        // The new instance is fully built before it is published, readers keep using the old one until then
+        Loaded<T> loaded = download(client, previous);
+        instances.put(client, CompletableFuture.completedFuture(loaded));
+
+        return loaded;
+    }
+
+    private Loaded<T> download (Client client, Loaded<T> previous) {
+        BootstrapFile file;
+        try {
+            file = fetcher.fetch(client, previous == null ? null : previous.validators);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+
+        Path directory = BootstrapCache.getDirectory();
+
+        if (file.getBody() == null) {
+            if (previous == null) throw new RuntimeException(new IOException("Server reported " + name + " as not modified without a cached version"));
+
+            // Keep the persisted file and only record when it has to be revalidated next, so a restart does not ask again
+            if (directory != null && Files.exists(directory.resolve(name))) {
+                try {
+                    file.writeValidators(directory, name);
+                } catch (IOException ignored) {
+                    // Failing to persist the validators only costs a revalidation on the next start
+                }
+            }
+
+            return new Loaded<>(previous.instance, file, previous.publication);
+        }
+
+        if (directory != null) {
+            try {
+                file.write(directory, name);
+            } catch (IOException ignored) {
+                // Failing to persist the file only costs a download on the next start
+            }
+        }
+
+        String publication = publication(file);
+
+        // Some mirrors do not send validators, so an unchanged publication date also avoids rebuilding the registry
+        if (previous != null && publication != null && publication.equals(previous.publication)) {
+            return new Loaded<>(previous.instance, file.validators(), publication);
+        }
+
+        return new Loaded<>(parse(file), file.validators(), publication);
+    }
+
+    private T parse (BootstrapFile file) {
+        try {
+            return parser.parse(new ByteArrayInputStream(file.getBody()));
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private static String publication (BootstrapFile file) {
+        try {
+            return BootstrapParser.publication(new ByteArrayInputStream(file.getBody()));
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private static <T> T join (CompletableFuture<T> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) throw (RuntimeException) e.getCause();
+            if (e.getCause() instanceof Error) throw (Error) e.getCause();
+            throw e;
+        }
+    }
+
+    private static class Loaded<T> {
+        private final T instance;
+        private final BootstrapFile validators;
+        private final String publication;
+
+        Loaded (T instance, BootstrapFile validators, String publication) {
+            this.instance = instance;
+            this.validators = validators;
+            this.publication = publication;
+        }
+    }
+
+    /**
+     * Builds a registry instance from a bootstrap registry file
+     *
+     * @param <T> Bootstrap registry type
+     */
+    interface Parser<T> {
+        T parse (InputStream in) throws IOException;
+    }
+
+    /**
+     * Fetches a bootstrap registry file
+     */
+    interface Fetcher {
+        /**
+         * @param client HTTP client for fetching bootstrap data
+         * @param cached Validators of the loaded version of the file, or null
+         * @return The file, or a file without a body carrying updated validators if the loaded version is still current
+         * @throws IOException The file could not be fetched
+         */
+        BootstrapFile fetch (Client client, BootstrapFile cached) throws IOException;
+    }
+}
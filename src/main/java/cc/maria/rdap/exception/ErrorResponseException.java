@@ -0,0 +1,44 @@
+/*
+ * Copyright (c) 2023 Maria Merkel
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the license at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the license for the specific language governing permissions and
+ * limitations under the license.
+ */
+
+package cc.maria.rdap.exception;
+
+import cc.maria.rdap.object.ErrorResponseBody;
+
+public class ErrorResponseException extends RDAPException {
+    private final int status;
+    private final ErrorResponseBody errorResponse;
+
+    public ErrorResponseException(int status, ErrorResponseBody errorResponse) {
+        super("The RDAP server answered with status " + status + (errorResponse == null || errorResponse.getTitle() == null ? "" : ": " + errorResponse.getTitle()));
+        this.status = status;
+        this.errorResponse = errorResponse;
+    }
+
+    /**
+     * @return HTTP status code of the response
+     */
+    public int getStatus () {
+        return status;
+    }
+
+    /**
+     * @return RDAP error response the server sent with the status, or null if the body was empty or not an error response
+     */
+    public ErrorResponseBody getErrorResponse () {
+        return errorResponse;
+    }
+}
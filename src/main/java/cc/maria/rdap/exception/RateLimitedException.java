@@ -0,0 +1,35 @@
+/*
+ * Copyright (c) 2023 Maria Merkel
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the license at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the license for the specific language governing permissions and
+ * limitations under the license.
+ */
+
+package cc.maria.rdap.exception;
+
+import java.time.Duration;
+
+public class RateLimitedException extends RDAPException {
+    private final Duration retryAfter;
+
+    public RateLimitedException(Duration retryAfter) {
+        super("The RDAP server rate limited the request" + (retryAfter == null ? "" : ", retry after " + retryAfter.toSeconds() + " seconds"));
+        this.retryAfter = retryAfter;
+    }
+
+    /**
+     * @return Time the server asked to wait before the next request, or null if it did not say
+     */
+    public Duration getRetryAfter () {
+        return retryAfter;
+    }
+}
@@ -0,0 +1,139 @@
+/*
+ * Copyright (c) 2023 Maria Merkel
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the license at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the license for the specific language governing permissions and
+ * limitations under the license.
+ */
+
+package cc.maria.rdap.http;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * In-memory cache of autnum responses, indexed by the range of AS numbers each autnum object covers.
+ * <p>
+ * A query for any AS number within a cached block is answered with that block. If several cached blocks contain the
+ * number, the most specific one is used.
+ * <p>
+ * Blocks are kept in an {@link AutnumRangeIndex}, so lookups are a lock-free binary search without boxing. Entries
+ * expire according to the Cache-Control or Expires header of the response, or after a default time to live. Once the
+ * cache holds its maximum number of blocks, expired blocks and then the oldest ones are evicted.
+ */
+public class AutnumCache {
+    private final AutnumRangeIndex<byte[]> blocks;
+    private final int maxEntries;
+    private final long defaultTTL;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    /**
+     * Create a cache
+     *
+     * @param maxEntries Maximum number of cached blocks
+     * @param defaultTTL Time to keep responses without Cache-Control or Expires header
+     */
+    public AutnumCache (int maxEntries, Duration defaultTTL) {
+        if (maxEntries < 1) throw new IllegalArgumentException("The cache must hold at least one block");
+
+        this.blocks = new AutnumRangeIndex<>(maxEntries);
+        this.maxEntries = maxEntries;
+        this.defaultTTL = defaultTTL.toMillis();
+    }
+
+    /**
+     * Get the response body of the most specific fresh block that contains an AS number
+     *
+     * @param asn AS number
+     * @return Cached body, or null if no fresh cached block contains the number
+     */
+    public byte[] get (long asn) {
+        byte[] body = blocks.get(asn, System.currentTimeMillis());
+
+        if (body == null) misses.increment();
+        else hits.increment();
+
+        return body;
+    }
+
+    /**
+     * Cache the response for a block of AS numbers. Invalid ranges or responses that are already expired are not cached.
+     *
+     * @param start First AS number of the block
+     * @param end Last AS number of the block
+     * @param body Response body
+     * @param expires Time until which the body is fresh as epoch milliseconds
+     */
+    public void put (long start, long end, byte[] body, long expires) {
+        if (expires <= System.currentTimeMillis()) return;
+        blocks.put(start, end, body, expires);
+    }
+
+    /**
+     * Remove all entries. The counters are not reset.
+     */
+    public void clear () {
+        blocks.clear();
+    }
+
+    /**
+     * @return Time to keep responses without Cache-Control or Expires header in milliseconds
+     */
+    public long getDefaultTTL () {
+        return defaultTTL;
+    }
+
+    /**
+     * @return Maximum number of cached blocks
+     */
+    public int getMaxEntries () {
+        return maxEntries;
+    }
+
+    /**
+     * @return Number of cached blocks, including expired ones not yet removed
+     */
+    public int getEntryCount () {
+        return blocks.size();
+    }
+
+    /**
+     * @return Number of lookups answered by a cached block
+     */
+    public long getHitCount () {
+        return hits.sum();
+    }
+
+    /**
+     * @return Number of lookups no fresh cached block contained
+     */
+    public long getMissCount () {
+        return misses.sum();
+    }
+
+    /**
+     * @return Share of lookups answered by a cached block, between 0 and 1
+     */
+    public double getHitRate () {
+        long hits = this.hits.sum();
+        long total = hits + misses.sum();
+        return total == 0 ? 0 : (double) hits / total;
+    }
+
+    /**
+     * @return Number of blocks evicted to stay within the maximum number of entries
+     */
+    public long getEvictionCount () {
+        return blocks.getEvictionCount();
+    }
+}
@@ -0,0 +1,247 @@
+/*
+ * Copyright (c) 2023 Maria Merkel
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the license at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the license for the specific language governing permissions and
+ * limitations under the license.
+ */
+
+package cc.maria.rdap.http;
+
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Values indexed by ranges of AS numbers, looked up by the most specific fresh range that contains an AS number.
+ * <p>
+ * The ranges are kept in sorted primitive arrays that are replaced as a whole on every change, so lookups are a lock-free
+ * binary search without boxing, and only writers take a lock. Once the index holds its maximum number of ranges, expired
+ * ranges and then the oldest ones are evicted.
+ *
+ * @param <V> Value type
+ */
+class AutnumRangeIndex<V> {
+    /**
+     * Maximum number of ranges that start before an AS number and are checked for containing it. A containing range
+     * further away is not found, which only costs a miss.
+     */
+    static final int MAX_CANDIDATES = 32;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private volatile Ranges ranges = new Ranges(0);
+    private final LongAdder evictions = new LongAdder();
+    private final int maxEntries;
+    private long insertions = 0;
+
+    AutnumRangeIndex (int maxEntries) {
+        this.maxEntries = maxEntries;
+    }
+
+    /**
+     * @param asn AS number
+     * @param now Current time as epoch milliseconds
+     * @return Value of the most specific fresh range that contains the AS number, or null if there is none
+     */
+    @SuppressWarnings("unchecked")
+    V get (long asn, long now) {
+        Ranges ranges = this.ranges;
+
+        // Ranges are sorted by ascending start and descending end, so walking down finds the most specific range first
+        int last = ranges.floor(asn);
+        for (int i = last; i >= 0 && i > last - MAX_CANDIDATES; i--) {
+            if (ranges.ends[i] < asn) continue;
+
+            if (ranges.expires[i] <= now) return null;
+            return (V) ranges.values[i];
+        }
+
+        return null;
+    }
+
+    /**
+     * Add a range, replacing the value of the same range if there is one. Invalid ranges are ignored.
+     *
+     * @param start First AS number of the range
+     * @param end Last AS number of the range
+     * @param value Value
+     * @param expires Time until which the value is fresh as epoch milliseconds
+     */
+    void put (long start, long end, V value, long expires) {
+        if (start < 0 || end < start) return;
+        long now = System.currentTimeMillis();
+
+        lock.lock();
+        try {
+            Ranges current = ranges;
+            int index = current.indexOf(start, end);
+
+            if (index >= 0) {
+                Ranges updated = current.copy(current.size);
+                updated.values[index] = value;
+                updated.expires[index] = expires;
+                updated.inserted[index] = insertions++;
+                ranges = updated;
+                return;
+            }
+
+            // Insert at the position that keeps the order, then evict down to the maximum size
+            int position = -index - 1;
+            Ranges updated = new Ranges(current.size + 1);
+            current.copyTo(0, updated, 0, position);
+            updated.set(position, start, end, value, expires, insertions++);
+            current.copyTo(position, updated, position + 1, current.size - position);
+
+            while (updated.size > maxEntries) {
+                int victim = updated.evictionCandidate(now);
+                if (updated.expires[victim] > now) evictions.increment();
+                updated = updated.without(victim);
+            }
+
+            ranges = updated;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    void clear () {
+        lock.lock();
+        try {
+            ranges = new Ranges(0);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return Number of ranges, including expired ones not yet removed
+     */
+    int size () {
+        return ranges.size;
+    }
+
+    /**
+     * @param now Current time as epoch milliseconds
+     * @return Number of ranges that have not expired
+     */
+    int countFresh (long now) {
+        Ranges ranges = this.ranges;
+
+        int fresh = 0;
+        for (int i = 0; i < ranges.size; i++) if (ranges.expires[i] > now) fresh++;
+
+        return fresh;
+    }
+
+    /**
+     * @return Number of fresh ranges evicted to stay within the maximum number of entries
+     */
+    long getEvictionCount () {
+        return evictions.sum();
+    }
+
+    /**
+     * Immutable once published, sorted by ascending start and then descending end
+     */
+    private static class Ranges {
+        private final int size;
+        private final long[] starts;
+        private final long[] ends;
+        private final long[] expires;
+        private final long[] inserted;
+        private final Object[] values;
+
+        Ranges (int size) {
+            this.size = size;
+            starts = new long[size];
+            ends = new long[size];
+            expires = new long[size];
+            inserted = new long[size];
+            values = new Object[size];
+        }
+
+        /**
+         * @return Index of the last range starting at or before the AS number, or -1
+         */
+        int floor (long asn) {
+            int low = 0;
+            int high = size - 1;
+
+            while (low <= high) {
+                int middle = (low + high) >>> 1;
+                if (starts[middle] <= asn) low = middle + 1;
+                else high = middle - 1;
+            }
+
+            return high;
+        }
+
+        /**
+         * @return Index of the range, or -(insertion point) - 1 if there is none
+         */
+        int indexOf (long start, long end) {
+            int low = 0;
+            int high = size - 1;
+
+            while (low <= high) {
+                int middle = (low + high) >>> 1;
+                int order = starts[middle] != start ? Long.compare(starts[middle], start) : Long.compare(end, ends[middle]);
+
+                if (order < 0) low = middle + 1;
+                else if (order > 0) high = middle - 1;
+                else return middle;
+            }
+
+            return -low - 1;
+        }
+
+        /**
+         * @return Index of the first expired range, or of the oldest range if none expired
+         */
+        int evictionCandidate (long now) {
+            int oldest = 0;
+            for (int i = 0; i < size; i++) {
+                if (expires[i] <= now) return i;
+                if (inserted[i] < inserted[oldest]) oldest = i;
+            }
+
+            return oldest;
+        }
+
+        void set (int index, long start, long end, Object value, long expires, long inserted) {
+            starts[index] = start;
+            ends[index] = end;
+            values[index] = value;
+            this.expires[index] = expires;
+            this.inserted[index] = inserted;
+        }
+
+        void copyTo (int from, Ranges target, int to, int length) {
+            System.arraycopy(starts, from, target.starts, to, length);
+            System.arraycopy(ends, from, target.ends, to, length);
+            System.arraycopy(expires, from, target.expires, to, length);
+            System.arraycopy(inserted, from, target.inserted, to, length);
+            System.arraycopy(values, from, target.values, to, length);
+        }
+
+        Ranges copy (int size) {
+            Ranges copy = new Ranges(size);
+            copyTo(0, copy, 0, Math.min(size, this.size));
+            return copy;
+        }
+
+        Ranges without (int index) {
+            Ranges copy = new Ranges(size - 1);
+            copyTo(0, copy, 0, index);
+            copyTo(index + 1, copy, index, size - index - 1);
+            return copy;
+        }
+    }
+}
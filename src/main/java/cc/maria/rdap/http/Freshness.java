@@ -0,0 +1,71 @@
+/*
+ * Copyright (c) 2023 Maria Merkel
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the license at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the license for the specific language governing permissions and
+ * limitations under the license.
+ */
+
+package cc.maria.rdap.http;
+
+import jakarta.ws.rs.core.HttpHeaders;
+import jakarta.ws.rs.core.Response;
+
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+
+/**
+ * Determines how long an HTTP response may be reused from the Cache-Control and Expires headers it was served with
+ */
+public final class Freshness {
+    private Freshness () {}
+
+    /**
+     * Determine until when a response is fresh, preferring Cache-Control max-age over Expires as per RFC 9111
+     *
+     * @param response HTTP response
+     * @param fallback Expiry to use if the response has no freshness information, as epoch milliseconds
+     * @return Expiry as epoch milliseconds, 0 if the response must not be reused, or the fallback
+     */
+    public static long expires (Response response, long fallback) {
+        String cacheControl = response.getHeaderString(HttpHeaders.CACHE_CONTROL);
+
+        if (cacheControl != null) {
+            // no-cache and no-store override max-age wherever they appear, so all directives are read first
+            long maxAge = -1;
+            for (String directive : cacheControl.split(",")) {
+                directive = directive.trim().toLowerCase();
+
+                if (directive.equals("no-cache") || directive.equals("no-store")) return 0;
+                if (directive.startsWith("max-age=") && maxAge < 0) {
+                    try {
+                        maxAge = Long.parseLong(directive.substring(8).trim());
+                    } catch (NumberFormatException ignored) {}
+                }
+            }
+
+            if (maxAge >= 0) return System.currentTimeMillis() + maxAge * 1000;
+        }
+
+        String expires = response.getHeaderString(HttpHeaders.EXPIRES);
+        if (expires != null) {
+            try {
+                return ZonedDateTime.parse(expires, DateTimeFormatter.RFC_1123_DATE_TIME).toInstant().toEpochMilli();
+            } catch (DateTimeParseException e) {
+                // RFC 9111 treats invalid dates, such as "0", as already expired
+                return 0;
+            }
+        }
+
+        return fallback;
+    }
+}
@@ -0,0 +1,140 @@
+/*
+ * Copyright (c) 2023 Maria Merkel
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the license at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the license for the specific language governing permissions and
+ * limitations under the license.
+ */
+
+package cc.maria.rdap.http;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * In-memory cache of IP network responses, indexed by the address range each network covers.
+ * <p>
+ * A query for any address or prefix within a cached network is answered with that network, so only the first address
+ * of a block needs a request. If several cached networks contain the address, the most specific one is used. Networks
+ * more specific than a cached one that were never queried are not known to the cache, so an address inside such a
+ * network is answered with the cached, less specific network until it expires.
+ * <p>
+ * Networks are kept in an {@link IPRangeIndex}. Entries expire according to the Cache-Control or Expires header of the
+ * response, or after a default time to live. Once the cache holds its maximum number of networks, the oldest ones are
+ * evicted first.
+ */
+public class IPNetworkCache {
+    private final IPRangeIndex<byte[]> networks;
+    private final int maxEntries;
+    private final long defaultTTL;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    /**
+     * Create a cache
+     *
+     * @param maxEntries Maximum number of cached networks
+     * @param defaultTTL Time to keep responses without Cache-Control or Expires header
+     */
+    public IPNetworkCache (int maxEntries, Duration defaultTTL) {
+        if (maxEntries < 1) throw new IllegalArgumentException("The cache must hold at least one network");
+
+        this.networks = new IPRangeIndex<>(maxEntries);
+        this.maxEntries = maxEntries;
+        this.defaultTTL = defaultTTL.toMillis();
+    }
+
+    /**
+     * Get the response body of the most specific fresh network that contains an address or prefix
+     *
+     * @param handle IP address or prefix in CIDR notation
+     * @return Cached body, or null if no fresh cached network contains the address
+     */
+    public byte[] get (String handle) {
+        byte[] body = networks.get(handle, System.currentTimeMillis());
+
+        if (body == null) misses.increment();
+        else hits.increment();
+
+        return body;
+    }
+
+    /**
+     * Cache the response for a network. Networks with invalid bounds or responses that are already expired are not
+     * cached.
+     *
+     * @param startAddress First address of the network
+     * @param endAddress Last address of the network
+     * @param body Response body
+     * @param expires Time until which the body is fresh as epoch milliseconds
+     */
+    public void put (String startAddress, String endAddress, byte[] body, long expires) {
+        if (expires <= System.currentTimeMillis()) return;
+        networks.put(startAddress, endAddress, body, expires);
+    }
+
+    /**
+     * @return Number of items in the eviction queue, including ones of networks that are no longer cached
+     */
+    int getQueueLength () {
+        return networks.getQueueLength();
+    }
+
+    /**
+     * Remove all entries. The counters are not reset.
+     */
+    public void clear () {
+        networks.clear();
+    }
+
+    /**
+     * @return Time to keep responses without Cache-Control or Expires header in milliseconds
+     */
+    public long getDefaultTTL () {
+        return defaultTTL;
+    }
+
+    /**
+     * @return Maximum number of cached networks
+     */
+    public int getMaxEntries () {
+        return maxEntries;
+    }
+
+    /**
+     * @return Number of cached networks, including expired ones not yet removed
+     */
+    public int getEntryCount () {
+        return networks.size();
+    }
+
+    /**
+     * @return Number of lookups answered by a cached network
+     */
+    public long getHitCount () {
+        return hits.sum();
+    }
+
+    /**
+     * @return Number of lookups no fresh cached network contained
+     */
+    public long getMissCount () {
+        return misses.sum();
+    }
+
+    /**
+     * @return Number of networks evicted to stay within the maximum number of entries
+     */
+    public long getEvictionCount () {
+        return networks.getEvictionCount();
+    }
+}
@@ -0,0 +1,283 @@
+/*
+ * Copyright (c) 2023 Maria Merkel
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the license at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the license for the specific language governing permissions and
+ * limitations under the license.
+ */
+
+package cc.maria.rdap.http;
+
+import inet.ipaddr.IPAddress;
+import inet.ipaddr.IPAddressString;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Values indexed by IP address ranges, looked up by the most specific fresh range that contains an address or prefix.
+ * <p>
+ * Ranges are kept in a concurrent skip list ordered by their 128-bit bounds, with IPv4 addresses mapped into the IPv6
+ * space. Once the index holds its maximum number of ranges, the oldest ones are evicted first. The eviction queue can
+ * hold ranges that were replaced or expired in the meantime, it is compacted once it holds twice as many ranges as the
+ * index.
+ *
+ * @param <V> Value type
+ */
+class IPRangeIndex<V> {
+    /**
+     * Maximum number of ranges that start before an address and are checked for containing it. A containing range
+     * further away is not found, which only costs a miss.
+     */
+    static final int MAX_CANDIDATES = 32;
+
+    private final ConcurrentSkipListMap<Range, Entry<V>> ranges = new ConcurrentSkipListMap<>();
+    private final ConcurrentLinkedQueue<Queued> insertionOrder = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger queued = new AtomicInteger();
+    private final AtomicInteger size = new AtomicInteger();
+    private final AtomicLong sequence = new AtomicLong();
+    private final LongAdder evictions = new LongAdder();
+    private final int maxEntries;
+
+    IPRangeIndex (int maxEntries) {
+        this.maxEntries = maxEntries;
+    }
+
+    /**
+     * @param handle IP address or prefix in CIDR notation
+     * @param now Current time as epoch milliseconds
+     * @return Value of the most specific fresh range that contains the address, or null if there is none
+     */
+    V get (String handle, long now) {
+        Range query = range(handle);
+        if (query == null) return null;
+
+        int candidates = 0;
+
+        // Descending from the last range starting at or before the address, more specific ranges come first
+        for (Map.Entry<Range, Entry<V>> candidate : ranges.headMap(new Range(query.startHigh, query.startLow, 0, 0), true).descendingMap().entrySet()) {
+            if (++candidates > MAX_CANDIDATES) break;
+            if (!candidate.getKey().contains(query)) continue;
+
+            Entry<V> entry = candidate.getValue();
+            if (entry.expires <= now) {
+                // A less specific range would be the wrong answer, so an expired match is a miss
+                if (ranges.remove(candidate.getKey(), entry)) size.decrementAndGet();
+                return null;
+            }
+
+            return entry.value;
+        }
+
+        return null;
+    }
+
+    /**
+     * Add a range, replacing the value of the same range if there is one. Ranges with invalid bounds are ignored.
+     *
+     * @param startAddress First address of the range
+     * @param endAddress Last address of the range
+     * @param value Value
+     * @param expires Time until which the value is fresh as epoch milliseconds
+     */
+    void put (String startAddress, String endAddress, V value, long expires) {
+        if (startAddress == null || endAddress == null) return;
+
+        Range start = range(startAddress);
+        Range end = range(endAddress);
+        if (start == null || end == null) return;
+
+        Range range = new Range(start.startHigh, start.startLow, end.endHigh, end.endLow);
+        if (Range.compareBounds(range.startHigh, range.startLow, range.endHigh, range.endLow) > 0) return;
+
+        // A replaced range moves to the back of the queue, its old queue item no longer matches and is skipped
+        Entry<V> entry = new Entry<>(value, expires, sequence.incrementAndGet());
+        boolean added = ranges.put(range, entry) == null;
+        insertionOrder.add(new Queued(range, entry.sequence));
+
+        if (added && size.incrementAndGet() > maxEntries) evict();
+        if (queued.incrementAndGet() > 2 * maxEntries) compact();
+    }
+
+    private void evict () {
+        long now = System.currentTimeMillis();
+
+        while (size.get() > maxEntries) {
+            Queued eldest = insertionOrder.poll();
+            if (eldest == null) return;
+            queued.decrementAndGet();
+
+            Entry<V> entry = ranges.get(eldest.range);
+            if (!eldest.matches(entry) || !ranges.remove(eldest.range, entry)) continue;
+
+            size.decrementAndGet();
+            if (entry.expires > now) evictions.increment();
+        }
+    }
+
+    /**
+     * Drop queue items of ranges that were replaced, expired or evicted since they were queued
+     */
+    private void compact () {
+        insertionOrder.removeIf(item -> {
+            if (item.matches(ranges.get(item.range))) return false;
+
+            queued.decrementAndGet();
+            return true;
+        });
+    }
+
+    void clear () {
+        ranges.clear();
+        insertionOrder.clear();
+        queued.set(0);
+        size.set(0);
+    }
+
+    /**
+     * @return Number of ranges, including expired ones not yet removed
+     */
+    int size () {
+        return ranges.size();
+    }
+
+    /**
+     * @param now Current time as epoch milliseconds
+     * @return Number of ranges that have not expired
+     */
+    int countFresh (long now) {
+        int fresh = 0;
+        for (Entry<V> entry : ranges.values()) if (entry.expires > now) fresh++;
+
+        return fresh;
+    }
+
+    /**
+     * @return Number of fresh ranges evicted to stay within the maximum number of entries
+     */
+    long getEvictionCount () {
+        return evictions.sum();
+    }
+
+    /**
+     * @return Number of items in the eviction queue, including ones of ranges that are no longer indexed
+     */
+    int getQueueLength () {
+        return insertionOrder.size();
+    }
+
+    /**
+     * Convert an address or prefix to its range of 128-bit addresses, with IPv4 mapped to ::ffff:0:0/96
+     *
+     * @return Range, or null if the handle is not an IP address
+     */
+    private static Range range (String handle) {
+        IPAddress address = new IPAddressString(handle).getAddress();
+        if (address == null) return null;
+        if (address.isPrefixed()) address = address.toPrefixBlock();
+
+        long[] lower = bounds(address.getLower().getBytes(), address.isIPv4());
+        long[] upper = bounds(address.getUpper().getBytes(), address.isIPv4());
+
+        return new Range(lower[0], lower[1], upper[0], upper[1]);
+    }
+
+    private static long[] bounds (byte[] bytes, boolean ipv4) {
+        if (ipv4) {
+            long value = 0;
+            for (byte b : bytes) value = value << 8 | (b & 0xff);
+            return new long[] { 0, 0xffff00000000L | value };
+        }
+
+        long high = 0;
+        long low = 0;
+        for (int i = 0; i < 8; i++) high = high << 8 | (bytes[i] & 0xff);
+        for (int i = 8; i < 16; i++) low = low << 8 | (bytes[i] & 0xff);
+
+        return new long[] { high, low };
+    }
+
+    private static class Entry<V> {
+        private final V value;
+        private final long expires;
+        private final long sequence;
+
+        Entry (V value, long expires, long sequence) {
+            this.value = value;
+            this.expires = expires;
+            this.sequence = sequence;
+        }
+    }
+
+    /**
+     * Range in the eviction queue, together with the sequence number of the entry it was queued for
+     */
+    private static class Queued {
+        private final Range range;
+        private final long sequence;
+
+        Queued (Range range, long sequence) {
+            this.range = range;
+            this.sequence = sequence;
+        }
+
+        boolean matches (Entry<?> entry) {
+            return entry != null && entry.sequence == sequence;
+        }
+    }
+
+    /**
+     * Address range ordered by ascending start and then descending end, so that among ranges with the same start the
+     * more specific one comes last
+     */
+    private static class Range implements Comparable<Range> {
+        private final long startHigh;
+        private final long startLow;
+        private final long endHigh;
+        private final long endLow;
+
+        Range (long startHigh, long startLow, long endHigh, long endLow) {
+            this.startHigh = startHigh;
+            this.startLow = startLow;
+            this.endHigh = endHigh;
+            this.endLow = endLow;
+        }
+
+        boolean contains (Range other) {
+            return compareBounds(startHigh, startLow, other.startHigh, other.startLow) <= 0 && compareBounds(endHigh, endLow, other.endHigh, other.endLow) >= 0;
+        }
+
+        static int compareBounds (long aHigh, long aLow, long bHigh, long bLow) {
+            int high = Long.compareUnsigned(aHigh, bHigh);
+            return high != 0 ? high : Long.compareUnsigned(aLow, bLow);
+        }
+
+        @Override
+        public int compareTo (Range other) {
+            int start = compareBounds(startHigh, startLow, other.startHigh, other.startLow);
+            return start != 0 ? start : compareBounds(other.endHigh, other.endLow, endHigh, endLow);
+        }
+
+        @Override
+        public boolean equals (Object other) {
+            return other instanceof Range && compareTo((Range) other) == 0;
+        }
+
+        @Override
+        public int hashCode () {
+            return Long.hashCode(startHigh) * 31 * 31 * 31 + Long.hashCode(startLow) * 31 * 31 + Long.hashCode(endHigh) * 31 + Long.hashCode(endLow);
+        }
+    }
+}
@@ -0,0 +1,199 @@
+/*
+ * Copyright (c) 2023 Maria Merkel
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the license at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the license for the specific language governing permissions and
+ * limitations under the license.
+ */
+
+package cc.maria.rdap.http;
+
+import java.time.Duration;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Bounded in-memory cache of lookups that found nothing, such as objects the responsible server answered with 404 Not
+ * Found and objects no bootstrap registry entry is responsible for.
+ * <p>
+ * Entries expire after a fixed time to live, which should be short so newly registered objects are found soon. Once
+ * the cache holds its maximum number of entries, the least recently used ones are evicted. Like the
+ * {@link ResponseCache}, the cache is split into independently locked segments.
+ */
+public class NegativeCache {
+    private final Segment[] segments = new Segment[ResponseCache.SEGMENTS];
+    private final int maxEntries;
+    private final long ttl;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    /**
+     * Create a cache
+     *
+     * @param maxEntries Maximum number of cached misses
+     * @param ttl Time to remember a miss
+     */
+    public NegativeCache (int maxEntries, Duration ttl) {
+        if (maxEntries < segments.length) throw new IllegalArgumentException("The cache must hold at least " + segments.length + " entries");
+
+        this.maxEntries = maxEntries;
+        this.ttl = ttl.toMillis();
+        for (int i = 0; i < segments.length; i++) segments[i] = new Segment(maxEntries / segments.length);
+    }
+
+    /**
+     * Check whether a lookup is known to find nothing
+     *
+     * @param key Object URL or bootstrap lookup
+     * @return Whether a miss for the key was recorded within the time to live
+     */
+    public boolean contains (String key) {
+        boolean found = segment(key).contains(key, System.currentTimeMillis());
+
+        if (found) hits.increment();
+        else misses.increment();
+
+        return found;
+    }
+
+    /**
+     * Record that a lookup found nothing
+     *
+     * @param key Object URL or bootstrap lookup
+     */
+    public void add (String key) {
+        segment(key).add(key, System.currentTimeMillis() + ttl);
+    }
+
+    /**
+     * Remove all entries. The counters are not reset.
+     */
+    public void clear () {
+        for (Segment segment : segments) segment.clear();
+    }
+
+    /**
+     * @return Maximum number of cached misses
+     */
+    public int getMaxEntries () {
+        return maxEntries;
+    }
+
+    /**
+     * @return Time to remember a miss in milliseconds
+     */
+    public long getTTL () {
+        return ttl;
+    }
+
+    /**
+     * @return Number of cached misses, including expired ones not yet removed
+     */
+    public int getEntryCount () {
+        int count = 0;
+        for (Segment segment : segments) count += segment.count();
+        return count;
+    }
+
+    /**
+     * @return Number of lookups answered from the cache
+     */
+    public long getHitCount () {
+        return hits.sum();
+    }
+
+    /**
+     * @return Number of lookups not found in the cache
+     */
+    public long getMissCount () {
+        return misses.sum();
+    }
+
+    /**
+     * @return Number of entries evicted to stay within the maximum number of entries
+     */
+    public long getEvictionCount () {
+        return evictions.sum();
+    }
+
+    private Segment segment (String key) {
+        int hash = key.hashCode();
+        return segments[((hash ^ (hash >>> 16)) & Integer.MAX_VALUE) % segments.length];
+    }
+
+    private class Segment {
+        private final ReentrantLock lock = new ReentrantLock();
+        private final LinkedHashMap<String, Long> entries = new LinkedHashMap<>(16, 0.75f, true);
+        private final int maxEntries;
+
+        Segment (int maxEntries) {
+            this.maxEntries = maxEntries;
+        }
+
+        boolean contains (String key, long now) {
+            lock.lock();
+            try {
+                Long expires = entries.get(key);
+                if (expires == null) return false;
+
+                if (expires <= now) {
+                    entries.remove(key);
+                    return false;
+                }
+
+                return true;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        void add (String key, long expires) {
+            lock.lock();
+            try {
+                entries.put(key, expires);
+
+                long now = System.currentTimeMillis();
+                for (Iterator<Map.Entry<String, Long>> it = entries.entrySet().iterator(); entries.size() > maxEntries && it.hasNext(); ) {
+                    Map.Entry<String, Long> eldest = it.next();
+                    if (eldest.getKey().equals(key)) continue;
+
+                    it.remove();
+                    if (eldest.getValue() > now) evictions.increment();
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        int count () {
+            lock.lock();
+            try {
+                return entries.size();
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        void clear () {
+            lock.lock();
+            try {
+                entries.clear();
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+}
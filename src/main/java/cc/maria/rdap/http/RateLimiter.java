@@ -0,0 +1,272 @@
+/*
+ * Copyright (c) 2023 Maria Merkel
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the license at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the license for the specific language governing permissions and
+ * limitations under the license.
+ */
+
+package cc.maria.rdap.http;
+
+import jakarta.ws.rs.core.Response;
+
+import java.time.Duration;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Limits the rate of requests to each RDAP service URL with a token bucket, and pauses requests to a service URL after
+ * it answered with 429 Too Many Requests.
+ * <p>
+ * Each service URL gets its own bucket, which holds up to a burst of requests and refills at a steady rate. A request
+ * that finds the bucket empty reserves the next token and waits for it, so concurrent requests to the same server are
+ * spread out instead of being rejected. After a 429 response, no further requests are sent to the service URL until
+ * its Retry-After header allows, or, if it has none, for a pause that doubles with every consecutive 429 response
+ * starting at {@link #INITIAL_BACKOFF_NANOS}. Requests that would have to wait longer than the maximum wait are not
+ * sent at all. A limiter can be shared by several clients.
+ */
+public class RateLimiter {
+    /**
+     * Pause after the first 429 response without a Retry-After header
+     */
+    static final long INITIAL_BACKOFF_NANOS = 1_000_000_000L;
+
+    /**
+     * Longest pause after repeated 429 responses without a Retry-After header
+     */
+    static final long MAX_BACKOFF_NANOS = 300_000_000_000L;
+
+    private final ConcurrentHashMap<String, Bucket> buckets = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, double[]> limits = new ConcurrentHashMap<>();
+    private final double rate;
+    private final int burst;
+
+    private volatile long maxWait = Duration.ofSeconds(30).toNanos();
+    private volatile int maxRetries = 3;
+
+    /**
+     * Create a limiter that applies the same limit to every service URL
+     *
+     * @param requestsPerSecond Steady rate of requests to each service URL
+     * @param burst Number of requests that can be sent at once to a service URL that was idle
+     */
+    public RateLimiter (double requestsPerSecond, int burst) {
+        checkLimit(requestsPerSecond, burst);
+
+        this.rate = requestsPerSecond / 1e9;
+        this.burst = burst;
+    }
+
+    /**
+     * Set a different limit for one service URL, such as a server that publishes a stricter limit than the others
+     *
+     * @param serviceURL Service URL as listed in the bootstrap registry
+     * @param requestsPerSecond Steady rate of requests to the service URL
+     * @param burst Number of requests that can be sent at once to the service URL while it is idle
+     */
+    public void setLimit (String serviceURL, double requestsPerSecond, int burst) {
+        checkLimit(requestsPerSecond, burst);
+
+        String key = normalize(serviceURL);
+        limits.put(key, new double[] {requestsPerSecond / 1e9, burst});
+        buckets.remove(key);
+    }
+
+    /**
+     * Set how long a request may wait for its turn. Requests that would have to wait longer are not sent.
+     *
+     * @param maxWait Maximum time to wait before sending a request
+     */
+    public void setMaxWait (Duration maxWait) {
+        this.maxWait = maxWait.toNanos();
+    }
+
+    public Duration getMaxWait () {
+        return Duration.ofNanos(maxWait);
+    }
+
+    /**
+     * Set how often a request that was answered with 429 Too Many Requests is sent again after the server's pause
+     *
+     * @param maxRetries Maximum number of retries of a rate limited request
+     */
+    public void setMaxRetries (int maxRetries) {
+        this.maxRetries = maxRetries;
+    }
+
+    public int getMaxRetries () {
+        return maxRetries;
+    }
+
+    /**
+     * Reserve the next request to a service URL
+     *
+     * @param serviceURL Service URL the request is sent to
+     * @return Nanoseconds to wait before sending the request, or -1 if that would exceed the maximum wait, in which
+     * case nothing is reserved
+     */
+    public long acquire (String serviceURL) {
+        return acquire(serviceURL, System.nanoTime());
+    }
+
+    long acquire (String serviceURL, long now) {
+        return bucket(serviceURL, now).acquire(now, maxWait);
+    }
+
+    /**
+     * Get the time until a request to a service URL could be sent, without reserving it
+     *
+     * @param serviceURL Service URL
+     * @return Nanoseconds until the next request may be sent
+     */
+    public long getDelay (String serviceURL) {
+        return getDelay(serviceURL, System.nanoTime());
+    }
+
+    long getDelay (String serviceURL, long now) {
+        return bucket(serviceURL, now).delay(now);
+    }
+
+    /**
+     * Check whether requests to a service URL are paused after a 429 response. Requests that were waiting for their
+     * turn when the pause started have to reserve a new one.
+     *
+     * @param serviceURL Service URL
+     * @return Whether the service URL asked to wait and the pause is not over yet
+     */
+    public boolean isPaused (String serviceURL) {
+        return isPaused(serviceURL, System.nanoTime());
+    }
+
+    boolean isPaused (String serviceURL, long now) {
+        Bucket bucket = buckets.get(normalize(serviceURL));
+        return bucket != null && bucket.isPaused(now);
+    }
+
+    /**
+     * Pause requests to a service URL after it answered with 429 Too Many Requests
+     *
+     * @param serviceURL Service URL that rejected the request
+     * @param retryAfter Milliseconds the server asked to wait, or -1 to back off exponentially
+     */
+    public void backOff (String serviceURL, long retryAfter) {
+        backOff(serviceURL, retryAfter, System.nanoTime());
+    }
+
+    void backOff (String serviceURL, long retryAfter, long now) {
+        bucket(serviceURL, now).backOff(now, retryAfter < 0 ? -1 : retryAfter * 1_000_000);
+    }
+
+    /**
+     * Record that a service URL accepted a request, which resets the exponential backoff
+     *
+     * @param serviceURL Service URL
+     */
+    public void recordSuccess (String serviceURL) {
+        Bucket bucket = buckets.get(normalize(serviceURL));
+        if (bucket != null) bucket.recordSuccess();
+    }
+
+    /**
+     * Read the Retry-After header of a response, which is either a number of seconds or an HTTP date
+     *
+     * @param response HTTP response
+     * @return Milliseconds to wait, or -1 if the response has no valid Retry-After header
+     */
+    public static long retryAfter (Response response) {
+        String retryAfter = response.getHeaderString("Retry-After");
+        if (retryAfter == null) return -1;
+
+        try {
+            return Math.max(Long.parseLong(retryAfter.trim()) * 1000, 0);
+        } catch (NumberFormatException ignored) {}
+
+        try {
+            return Math.max(ZonedDateTime.parse(retryAfter.trim(), DateTimeFormatter.RFC_1123_DATE_TIME).toInstant().toEpochMilli() - System.currentTimeMillis(), 0);
+        } catch (DateTimeParseException e) {
+            return -1;
+        }
+    }
+
+    private Bucket bucket (String serviceURL, long now) {
+        return buckets.computeIfAbsent(normalize(serviceURL), key -> {
+            double[] limit = limits.get(key);
+            return limit == null ? new Bucket(rate, burst, now) : new Bucket(limit[0], (int) limit[1], now);
+        });
+    }
+
+    private static String normalize (String serviceURL) {
+        return serviceURL.endsWith("/") ? serviceURL : serviceURL + "/";
+    }
+
+    private static void checkLimit (double requestsPerSecond, int burst) {
+        if (!(requestsPerSecond > 0) || Double.isInfinite(requestsPerSecond)) throw new IllegalArgumentException("The rate must be a positive number of requests per second");
+        if (burst < 1) throw new IllegalArgumentException("The burst must allow at least one request");
+    }
+
+    private static class Bucket {
+        private final double rate;
+        private final int burst;
+
+        // Tokens may go negative, each missing token is a request that reserved a later slot
+        private double tokens;
+        private long updated;
+        private long pausedUntil;
+        private int throttled = 0;
+
+        Bucket (double rate, int burst, long now) {
+            this.rate = rate;
+            this.burst = burst;
+            this.tokens = burst;
+            this.updated = now;
+            this.pausedUntil = now;
+        }
+
+        synchronized long acquire (long now, long maxWait) {
+            long wait = delay(now);
+            if (wait > maxWait) return -1;
+
+            tokens--;
+            return wait;
+        }
+
+        synchronized long delay (long now) {
+            // While paused, updated lies in the future and the bucket does not refill
+            if (now - updated > 0) {
+                tokens = Math.min(burst, tokens + (now - updated) * rate);
+                updated = now;
+            }
+
+            return Math.max(updated - now, 0) + (tokens >= 1 ? 0 : (long) Math.ceil((1 - tokens) / rate));
+        }
+
+        synchronized void backOff (long now, long pause) {
+            if (pause < 0) pause = Math.min(INITIAL_BACKOFF_NANOS << Math.min(throttled, 20), MAX_BACKOFF_NANOS);
+            throttled++;
+
+            // Waiting requests reserve again, and resume one at a time at the steady rate once the pause is over
+            delay(now);
+            tokens = 1;
+            pausedUntil = Math.max(pausedUntil, now + pause);
+            if (pausedUntil - updated > 0) updated = pausedUntil;
+        }
+
+        synchronized boolean isPaused (long now) {
+            return pausedUntil - now > 0;
+        }
+
+        synchronized void recordSuccess () {
+            throttled = 0;
+        }
+    }
+}
@@ -0,0 +1,247 @@
+/*
+ * Copyright (c) 2023 Maria Merkel
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the license at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the license for the specific language governing permissions and
+ * limitations under the license.
+ */
+
+package cc.maria.rdap.http;
+
+import java.time.Duration;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Bounded in-memory cache of RDAP response bodies, keyed by the object URL they were requested from.
+ * <p>
+ * Entries expire according to the Cache-Control or Expires header of the response, or after a default time to live if
+ * the server did not send either. Once the cache holds more than its maximum size, the least recently used entries are
+ * evicted.
+ * <p>
+ * The cache is split into {@link #SEGMENTS} segments by the hash of the key, each with its own lock and an equal share
+ * of the maximum size, so concurrent queries for different objects rarely wait for each other. One cache can be shared
+ * by several clients.
+ */
+public class ResponseCache {
+    /**
+     * Number of independently locked segments
+     */
+    static final int SEGMENTS = 16;
+
+    private final Segment[] segments = new Segment[SEGMENTS];
+    private final long maxSize;
+    private final long defaultTTL;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    /**
+     * Create a cache
+     *
+     * @param maxSize Maximum total size of the cached response bodies in bytes
+     * @param defaultTTL Time to keep responses without Cache-Control or Expires header
+     */
+    public ResponseCache (long maxSize, Duration defaultTTL) {
+        if (maxSize < SEGMENTS) throw new IllegalArgumentException("The maximum size must be at least " + SEGMENTS + " bytes");
+
+        this.maxSize = maxSize;
+        this.defaultTTL = defaultTTL.toMillis();
+        for (int i = 0; i < SEGMENTS; i++) segments[i] = new Segment(maxSize / SEGMENTS);
+    }
+
+    /**
+     * Get a fresh cached response body
+     *
+     * @param url Object URL
+     * @return Cached body, or null if there is no fresh entry for the URL
+     */
+    public byte[] get (String url) {
+        byte[] body = segment(url).get(url, System.currentTimeMillis());
+
+        if (body == null) misses.increment();
+        else hits.increment();
+
+        return body;
+    }
+
+    /**
+     * Cache a response body. Bodies that are already expired or larger than a segment are not cached.
+     *
+     * @param url Object URL
+     * @param body Response body
+     * @param expires Time until which the body is fresh as epoch milliseconds
+     */
+    public void put (String url, byte[] body, long expires) {
+        if (expires <= System.currentTimeMillis()) return;
+        segment(url).put(url, new Entry(body, expires));
+    }
+
+    /**
+     * Remove all entries. The counters are not reset.
+     */
+    public void clear () {
+        for (Segment segment : segments) segment.clear();
+    }
+
+    /**
+     * @return Time to keep responses without Cache-Control or Expires header in milliseconds
+     */
+    public long getDefaultTTL () {
+        return defaultTTL;
+    }
+
+    /**
+     * @return Maximum total size of the cached response bodies in bytes
+     */
+    public long getMaxSize () {
+        return maxSize;
+    }
+
+    /**
+     * @return Total size of the cached response bodies in bytes, including expired ones not yet removed
+     */
+    public long getSize () {
+        long size = 0;
+        for (Segment segment : segments) size += segment.size;
+        return size;
+    }
+
+    /**
+     * @return Number of cached responses, including expired ones not yet removed
+     */
+    public int getEntryCount () {
+        int count = 0;
+        for (Segment segment : segments) count += segment.count();
+        return count;
+    }
+
+    /**
+     * @return Number of lookups that found a fresh response
+     */
+    public long getHitCount () {
+        return hits.sum();
+    }
+
+    /**
+     * @return Number of lookups that found no fresh response
+     */
+    public long getMissCount () {
+        return misses.sum();
+    }
+
+    /**
+     * @return Number of responses evicted to stay within the maximum size
+     */
+    public long getEvictionCount () {
+        return evictions.sum();
+    }
+
+    private Segment segment (String url) {
+        int hash = url.hashCode();
+        return segments[((hash ^ (hash >>> 16)) & Integer.MAX_VALUE) % SEGMENTS];
+    }
+
+    private static class Entry {
+        private final byte[] body;
+        private final long expires;
+
+        Entry (byte[] body, long expires) {
+            this.body = body;
+            this.expires = expires;
+        }
+    }
+
+    private class Segment {
+        private final ReentrantLock lock = new ReentrantLock();
+        private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+        private final long maxSize;
+        private volatile long size = 0;
+
+        Segment (long maxSize) {
+            this.maxSize = maxSize;
+        }
+
+        byte[] get (String url, long now) {
+            lock.lock();
+            try {
+                Entry entry = entries.get(url);
+                if (entry == null) return null;
+
+                if (entry.expires <= now) {
+                    entries.remove(url);
+                    size -= entry.body.length;
+                    return null;
+                }
+
+                return entry.body;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        void put (String url, Entry entry) {
+            if (entry.body.length > maxSize) return;
+
+            lock.lock();
+            try {
+                Entry previous = entries.put(url, entry);
+                long size = this.size + entry.body.length - (previous == null ? 0 : previous.body.length);
+
+                // Expired entries are dropped first, then the least recently used ones
+                long now = System.currentTimeMillis();
+                for (Iterator<Entry> it = entries.values().iterator(); size > maxSize && it.hasNext(); ) {
+                    Entry candidate = it.next();
+                    if (candidate.expires <= now) {
+                        it.remove();
+                        size -= candidate.body.length;
+                    }
+                }
+
+                for (Iterator<Map.Entry<String, Entry>> it = entries.entrySet().iterator(); size > maxSize && it.hasNext(); ) {
+                    Map.Entry<String, Entry> eldest = it.next();
+                    if (eldest.getValue() == entry) continue;
+
+                    it.remove();
+                    size -= eldest.getValue().body.length;
+                    evictions.increment();
+                }
+
+                this.size = size;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        int count () {
+            lock.lock();
+            try {
+                return entries.size();
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        void clear () {
+            lock.lock();
+            try {
+                entries.clear();
+                size = 0;
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+}
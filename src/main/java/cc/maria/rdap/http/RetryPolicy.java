@@ -0,0 +1,71 @@
+/*
+ * Copyright (c) 2023 Maria Merkel
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the license at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the license for the specific language governing permissions and
+ * limitations under the license.
+ */
+
+package cc.maria.rdap.http;
+
+import java.time.Duration;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Decides how often and after which pause a failed RDAP query is sent again. RDAP queries are idempotent GET requests,
+ * so they can be retried after connection errors, timeouts and server errors without side effects.
+ * <p>
+ * The pause before each retry is drawn at random between zero and an exponentially growing cap ("full jitter"), so
+ * that clients which failed at the same time do not all retry at the same time.
+ */
+public class RetryPolicy {
+    private final int maxRetries;
+    private final long initialBackoff;
+    private final long maxBackoff;
+
+    /**
+     * Create a retry policy
+     *
+     * @param maxRetries Maximum number of retries after the first attempt
+     * @param initialBackoff Cap of the pause before the first retry, doubling with every further retry
+     * @param maxBackoff Largest cap of the pause before a retry
+     */
+    public RetryPolicy (int maxRetries, Duration initialBackoff, Duration maxBackoff) {
+        if (maxRetries < 0) throw new IllegalArgumentException("The number of retries must not be negative");
+        if (initialBackoff.isNegative() || maxBackoff.compareTo(initialBackoff) < 0) throw new IllegalArgumentException("The backoff must not be negative or exceed its maximum");
+
+        this.maxRetries = maxRetries;
+        this.initialBackoff = initialBackoff.toNanos();
+        this.maxBackoff = maxBackoff.toNanos();
+    }
+
+    public int getMaxRetries () {
+        return maxRetries;
+    }
+
+    /**
+     * Draw the pause before a retry
+     *
+     * @param retry Number of retries that were already made
+     * @return Pause in nanoseconds
+     */
+    public long getBackoff (int retry) {
+        return (long) (ThreadLocalRandom.current().nextDouble() * getBackoffCap(retry));
+    }
+
+    /**
+     * @param retry Number of retries that were already made
+     * @return Largest pause in nanoseconds before the next retry
+     */
+    long getBackoffCap (int retry) {
+        return (long) Math.min(maxBackoff, initialBackoff * Math.pow(2, retry));
+    }
+}
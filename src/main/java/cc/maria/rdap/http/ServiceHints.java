@@ -0,0 +1,161 @@
+/*
+ * Copyright (c) 2023 Maria Merkel
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the license at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the license for the specific language governing permissions and
+ * limitations under the license.
+ */
+
+package cc.maria.rdap.http;
+
+import java.time.Duration;
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Remembers which RDAP server is authoritative for an IP network, a block of AS numbers or a TLD, learned from
+ * redirects. RIR servers redirect queries for resources that were transferred to another RIR, and the bootstrap
+ * registries only list the RIR a block was originally assigned to, so later queries in the same range can go straight
+ * to the server the redirect ended at instead of paying for the extra round trip.
+ * <p>
+ * Networks and AS number blocks are kept in the same range indexes as the {@link IPNetworkCache} and the
+ * {@link AutnumCache} use, but separately from them, so the most specific known range wins. Hints expire after a fixed
+ * time to live, after which queries follow the bootstrap registries again.
+ */
+public class ServiceHints {
+    private final IPRangeIndex<String> networks;
+    private final AutnumRangeIndex<String> autnums;
+    private final ConcurrentHashMap<String, Hint> tlds = new ConcurrentHashMap<>();
+    private final int maxEntries;
+    private final long ttl;
+
+    /**
+     * Create an empty set of hints
+     *
+     * @param maxEntries Maximum number of hints for each of networks, AS number blocks and TLDs
+     * @param ttl Time to remember where a range is served
+     */
+    public ServiceHints (int maxEntries, Duration ttl) {
+        if (maxEntries < 1) throw new IllegalArgumentException("At least one hint of each kind must be allowed");
+
+        this.networks = new IPRangeIndex<>(maxEntries);
+        this.autnums = new AutnumRangeIndex<>(maxEntries);
+        this.maxEntries = maxEntries;
+        this.ttl = ttl.toMillis();
+    }
+
+    /**
+     * @param handle IP address or prefix in CIDR notation
+     * @return Service URL of the server authoritative for the most specific known network containing the address, or
+     * null if there is none
+     */
+    public String getForIP (String handle) {
+        return networks.get(handle, System.currentTimeMillis());
+    }
+
+    /**
+     * @param asn AS number
+     * @return Service URL of the server authoritative for the most specific known block containing the number, or null
+     * if there is none
+     */
+    public String getForASN (long asn) {
+        return autnums.get(asn, System.currentTimeMillis());
+    }
+
+    /**
+     * @param fqdn Domain name
+     * @return Service URL of the server authoritative for the TLD of the domain, or null if there is none
+     */
+    public String getForDomain (String fqdn) {
+        String tld = tld(fqdn);
+        Hint hint = tlds.get(tld);
+        if (hint == null) return null;
+
+        if (hint.expires <= System.currentTimeMillis()) {
+            tlds.remove(tld, hint);
+            return null;
+        }
+
+        return hint.serviceURL;
+    }
+
+    /**
+     * Remember the server authoritative for a network
+     *
+     * @param startAddress First address of the network
+     * @param endAddress Last address of the network
+     * @param serviceURL Service URL of the server
+     */
+    public void putNetwork (String startAddress, String endAddress, String serviceURL) {
+        networks.put(startAddress, endAddress, serviceURL, System.currentTimeMillis() + ttl);
+    }
+
+    /**
+     * Remember the server authoritative for a block of AS numbers
+     *
+     * @param start First AS number of the block
+     * @param end Last AS number of the block
+     * @param serviceURL Service URL of the server
+     */
+    public void putAutnums (long start, long end, String serviceURL) {
+        autnums.put(start, end, serviceURL, System.currentTimeMillis() + ttl);
+    }
+
+    /**
+     * Remember the server authoritative for the TLD of a domain. Once the maximum number of TLDs is reached, new TLDs
+     * are only remembered after expired ones were looked up again.
+     *
+     * @param fqdn Domain name
+     * @param serviceURL Service URL of the server
+     */
+    public void putDomain (String fqdn, String serviceURL) {
+        String tld = tld(fqdn);
+        if (tld.isEmpty() || (tlds.size() >= maxEntries && !tlds.containsKey(tld))) return;
+
+        tlds.put(tld, new Hint(serviceURL, System.currentTimeMillis() + ttl));
+    }
+
+    /**
+     * Forget all hints
+     */
+    public void clear () {
+        networks.clear();
+        autnums.clear();
+        tlds.clear();
+    }
+
+    /**
+     * @return Number of remembered networks, AS number blocks and TLDs that have not expired
+     */
+    public int getEntryCount () {
+        long now = System.currentTimeMillis();
+
+        int tlds = 0;
+        for (Hint hint : this.tlds.values()) if (hint.expires > now) tlds++;
+
+        return networks.countFresh(now) + autnums.countFresh(now) + tlds;
+    }
+
+    private static String tld (String fqdn) {
+        if (fqdn.endsWith(".")) fqdn = fqdn.substring(0, fqdn.length() - 1);
+        return fqdn.substring(fqdn.lastIndexOf('.') + 1).toLowerCase(Locale.ROOT);
+    }
+
+    private static class Hint {
+        private final String serviceURL;
+        private final long expires;
+
+        Hint (String serviceURL, long expires) {
+            this.serviceURL = serviceURL;
+            this.expires = expires;
+        }
+    }
+}
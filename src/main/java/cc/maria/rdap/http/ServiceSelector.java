@@ -0,0 +1,192 @@
+/*
+ * Copyright (c) 2024 Maria Merkel
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the license at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the license for the specific language governing permissions and
+ * limitations under the license.
+ */
+package cc.maria.rdap.http;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Chooses between the alternative URLs a bootstrap registry lists for an RDAP service, based on the latency and error
+ * rate observed for each of them.
+ * <p>
+ * HTTPS URLs are always preferred over plain HTTP URLs, as RFC 9224 asks. Among URLs of the same scheme, the one with
+ * the lowest expected latency is tried first, where every recent error counts as {@link #ERROR_PENALTY_NANOS} of
+ * latency. Errors are forgotten over time with a half-life of {@link #ERROR_HALF_LIFE_NANOS}, so an endpoint that
+ * recovers is tried again. URLs without any observations keep their registry order ahead of degraded ones.
+ * <p>
+ * The latencies of the last {@link #SAMPLES} successful requests to each URL are kept as well, so that percentiles of
+ * the latency can be used to decide when a request is slower than usual.
+ */
+public class ServiceSelector {
+    /**
+     * Weight of the newest observation in the moving averages
+     */
+    static final double SMOOTHING = 0.2;
+
+    /**
+     * Latency an error rate of 1 adds to an endpoint
+     */
+    static final double ERROR_PENALTY_NANOS = 10e9;
+
+    /**
+     * Time after which half of the error rate of an endpoint is forgotten
+     */
+    static final double ERROR_HALF_LIFE_NANOS = 30e9;
+
+    /**
+     * Number of recent latencies kept for each endpoint
+     */
+    static final int SAMPLES = 64;
+
+    /**
+     * Number of latencies needed before percentiles are reported
+     */
+    static final int MIN_SAMPLES = 8;
+
+    private final ConcurrentHashMap<String, Endpoint> endpoints = new ConcurrentHashMap<>();
+
+    /**
+     * Order the URLs of a service by preference
+     *
+     * @param urls Alternative URLs of a service
+     * @return New list with the URLs in the order they should be tried
+     */
+    public List<String> order (List<String> urls) {
+        ArrayList<String> ordered = new ArrayList<>(urls);
+        if (ordered.size() < 2) return ordered;
+
+        // Score every URL once, so concurrent observations cannot change the scores while the list is sorted
+        long now = System.nanoTime();
+        HashMap<String, Double> scores = new HashMap<>();
+        for (String url : ordered) scores.computeIfAbsent(url, u -> score(u, now));
+
+        ordered.sort(Comparator.<String>comparingInt(url -> url.regionMatches(true, 0, "https:", 0, 6) ? 0 : 1).thenComparingDouble(scores::get));
+
+        return ordered;
+    }
+
+    /**
+     * Record a successful request to a service URL
+     *
+     * @param url Service URL
+     * @param nanos Time the request took in nanoseconds
+     */
+    public void recordSuccess (String url, long nanos) {
+        endpoints.computeIfAbsent(url, u -> new Endpoint()).record(nanos, false, System.nanoTime());
+    }
+
+    /**
+     * Record a failed request to a service URL, such as a timeout, a refused connection or a server error
+     *
+     * @param url Service URL
+     */
+    public void recordFailure (String url) {
+        endpoints.computeIfAbsent(url, u -> new Endpoint()).record(0, true, System.nanoTime());
+    }
+
+    /**
+     * Get the average latency observed for a service URL
+     *
+     * @param url Service URL
+     * @return Moving average of the latency of successful requests in nanoseconds, or -1 if there were none
+     */
+    public double getLatency (String url) {
+        Endpoint endpoint = endpoints.get(url);
+        return endpoint == null ? -1 : endpoint.latency();
+    }
+
+    /**
+     * Get the error rate observed for a service URL
+     *
+     * @param url Service URL
+     * @return Moving average of the error rate between 0 and 1, with older errors decayed
+     */
+    public double getErrorRate (String url) {
+        Endpoint endpoint = endpoints.get(url);
+        return endpoint == null ? 0 : endpoint.errorRate(System.nanoTime());
+    }
+
+    /**
+     * Get a percentile of the latencies recently observed for a service URL
+     *
+     * @param url Service URL
+     * @param percentile Percentile between 0 and 1, such as 0.95
+     * @return Latency in nanoseconds that the given share of recent successful requests did not exceed, or -1 if
+     * there are not enough observations yet
+     */
+    public long getLatencyPercentile (String url, double percentile) {
+        Endpoint endpoint = endpoints.get(url);
+        return endpoint == null ? -1 : endpoint.percentile(percentile);
+    }
+
+    private double score (String url, long now) {
+        Endpoint endpoint = endpoints.get(url);
+        return endpoint == null ? 0 : endpoint.score(now);
+    }
+
+    private static class Endpoint {
+        private double latency = -1;
+        private double errorRate = 0;
+        private long updated;
+
+        // Ring buffer of the latest latencies
+        private final long[] samples = new long[SAMPLES];
+        private int next = 0;
+        private int count = 0;
+
+        synchronized void record (long nanos, boolean failed, long now) {
+            double decayed = decayedErrorRate(now);
+            errorRate = decayed + SMOOTHING * ((failed ? 1 : 0) - decayed);
+            updated = now;
+
+            if (!failed) {
+                latency = latency < 0 ? nanos : latency + SMOOTHING * (nanos - latency);
+                samples[next] = nanos;
+                next = (next + 1) % SAMPLES;
+                count = Math.min(count + 1, SAMPLES);
+            }
+        }
+
+        synchronized long percentile (double percentile) {
+            if (count < MIN_SAMPLES) return -1;
+
+            long[] sorted = Arrays.copyOf(samples, count);
+            Arrays.sort(sorted);
+
+            return sorted[Math.min(count - 1, Math.max(0, (int) Math.ceil(percentile * count) - 1))];
+        }
+
+        synchronized double score (long now) {
+            return Math.max(latency, 0) + decayedErrorRate(now) * ERROR_PENALTY_NANOS;
+        }
+
+        synchronized double latency () {
+            return latency;
+        }
+
+        synchronized double errorRate (long now) {
+            return decayedErrorRate(now);
+        }
+
+        private double decayedErrorRate (long now) {
+            return errorRate * Math.pow(0.5, (now - updated) / ERROR_HALF_LIFE_NANOS);
+        }
+    }
+}
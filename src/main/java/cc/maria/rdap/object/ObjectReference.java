@@ -20,9 +20,15 @@ import cc.maria.rdap.RDAPClient;
 import cc.maria.rdap.bootstrap.*;
 import cc.maria.rdap.exception.UnknownObjectTypeException;
 import cc.maria.rdap.exception.UnknownServiceException;
+import cc.maria.rdap.http.NegativeCache;
+import cc.maria.rdap.http.ServiceHints;
 import inet.ipaddr.IPAddressString;
+import jakarta.ws.rs.client.Client;
 import jakarta.ws.rs.client.WebTarget;
 
+import java.util.ArrayList;
+import java.util.List;
+
 public class ObjectReference {
     private final String handle;
     private final WebTarget service;
@@ -83,35 +89,165 @@ public class ObjectReference {
 
         if (client.getServiceURL() != null) return client.getClient().target(client.getServiceURL());
 
-        String serviceURL;
+        return client.getClient().target(getServiceURLs(client).get(0));
+    }
+
+    /**
+     * Check whether this reference was created with a fixed service instead of being bootstrapped
+     *
+     * @return Whether a service was passed to the constructor
+     */
+    public boolean hasService () {
+        return service != null;
+    }
+
+    /**
+     * Get all URLs of the service responsible for this object, in the order the client should try them. If an earlier
+     * query in the same range was redirected, the server it ended at comes first according to the {@link ServiceHints}
+     * of the client. The URLs from the bootstrap registries follow, HTTPS URLs first and then the URLs with the best
+     * observed latency and error rate. If the client has a {@link NegativeCache}, objects without a responsible service
+     * are remembered there.
+     *
+     * @param client RDAP client whose HTTP client, service hints and service selector are used
+     * @return Service URLs, never empty
+     *
+     * @throws UnknownServiceException No service is responsible for this object
+     * @throws UnknownObjectTypeException The object type could not be determined
+     */
+    public List<String> getServiceURLs (RDAPClient client) throws UnknownServiceException, UnknownObjectTypeException {
+        List<String> bootstrapServiceURLs;
+        try {
+            bootstrapServiceURLs = getBootstrapServiceURLs(client);
+        } catch (UnknownServiceException e) {
+            bootstrapServiceURLs = List.of();
+        }
+
+        return getServiceURLs(client, bootstrapServiceURLs);
+    }
+
+    /**
+     * Order the URLs the bootstrap registries list for this object like {@link #getServiceURLs(RDAPClient)}, without
+     * looking them up again
+     *
+     * @param client RDAP client whose service hints and service selector are used
+     * @param bootstrapServiceURLs URLs from {@link #getBootstrapServiceURLs(RDAPClient)}, or an empty list if there are
+     * none
+     * @return Service URLs, never empty
+     *
+     * @throws UnknownServiceException No service is responsible for this object
+     * @throws UnknownObjectTypeException The object type could not be determined
+     */
+    public List<String> getServiceURLs (RDAPClient client, List<String> bootstrapServiceURLs) throws UnknownServiceException, UnknownObjectTypeException {
+        String hint = getHint(client.getServiceHints());
+        if (bootstrapServiceURLs.isEmpty()) {
+            if (hint == null) throw new UnknownServiceException();
+            return List.of(hint);
+        }
+
+        List<String> serviceURLs = client.getServiceSelector().order(bootstrapServiceURLs);
+        if (hint == null) return serviceURLs;
+
+        List<String> hinted = new ArrayList<>(serviceURLs.size() + 1);
+        hinted.add(hint);
+        for (String serviceURL : serviceURLs) if (!serviceURL.equals(hint)) hinted.add(serviceURL);
+
+        return hinted;
+    }
+
+    private String getHint (ServiceHints hints) throws UnknownObjectTypeException {
+        if (hints == null) return null;
+
+        switch (getType()) {
+            case ASN:
+                try {
+                    return hints.getForASN(Long.parseLong(getHandle()));
+                } catch (NumberFormatException e) {
+                    return null;
+                }
+
+            case DOMAIN:
+                return hints.getForDomain(getHandle());
+
+            case IPv4:
+            case IPv6:
+                return hints.getForIP(getHandle());
+        }
+
+        // Entities are bootstrapped by the tag in their handle, which already names the authoritative server
+        return null;
+    }
+
+    /**
+     * Look up the URLs of the service responsible for this object in the bootstrap registries, or in the bootstrap index
+     * of the client if it has one. Unlike {@link #getServiceURLs(RDAPClient)}, the URLs are in the order of the registry,
+     * which does not change with the observed latency of the URLs or with hints. If the client has a
+     * {@link NegativeCache}, objects without a responsible service are remembered there.
+     *
+     * @param client RDAP client whose HTTP client is used to load the registries
+     * @return Service URLs, never empty
+     *
+     * @throws UnknownServiceException No service is responsible for this object
+     * @throws UnknownObjectTypeException The object type could not be determined
+     */
+    public List<String> getBootstrapServiceURLs (RDAPClient client) throws UnknownServiceException, UnknownObjectTypeException {
+        NegativeCache negativeCache = client.getNegativeCache();
+        String key = negativeCache == null ? null : "bootstrap:" + getType() + "/" + getHandle();
+        if (key != null && negativeCache.contains(key)) throw new UnknownServiceException();
+
+        BootstrapIndex index = client.getBootstrapIndex();
+        List<String> serviceURLs = index != null ? getBootstrapServiceURLs(index) : getBootstrapServiceURLs(client.getClient());
+
+        if (serviceURLs.isEmpty()) {
+            if (key != null) negativeCache.add(key);
+            throw new UnknownServiceException();
+        }
+
+        return serviceURLs;
+    }
+
+    private List<String> getBootstrapServiceURLs (Client client) throws UnknownServiceException, UnknownObjectTypeException {
         switch (getType()) {
             case ASN:
-                serviceURL = ASNBootstrapRegistry.getInstance(client.getClient()).getServiceURLForASN(getHandle());
-                if (serviceURL == null) throw new UnknownServiceException();
-                return client.getClient().target(serviceURL);
+                return ASNBootstrapRegistry.getInstance(client).getServiceURLsForASN(getHandle());
 
             case DOMAIN:
-                serviceURL = DomainBootstrapRegistry.getInstance(client.getClient()).getServiceURLForFQDN(getHandle());
-                if (serviceURL == null) throw new UnknownServiceException();
-                return client.getClient().target(serviceURL);
+                return DomainBootstrapRegistry.getInstance(client).getServiceURLsForFQDN(getHandle());
 
             case ENTITY:
-                serviceURL = EntityBootstrapRegistry.getInstance(client.getClient()).getServiceURLForHandle(getHandle());
-                if (serviceURL == null) throw new UnknownServiceException();
-                return client.getClient().target(serviceURL);
+                return EntityBootstrapRegistry.getInstance(client).getServiceURLsForHandle(getHandle());
 
             case IPv4:
-                serviceURL = IPv4BootstrapRegistry.getInstance(client.getClient()).getServiceURLForIP(getHandle());
-                if (serviceURL == null) throw new UnknownServiceException();
-                return client.getClient().target(serviceURL);
+                return IPv4BootstrapRegistry.getInstance(client).getServiceURLsForIP(getHandle());
+
+            case IPv6:
+                return IPv6BootstrapRegistry.getInstance(client).getServiceURLsForIP(getHandle());
 
+            default:
+                throw new UnknownServiceException();
+        }
+    }
+
+    private List<String> getBootstrapServiceURLs (BootstrapIndex index) throws UnknownObjectTypeException {
+        switch (getType()) {
+            case ASN:
+                try {
+                    return index.getServiceURLsForASN(Long.parseLong(getHandle()));
+                } catch (NumberFormatException e) {
+                    return List.of();
+                }
+
+            case DOMAIN:
+                return index.getServiceURLsForFQDN(getHandle());
+
+            case ENTITY:
+                return index.getServiceURLsForHandle(getHandle());
+
+            case IPv4:
             case IPv6:
-                serviceURL = IPv6BootstrapRegistry.getInstance(client.getClient()).getServiceURLForIP(getHandle());
-                if (serviceURL == null) throw new UnknownServiceException();
-                return client.getClient().target(serviceURL);
+                return index.getServiceURLsForIP(getHandle());
         }
 
-        throw new UnknownServiceException();
+        return List.of();
     }
 
     public WebTarget getObjectURL (WebTarget service) throws UnknownObjectTypeException {
@@ -0,0 +1,75 @@
+/*
+ * Copyright (c) 2024 Maria Merkel
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the license at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the license for the specific language governing permissions and
+ * limitations under the license.
+ */
+package cc.maria.rdap;
+
+import cc.maria.rdap.object.DomainObjectClass;
+import cc.maria.rdap.object.ObjectClass;
+import cc.maria.rdap.object.ObjectType;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import jakarta.ws.rs.client.ClientBuilder;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares deserializing a domain response with the cached reader of a client against creating a new mapper for every
+ * response, as queries did before, and parsing the body as a stream against decoding it into a string first.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DeserializationBenchmark {
+    private RDAPClient client;
+    private ObjectReader reader;
+    private byte[] json;
+
+    @Setup
+    public void setup () throws IOException {
+        client = new RDAPClient(ClientBuilder.newClient());
+        reader = client.getObjectMapper().readerFor(DomainObjectClass.class);
+        json = RDAPClientTests.sample("domain.json").getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Benchmark
+    public DomainObjectClass newMapper () throws JsonProcessingException {
+        return new ObjectMapper().findAndRegisterModules().readValue(new String(json, StandardCharsets.UTF_8), DomainObjectClass.class);
+    }
+
+    @Benchmark
+    public DomainObjectClass cachedReaderString () throws JsonProcessingException {
+        return reader.readValue(new String(json, StandardCharsets.UTF_8));
+    }
+
+    @Benchmark
+    public ObjectClass cachedReaderStream () throws IOException {
+        return client.deserialize(ObjectType.DOMAIN, new ByteArrayInputStream(json));
+    }
+
+    public static void main (String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(DeserializationBenchmark.class.getSimpleName()).build()).run();
+    }
+}
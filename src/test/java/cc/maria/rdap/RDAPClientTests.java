@@ -0,0 +1,74 @@
+/*
+ * Copyright (c) 2024 Maria Merkel
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the license at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the license for the specific language governing permissions and
+ * limitations under the license.
+ */
+package cc.maria.rdap;
+
+import cc.maria.rdap.object.DomainObjectClass;
+import cc.maria.rdap.object.ObjectType;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.ws.rs.client.ClientBuilder;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.*;
+
+public class RDAPClientTests {
+    static String sample (String name) throws IOException {
+        try (InputStream in = RDAPClientTests.class.getResourceAsStream(name)) {
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        }
+    }
+
+    /**
+     * Test that clients without their own mapper share the default one
+     */
+    @Test
+    public void testDefaultMapperIsShared () {
+        assertSame(new RDAPClient(ClientBuilder.newClient()).getObjectMapper(), new RDAPClient(ClientBuilder.newClient()).getObjectMapper());
+    }
+
+    /**
+     * Test that responses are deserialized with the cached readers, repeatedly and with the correct type
+     */
+    @Test
+    public void testDeserializeDomain () throws IOException {
+        RDAPClient client = new RDAPClient(ClientBuilder.newClient());
+        byte[] json = sample("domain.json").getBytes(StandardCharsets.UTF_8);
+
+        for (int i = 0; i < 2; i++) {
+            DomainObjectClass domain = (DomainObjectClass) client.deserialize(ObjectType.DOMAIN, new ByteArrayInputStream(json));
+            assertEquals("EXAMPLE.COM", domain.getLdhName());
+            assertEquals("376", domain.getEntities()[0].getHandle());
+            assertEquals(4, domain.getEvents().length);
+        }
+    }
+
+    /**
+     * Test that an injected mapper is used for deserialization
+     */
+    @Test
+    public void testCustomMapper () throws IOException {
+        ObjectMapper mapper = new ObjectMapper().enable(DeserializationFeature.FAIL_ON_NULL_FOR_PRIMITIVES);
+        RDAPClient client = new RDAPClient(ClientBuilder.newClient(), mapper);
+
+        assertSame(mapper, client.getObjectMapper());
+        assertEquals("EXAMPLE.COM", ((DomainObjectClass) client.deserialize(ObjectType.DOMAIN, RDAPClientTests.class.getResourceAsStream("domain.json"))).getLdhName());
+    }
+}
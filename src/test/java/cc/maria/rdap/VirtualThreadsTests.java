@@ -0,0 +1,101 @@
+/*
+ * Copyright (c) 2023 Maria Merkel
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the license at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the license for the specific language governing permissions and
+ * limitations under the license.
+ */
+
+package cc.maria.rdap;
+
+import jakarta.ws.rs.client.ClientBuilder;
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+import static org.junit.Assume.assumeTrue;
+
+public class VirtualThreadsTests {
+    private final boolean enabled = VirtualThreads.isEnabled();
+
+    @After
+    public void restore () {
+        VirtualThreads.setEnabled(enabled);
+    }
+
+    private static Thread threadOf (Executor executor) throws Exception {
+        CompletableFuture<Thread> thread = new CompletableFuture<>();
+        executor.execute(() -> thread.complete(Thread.currentThread()));
+        return thread.get(10, TimeUnit.SECONDS);
+    }
+
+    private static boolean isVirtual (Thread thread) throws ReflectiveOperationException {
+        return (boolean) Thread.class.getMethod("isVirtual").invoke(thread);
+    }
+
+    /**
+     * Test that tasks run on named daemon platform threads while the mode is disabled
+     */
+    @Test
+    public void testPlatformThreadsWhenDisabled () throws Exception {
+        VirtualThreads.setEnabled(false);
+        assertFalse(VirtualThreads.isEnabled());
+
+        Thread thread = threadOf(VirtualThreads.executor("rdap-test"));
+        assertEquals("rdap-test", thread.getName());
+        assertTrue(thread.isDaemon());
+        if (VirtualThreads.isAvailable()) assertFalse(isVirtual(thread));
+    }
+
+    /**
+     * Test that enabling the mode switches existing executors and the default executor of new clients to virtual threads
+     */
+    @Test
+    public void testVirtualThreadsWhenEnabled () throws Exception {
+        assumeTrue(VirtualThreads.isAvailable());
+        Executor executor = VirtualThreads.executor("rdap-test");
+
+        VirtualThreads.setEnabled(true);
+        assertTrue(VirtualThreads.isEnabled());
+
+        Thread thread = threadOf(executor);
+        assertTrue(isVirtual(thread));
+        assertEquals("rdap-test", thread.getName());
+        assertTrue(isVirtual(threadOf(new RDAPClient(ClientBuilder.newClient()).getExecutor())));
+    }
+
+    /**
+     * Test that the system property enables the mode, as it is set by the virtual-threads profile on JDK 21 and later
+     */
+    @Test
+    public void testEnabledByProperty () throws Exception {
+        assumeTrue(VirtualThreads.isAvailable() && Boolean.getBoolean("cc.maria.rdap.virtualThreads"));
+
+        assertTrue(enabled);
+        assertTrue(isVirtual(threadOf(new RDAPClient(ClientBuilder.newClient()).getExecutor())));
+    }
+
+    /**
+     * Test that enabling the mode has no effect on runtimes without virtual threads
+     */
+    @Test
+    public void testUnavailableRuntime () throws Exception {
+        assumeTrue(!VirtualThreads.isAvailable());
+
+        VirtualThreads.setEnabled(true);
+        assertFalse(VirtualThreads.isEnabled());
+        assertTrue(threadOf(VirtualThreads.executor("rdap-test")).isDaemon());
+    }
+}
@@ -20,12 +20,20 @@ import jakarta.ws.rs.client.Client;
 import jakarta.ws.rs.client.ClientBuilder;
 import org.junit.Test;
 
+import java.io.IOException;
+
+import java.util.List;
+
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNull;
 
 public class ASNBootstrapRegistryTests {
     private static Client testClient = ClientBuilder.newClient();
 
+    private static ASNBootstrapRegistry localRegistry () throws IOException {
+        return ASNBootstrapRegistry.load(new ClasspathBootstrapSource("cc/maria/rdap/bootstrap/"));
+    }
+
     /**
      * Test resolution of service for a valid ASN contained in a single-service entry
      */
@@ -57,4 +65,51 @@ public class ASNBootstrapRegistryTests {
     public void testInvalidASN () {
         assertNull(ASNBootstrapRegistry.getInstance(testClient).getServiceURLForASN(64496));
     }
+
+    /**
+     * Test resolution of service for an ASN allocated as a single ASN rather than a block
+     */
+    @Test
+    public void testSingleASNEntry () throws IOException {
+        ASNBootstrapRegistry registry = localRegistry();
+        assertEquals("https://rdap.db.ripe.net/", registry.getServiceURLForASN(8503));
+        assertNull(registry.getServiceURLForASN(8502));
+        assertNull(registry.getServiceURLForASN(8504));
+    }
+
+    /**
+     * Test resolution of service for the first and last ASN of a range
+     */
+    @Test
+    public void testRangeBoundaries () throws IOException {
+        ASNBootstrapRegistry registry = localRegistry();
+        assertEquals("https://rdap.arin.net/registry/", registry.getServiceURLForASN(1));
+        assertEquals("https://rdap.arin.net/registry/", registry.getServiceURLForASN(1876));
+        assertEquals("https://rdap.db.ripe.net/", registry.getServiceURLForASN(1877));
+        assertNull(registry.getServiceURLForASN(0));
+    }
+
+    /**
+     * Test resolution of service for a 32-bit ASN above Integer.MAX_VALUE
+     */
+    @Test
+    public void testLargeASN () throws IOException {
+        ASNBootstrapRegistry registry = localRegistry();
+        assertEquals("https://rdap.db.ripe.net/", registry.getServiceURLForASN(4200000001L));
+        assertEquals("https://rdap.db.ripe.net/", registry.getServiceURLForASN("4294967294"));
+        assertNull(registry.getServiceURLForASN(4294967295L));
+    }
+
+    /**
+     * Test resolution of service for a block of ASNs, which has to lie within a single range
+     */
+    @Test
+    public void testBlock () throws IOException {
+        ASNBootstrapRegistry registry = localRegistry();
+        assertEquals("https://rdap.arin.net/registry/", registry.getServiceURLsForASNs(1, 1876).get(0));
+        assertEquals("https://rdap.arin.net/registry/", registry.getServiceURLsForASNs(100, 200).get(0));
+        assertEquals(List.of(), registry.getServiceURLsForASNs(1000, 1877));
+        assertEquals(List.of(), registry.getServiceURLsForASNs(0, 1));
+        assertEquals(List.of(), registry.getServiceURLsForASNs(200, 100));
+    }
 }
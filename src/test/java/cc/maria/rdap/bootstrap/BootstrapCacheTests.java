@@ -0,0 +1,120 @@
+/*
+ * Copyright (c) 2024 Maria Merkel
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the license at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the license for the specific language governing permissions and
+ * limitations under the license.
+ */
+
+package cc.maria.rdap.bootstrap;
+
+import jakarta.ws.rs.client.Client;
+import jakarta.ws.rs.client.ClientBuilder;
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class BootstrapCacheTests {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @After
+    public void disableCache () {
+        BootstrapCache.setDirectory(null);
+    }
+
+    /**
+     * Test that downloaded files are persisted together with their validators
+     */
+    @Test
+    public void testDownloadIsPersisted () throws IOException {
+        Path directory = folder.getRoot().toPath();
+        BootstrapCache.setDirectory(directory);
+
+        new RegistryInstances<>("ipv4.json", IPv4BootstrapRegistry::new, new RegistryInstancesTests.LocalFetcher()).get(ClientBuilder.newClient());
+
+        assertTrue(Files.exists(directory.resolve("ipv4.json")));
+        assertEquals("\"1\"", BootstrapFile.read(directory, "ipv4.json").getETag());
+    }
+
+    /**
+     * Test that a later load starts from the persisted file and revalidates it in the background
+     */
+    @Test
+    public void testLoadFromDiskAndRevalidate () throws Exception {
+        BootstrapCache.setDirectory(folder.getRoot().toPath());
+        new RegistryInstances<>("ipv4.json", IPv4BootstrapRegistry::new, new RegistryInstancesTests.LocalFetcher()).get(ClientBuilder.newClient());
+
+        // Simulates a restart with the registry unchanged on the server
+        CountDownLatch revalidated = new CountDownLatch(1);
+        String[] sentETag = new String[1];
+        RegistryInstances<IPv4BootstrapRegistry> restarted = new RegistryInstances<>("ipv4.json", IPv4BootstrapRegistry::new, (client, cached) -> {
+            sentETag[0] = cached.getETag();
+            revalidated.countDown();
+            return new BootstrapFile(null, cached.getETag(), cached.getLastModified());
+        });
+
+        Client client = ClientBuilder.newClient();
+        IPv4BootstrapRegistry registry = restarted.get(client);
+        assertEquals("https://rdap.db.ripe.net/", registry.getServiceURLForIP("2.56.11.1"));
+
+        assertTrue(revalidated.await(10, TimeUnit.SECONDS));
+        assertEquals("\"1\"", sentETag[0]);
+        assertSame(registry, restarted.get(client));
+    }
+
+    /**
+     * Test that the validators and freshness confirmed by a not modified response are persisted without the file
+     */
+    @Test
+    public void testNotModifiedIsPersisted () throws Exception {
+        Path directory = folder.getRoot().toPath();
+        BootstrapCache.setDirectory(directory);
+        new RegistryInstances<>("ipv4.json", IPv4BootstrapRegistry::new, new RegistryInstancesTests.LocalFetcher()).get(ClientBuilder.newClient());
+        byte[] body = Files.readAllBytes(directory.resolve("ipv4.json"));
+
+        long expires = System.currentTimeMillis() + 3600000;
+        RegistryInstances<IPv4BootstrapRegistry> restarted = new RegistryInstances<>("ipv4.json", IPv4BootstrapRegistry::new, (client, cached) -> new BootstrapFile(null, "\"2\"", cached.getLastModified(), expires));
+
+        Client client = ClientBuilder.newClient();
+        restarted.get(client);
+        restarted.refresh(client);
+
+        BootstrapFile persisted = BootstrapFile.read(directory, "ipv4.json");
+        assertEquals("\"2\"", persisted.getETag());
+        assertTrue(persisted.isFresh());
+        assertArrayEquals(body, persisted.getBody());
+    }
+
+    /**
+     * Test that the registry can be loaded from the persisted file while the server is unreachable
+     */
+    @Test
+    public void testLoadFromDiskWhileOffline () {
+        BootstrapCache.setDirectory(folder.getRoot().toPath());
+        new RegistryInstances<>("ipv4.json", IPv4BootstrapRegistry::new, new RegistryInstancesTests.LocalFetcher()).get(ClientBuilder.newClient());
+
+        RegistryInstances<IPv4BootstrapRegistry> offline = new RegistryInstances<>("ipv4.json", IPv4BootstrapRegistry::new, (client, cached) -> {
+            throw new IOException("Network is unreachable");
+        });
+
+        assertEquals("https://rdap.arin.net/registry/", offline.get(ClientBuilder.newClient()).getServiceURLForIP("3.1.1.1"));
+    }
+}
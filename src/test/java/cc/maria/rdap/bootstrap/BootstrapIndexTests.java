@@ -0,0 +1,172 @@
+/*
+ * Copyright (c) 2024 Maria Merkel
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the license at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the license for the specific language governing permissions and
+ * limitations under the license.
+ */
+package cc.maria.rdap.bootstrap;
+
+import cc.maria.rdap.RDAPClient;
+import cc.maria.rdap.object.ObjectReference;
+import cc.maria.rdap.object.ObjectType;
+import org.junit.BeforeClass;
+import org.junit.ClassRule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class BootstrapIndexTests {
+    @ClassRule
+    public static TemporaryFolder folder = new TemporaryFolder();
+
+    private static final BootstrapSource source = new ClasspathBootstrapSource("cc/maria/rdap/bootstrap/");
+    private static BootstrapIndex index;
+
+    @BeforeClass
+    public static void compile () throws IOException {
+        Path file = folder.getRoot().toPath().resolve("bootstrap.idx");
+        BootstrapIndex.compile(source, file);
+        index = BootstrapIndex.open(file);
+    }
+
+    /**
+     * Test that IP lookups match the most specific prefix like the registries do
+     */
+    @Test
+    public void testIPLookup () {
+        assertEquals("https://rdap.arin.net/registry/", index.getServiceURLForIP("45.1.1.1"));
+        assertEquals("https://rdap.db.ripe.net/", index.getServiceURLForIP("45.151.1.1"));
+        assertEquals("https://rdap.db.ripe.net/", index.getServiceURLForIP("45.151.0.0/16"));
+        assertEquals("https://rdap.arin.net/registry/", index.getServiceURLForIP("45.0.0.0/8"));
+        assertEquals("https://rdap.db.ripe.net/", index.getServiceURLForIP("2003::1"));
+        assertEquals("https://rdap.example.net/", index.getServiceURLForIP("2001:db8::1"));
+        assertNull(index.getServiceURLForIP("::1"));
+        assertNull(index.getServiceURLForIP("not an address"));
+    }
+
+    /**
+     * Test that random IPv4 and IPv6 addresses resolve to the same services as in the registries
+     */
+    @Test
+    public void testIPLookupMatchesRegistries () throws IOException {
+        IPv4BootstrapRegistry ipv4 = IPv4BootstrapRegistry.load(source);
+        IPv6BootstrapRegistry ipv6 = IPv6BootstrapRegistry.load(source);
+        Random random = new Random(9224);
+
+        for (int i = 0; i < 100000; i++) {
+            int address = random.nextInt();
+            assertEquals(ipv4.getServiceURLForIP(address), index.getServiceURLForIP(address));
+
+            long high = random.nextBoolean() ? (random.nextLong() >>> 3) | 0x2000000000000000L : random.nextLong();
+            long low = random.nextLong();
+            assertEquals(ipv6.getServiceURLForIP(high, low), index.getServiceURLForIP(high, low));
+        }
+    }
+
+    /**
+     * Test ASN lookups at the boundaries of ranges and single ASN entries
+     */
+    @Test
+    public void testASNLookup () {
+        assertEquals("https://rdap.arin.net/registry/", index.getServiceURLForASN(1));
+        assertEquals("https://rdap.arin.net/registry/", index.getServiceURLForASN(1876));
+        assertEquals("https://rdap.db.ripe.net/", index.getServiceURLForASN(8503));
+        assertEquals("https://rdap.db.ripe.net/", index.getServiceURLForASN(4294967294L));
+        assertNull(index.getServiceURLForASN(0));
+        assertNull(index.getServiceURLForASN(4294967295L));
+    }
+
+    /**
+     * Test FQDN lookups with the longest matching suffix, case-insensitively and with a trailing dot
+     */
+    @Test
+    public void testFQDNLookup () {
+        assertEquals("https://rdap.verisign.com/com/v1/", index.getServiceURLForFQDN("Example.COM."));
+        assertEquals("https://rdap.example.net/co/", index.getServiceURLForFQDN("www.example.co.example"));
+        assertNull(index.getServiceURLForFQDN("www.example.example"));
+        assertNull(index.getServiceURLForFQDN("."));
+        assertNull(index.getServiceURLForFQDN(""));
+    }
+
+    /**
+     * Test entity lookups by object tag
+     */
+    @Test
+    public void testHandleLookup () {
+        assertEquals("https://rdap.arin.net/registry/", index.getServiceURLForHandle("MM-ARIN"));
+        assertEquals("https://rdap.apnic.net/", index.getServiceURLForHandle("XX1-AP-APNIC"));
+        assertNull(index.getServiceURLForHandle("MM-EXAMPLE"));
+        assertEquals("2024-05-01T18:00:02Z", index.getPublication("object-tags.json"));
+    }
+
+    /**
+     * Test that every URL of a registry entry is kept, HTTPS URLs first, like the registries list them
+     */
+    @Test
+    public void testAllServiceURLs () throws IOException {
+        assertEquals(List.of("https://rdap.arin.net/registry/", "http://rdap.arin.net/registry/"), index.getServiceURLsForIP("45.1.1.1"));
+        assertEquals(IPv4BootstrapRegistry.load(source).getServiceURLsForIP("41.0.0.0/8"), index.getServiceURLsForIP("41.0.0.0/8"));
+        assertEquals(List.of("https://rdap.arin.net/registry/", "http://rdap.arin.net/registry/"), index.getServiceURLsForHandle("MM-ARIN"));
+        assertEquals(ASNBootstrapRegistry.load(source).getServiceURLsForASN("1"), index.getServiceURLsForASN(1));
+        assertEquals(index.getServiceURLsForASN(1), index.getServiceURLsForASNs(1, 1876));
+        assertEquals(List.of(), index.getServiceURLsForASNs(1, 1877));
+        assertEquals(List.of("https://rdap.verisign.com/com/v1/"), index.getServiceURLsForFQDN("example.com"));
+        assertEquals(List.of(), index.getServiceURLsForIP("::1"));
+    }
+
+    /**
+     * Test that service URLs are stored as lists, so URLs containing characters such as spaces are kept intact
+     */
+    @Test
+    public void testServiceURLsAreNotSplit () throws IOException {
+        byte[] dns = "{\"services\": [[[\"test\"], [\"https://rdap.example.net/a b/\", \"http://rdap.example.net/a b/\"]]]}".getBytes(StandardCharsets.UTF_8);
+        Path file = folder.getRoot().toPath().resolve("spaces.idx");
+        BootstrapIndex.compile((name, cached) -> name.equals("dns.json") ? new BootstrapFile(dns, null, null) : source.fetch(name, cached), file);
+
+        assertEquals(List.of("https://rdap.example.net/a b/", "http://rdap.example.net/a b/"), BootstrapIndex.open(file).getServiceURLsForFQDN("example.test"));
+    }
+
+    /**
+     * Test that a client with an index resolves objects through it without loading the registries
+     */
+    @Test
+    public void testClientResolvesThroughIndex () throws Exception {
+        RDAPClient client = new RDAPClient();
+        client.setBootstrapIndex(index);
+
+        assertEquals("https://rdap.db.ripe.net/", client.getServiceURL("45.151.1.1"));
+        assertEquals("https://rdap.verisign.com/com/v1/", client.getServiceURL("example.com"));
+        assertEquals(List.of("https://rdap.apnic.net/"), new ObjectReference("XX1-AP-APNIC", ObjectType.ENTITY).getBootstrapServiceURLs(client));
+        assertNull(client.getServiceURL("::1"));
+    }
+
+    /**
+     * Test that files that are not an index are rejected
+     */
+    @Test
+    public void testInvalidFile () throws IOException {
+        Path file = folder.newFile().toPath();
+        Files.write(file, new byte[]{'{', '}'});
+
+        assertThrows(IOException.class, () -> BootstrapIndex.open(file));
+        assertThrows(IOException.class, () -> new BootstrapIndex(ByteBuffer.allocate(BootstrapIndexCompiler.HEADER_SIZE)));
+    }
+}
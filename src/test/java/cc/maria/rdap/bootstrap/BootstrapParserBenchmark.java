@@ -0,0 +1,111 @@
+/*
+ * Copyright (c) 2024 Maria Merkel
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the license at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the license for the specific language governing permissions and
+ * limitations under the license.
+ */
+package cc.maria.rdap.bootstrap;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the streaming bootstrap parser against decoding the file to a String and building an org.json tree, as the
+ * registries did before.
+ * <p>
+ * The {@code synthetic} registry is a generated domain registry of about 750 kB. Pass {@code -p registry=/path/to/dns.json}
+ * to benchmark against a downloaded copy of the IANA registry. Run with {@code -prof gc} to compare the bytes allocated
+ * per parse.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BootstrapParserBenchmark {
+    @Param({"dns.json", "synthetic"})
+    public String registry;
+
+    private byte[] json;
+
+    @Setup
+    public void setup () throws IOException {
+        json = registry.equals("synthetic") ? synthetic() : IPv6BootstrapRegistryBenchmark.read(registry);
+    }
+
+    @Benchmark
+    public void jsonTree (Blackhole blackhole) {
+        JSONObject root = new JSONObject(new String(json, StandardCharsets.UTF_8));
+        blackhole.consume(root.optString("publication", null));
+
+        for (Object a : root.getJSONArray("services")) {
+            JSONArray array = (JSONArray) a;
+            String service = ((JSONArray) array.get(1)).getString(0);
+
+            for (Object s : array.getJSONArray(0)) {
+                blackhole.consume(s);
+                blackhole.consume(service);
+            }
+        }
+    }
+
+    @Benchmark
+    public void streaming (Blackhole blackhole) throws IOException {
+        blackhole.consume(BootstrapParser.parse(new ByteArrayInputStream(json), entry -> {
+            for (String s : entry[0]) {
+                blackhole.consume(s);
+                blackhole.consume(entry[1][0]);
+            }
+        }));
+    }
+
+    @Benchmark
+    public DomainBootstrapRegistry registry () throws IOException {
+        return new DomainBootstrapRegistry(new ByteArrayInputStream(json));
+    }
+
+    /**
+     * Generate a domain registry of about 750 kB with 40000 labels spread over 2000 services
+     */
+    private static byte[] synthetic () {
+        StringBuilder builder = new StringBuilder("{\"description\": \"Synthetic registry\", \"publication\": \"2024-05-01T18:00:02Z\", \"services\": [");
+
+        for (int service = 0; service < 2000; service++) {
+            if (service > 0) builder.append(',');
+            builder.append("[[");
+
+            for (int label = 0; label < 20; label++) {
+                if (label > 0) builder.append(", ");
+                builder.append("\"label").append(service).append('x').append(label).append("\"");
+            }
+
+            builder.append("], [\"https://rdap.example").append(service).append(".net/registry/\", \"http://rdap.example").append(service).append(".net/registry/\"]]");
+        }
+
+        return builder.append("], \"version\": \"1.0\"}").toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    public static void main (String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(BootstrapParserBenchmark.class.getSimpleName()).build()).run();
+    }
+}
@@ -0,0 +1,84 @@
+/*
+ * Copyright (c) 2024 Maria Merkel
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the license at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the license for the specific language governing permissions and
+ * limitations under the license.
+ */
+package cc.maria.rdap.bootstrap;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class BootstrapParserTests {
+    private static InputStream json (String json) {
+        return new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Test that entries are streamed in order and unknown members are skipped
+     */
+    @Test
+    public void testParseEntries () throws IOException {
+        List<String[][]> entries = new ArrayList<>();
+        String publication = BootstrapParser.parse(json("{\"extension\": {\"nested\": [1, {\"a\": []}]}, \"services\": [[[\"com\", \"net\"], [\"https://rdap.verisign.com/com/v1/\"]], [[\"ARIN\"], [\"andy@arin.net\"], []]], \"publication\": \"2024-05-01T18:00:02Z\"}"), entries::add);
+
+        assertEquals("2024-05-01T18:00:02Z", publication);
+        assertEquals(2, entries.size());
+        assertArrayEquals(new String[]{"com", "net"}, entries.get(0)[0]);
+        assertArrayEquals(new String[]{"https://rdap.verisign.com/com/v1/"}, entries.get(0)[1]);
+        assertEquals(3, entries.get(1).length);
+        assertEquals(0, entries.get(1)[2].length);
+    }
+
+    /**
+     * Test that the publication date is read without parsing the services
+     */
+    @Test
+    public void testPublication () throws IOException {
+        assertEquals("2024-05-01T18:00:02Z", BootstrapParser.publication(json("{\"services\": [[[\"com\"], [\"https://rdap.verisign.com/com/v1/\"]]], \"publication\": \"2024-05-01T18:00:02Z\"}")));
+        assertNull(BootstrapParser.publication(json("{\"services\": []}")));
+    }
+
+    /**
+     * Test that files that are not bootstrap registries are rejected
+     */
+    @Test
+    public void testInvalidFile () {
+        assertThrows(IOException.class, () -> BootstrapParser.parse(json("[]"), entry -> {}));
+        assertThrows(IOException.class, () -> BootstrapParser.parse(json("{\"services\": [[[\"com\", 1]]]}"), entry -> {}));
+        assertThrows(IOException.class, () -> BootstrapParser.parse(json("{\"services\": [[[\"com\"]"), entry -> {}));
+    }
+
+    /**
+     * Test that entries with the wrong number of arrays or without service URLs are rejected
+     */
+    @Test
+    public void testEntryArity () throws IOException {
+        assertThrows(IOException.class, () -> BootstrapParser.parse(json("{\"services\": [[[\"com\"]]]}"), 2, entry -> {}));
+        assertThrows(IOException.class, () -> BootstrapParser.parse(json("{\"services\": [[[\"com\"], [\"https://rdap.verisign.com/com/v1/\"]]]}"), 3, entry -> {}));
+        assertThrows(IOException.class, () -> BootstrapParser.parse(json("{\"services\": [[[\"ARIN\"], [\"andy@arin.net\"], []]]}"), 3, entry -> {}));
+        assertThrows(IOException.class, () -> new ASNBootstrapRegistry(json("{\"services\": [[[\"64496-64511\"]]]}")));
+        assertThrows(IOException.class, () -> new EntityBootstrapRegistry(json("{\"services\": [[[\"ARIN\"], [\"https://rdap.arin.net/registry/\"]]]}")));
+
+        List<String[][]> entries = new ArrayList<>();
+        BootstrapParser.parse(json("{\"services\": [[[\"com\"], [\"https://rdap.verisign.com/com/v1/\"]]]}"), 2, entries::add);
+        assertEquals(1, entries.size());
+    }
+}
@@ -0,0 +1,81 @@
+/*
+ * Copyright (c) 2024 Maria Merkel
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the license at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the license for the specific language governing permissions and
+ * limitations under the license.
+ */
+
+package cc.maria.rdap.bootstrap;
+
+import jakarta.ws.rs.client.Client;
+import jakarta.ws.rs.client.ClientBuilder;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.Assert.*;
+
+public class BootstrapRefresherTests {
+    /**
+     * Test that a refresh round swaps in changed registries and reports its outcome
+     */
+    @Test
+    public void testRefreshOutcome () {
+        RegistryInstancesTests.LocalFetcher fetcher = new RegistryInstancesTests.LocalFetcher();
+        RegistryInstances<IPv4BootstrapRegistry> instances = new RegistryInstances<>("ipv4.json", IPv4BootstrapRegistry::new, fetcher);
+        Client client = ClientBuilder.newClient();
+        IPv4BootstrapRegistry initial = instances.get(client);
+
+        try (BootstrapRefresher refresher = new BootstrapRefresher(client, Duration.ofDays(1), Collections.singletonList(instances))) {
+            assertNull(refresher.getLastRefresh());
+
+            assertEquals(BootstrapRefresher.Outcome.UPDATED, refresher.refresh());
+            assertNotSame(initial, instances.get(client));
+            assertNotNull(refresher.getLastRefresh());
+
+            fetcher.changing = false;
+            assertEquals(BootstrapRefresher.Outcome.UNCHANGED, refresher.refresh());
+            assertEquals(BootstrapRefresher.Outcome.UNCHANGED, refresher.getLastOutcome());
+            assertNull(refresher.getLastError());
+        }
+    }
+
+    /**
+     * Test that a failing registry is reported and does not keep the others from being refreshed
+     */
+    @Test
+    public void testFailedRefreshKeepsData () {
+        Client client = ClientBuilder.newClient();
+        boolean[] failing = {false};
+
+        RegistryInstances<IPv4BootstrapRegistry> broken = new RegistryInstances<>("ipv4.json", IPv4BootstrapRegistry::new, (c, cached) -> {
+            if (failing[0]) throw new IOException("Registry unavailable");
+            return new RegistryInstancesTests.LocalFetcher().fetch(c, cached);
+        });
+        RegistryInstances<IPv4BootstrapRegistry> working = new RegistryInstances<>("ipv4.json", IPv4BootstrapRegistry::new, new RegistryInstancesTests.LocalFetcher());
+
+        IPv4BootstrapRegistry brokenInitial = broken.get(client);
+        IPv4BootstrapRegistry workingInitial = working.get(client);
+        failing[0] = true;
+
+        try (BootstrapRefresher refresher = new BootstrapRefresher(client, Duration.ofDays(1), Arrays.asList(broken, working))) {
+            assertEquals(BootstrapRefresher.Outcome.FAILED, refresher.refresh());
+            assertNotNull(refresher.getLastError());
+        }
+
+        assertSame(brokenInitial, broken.get(client));
+        assertNotSame(workingInitial, working.get(client));
+    }
+}
@@ -0,0 +1,138 @@
+/*
+ * Copyright (c) 2024 Maria Merkel
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the license at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the license for the specific language governing permissions and
+ * limitations under the license.
+ */
+
+package cc.maria.rdap.bootstrap;
+
+import jakarta.ws.rs.client.Client;
+import jakarta.ws.rs.client.ClientBuilder;
+import org.junit.After;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.time.Duration;
+
+import static org.junit.Assert.*;
+
+public class BootstrapSnapshotTests {
+    /**
+     * Name of the snapshot bundled with the test resources, so the real registries are not affected
+     */
+    private static final String NAME = "sample-ipv4.json";
+
+    @After
+    public void enableSnapshot () {
+        BootstrapSnapshot.setEnabled(true);
+        BootstrapSnapshot.setMaxAge(Duration.ofDays(7));
+        BootstrapSnapshot.setUpgradeDelay(Duration.ofMinutes(1));
+    }
+
+    /**
+     * Test that a registry starts from the snapshot without reaching the network
+     */
+    @Test
+    public void testStartFromSnapshot () {
+        assertTrue(BootstrapSnapshot.isAvailable(NAME));
+
+        RegistryInstances<IPv4BootstrapRegistry> offline = new RegistryInstances<>(NAME, IPv4BootstrapRegistry::new, (client, cached) -> {
+            throw new IOException("Network is unreachable");
+        });
+
+        assertEquals("https://rdap.db.ripe.net/", offline.get(ClientBuilder.newClient()).getServiceURLForIP("45.151.1.1"));
+    }
+
+    /**
+     * Test that a registry started from the snapshot is upgraded to the live data in the background
+     */
+    @Test
+    public void testSnapshotIsUpgraded () throws InterruptedException {
+        BootstrapSnapshot.setUpgradeDelay(Duration.ZERO);
+
+        RegistryInstancesTests.LocalFetcher fetcher = new RegistryInstancesTests.LocalFetcher();
+        RegistryInstances<IPv4BootstrapRegistry> instances = new RegistryInstances<>(NAME, IPv4BootstrapRegistry::new, fetcher);
+        Client client = ClientBuilder.newClient();
+
+        IPv4BootstrapRegistry snapshot = instances.get(client);
+        for (int i = 0; i < 200 && instances.get(client) == snapshot; i++) Thread.sleep(50);
+
+        assertNotSame(snapshot, instances.get(client));
+        assertEquals(1, fetcher.loads.get());
+    }
+
+    /**
+     * Test that a disabled snapshot is not used
+     */
+    @Test
+    public void testSnapshotDisabled () {
+        BootstrapSnapshot.setEnabled(false);
+
+        RegistryInstances<IPv4BootstrapRegistry> offline = new RegistryInstances<>(NAME, IPv4BootstrapRegistry::new, (client, cached) -> {
+            throw new IOException("Network is unreachable");
+        });
+
+        assertThrows(RuntimeException.class, () -> offline.get(ClientBuilder.newClient()));
+    }
+
+    /**
+     * Test that the snapshot is fresh for the maximum age after the publication date of the bundled registry
+     */
+    @Test
+    public void testSnapshotFreshness () throws IOException {
+        assertFalse(BootstrapSnapshot.read(NAME).isFresh());
+
+        BootstrapSnapshot.setMaxAge(Duration.ofDays(365000));
+        assertTrue(BootstrapSnapshot.read(NAME).isFresh());
+
+        assertThrows(IllegalArgumentException.class, () -> BootstrapSnapshot.setMaxAge(Duration.ofDays(-1)));
+    }
+
+    /**
+     * Test that a registry started from a fresh snapshot is not upgraded
+     */
+    @Test
+    public void testFreshSnapshotIsNotUpgraded () throws InterruptedException {
+        BootstrapSnapshot.setMaxAge(Duration.ofDays(365000));
+        BootstrapSnapshot.setUpgradeDelay(Duration.ZERO);
+
+        RegistryInstancesTests.LocalFetcher fetcher = new RegistryInstancesTests.LocalFetcher();
+        RegistryInstances<IPv4BootstrapRegistry> instances = new RegistryInstances<>(NAME, IPv4BootstrapRegistry::new, fetcher);
+        Client client = ClientBuilder.newClient();
+
+        IPv4BootstrapRegistry snapshot = instances.get(client);
+        Thread.sleep(500);
+
+        assertSame(snapshot, instances.get(client));
+        assertFalse(instances.refreshIfStale(client));
+        assertEquals(0, fetcher.loads.get());
+    }
+
+    /**
+     * Test that a stale snapshot is not upgraded before the upgrade delay passed
+     */
+    @Test
+    public void testUpgradeIsDelayed () throws InterruptedException {
+        BootstrapSnapshot.setUpgradeDelay(Duration.ofHours(1));
+
+        RegistryInstancesTests.LocalFetcher fetcher = new RegistryInstancesTests.LocalFetcher();
+        RegistryInstances<IPv4BootstrapRegistry> instances = new RegistryInstances<>(NAME, IPv4BootstrapRegistry::new, fetcher);
+        Client client = ClientBuilder.newClient();
+
+        IPv4BootstrapRegistry snapshot = instances.get(client);
+        Thread.sleep(500);
+
+        assertSame(snapshot, instances.get(client));
+        assertEquals(0, fetcher.loads.get());
+    }
+}
@@ -0,0 +1,101 @@
+/*
+ * Copyright (c) 2024 Maria Merkel
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the license at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the license for the specific language governing permissions and
+ * limitations under the license.
+ */
+
+package cc.maria.rdap.bootstrap;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class BootstrapSourceTests {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static byte[] sample (String name) throws IOException {
+        try (InputStream in = BootstrapSourceTests.class.getResourceAsStream(name)) {
+            return in.readAllBytes();
+        }
+    }
+
+    /**
+     * Test that every registry can be loaded from memory
+     */
+    @Test
+    public void testLoadFromMemory () throws IOException {
+        BootstrapSource source = new InMemoryBootstrapSource(Map.of(
+                "asn.json", sample("asn.json"),
+                "dns.json", sample("dns.json"),
+                "ipv4.json", sample("ipv4.json"),
+                "ipv6.json", sample("ipv6.json"),
+                "object-tags.json", sample("object-tags.json")));
+
+        assertEquals("https://rdap.db.ripe.net/", ASNBootstrapRegistry.load(source).getServiceURLForASN(8503));
+        assertEquals("https://rdap.verisign.com/com/v1/", DomainBootstrapRegistry.load(source).getServiceURLForFQDN("example.com"));
+        assertEquals("https://rdap.arin.net/registry/", EntityBootstrapRegistry.load(source).getServiceURLForHandle("MM-ARIN"));
+        assertEquals("https://rdap.db.ripe.net/", IPv4BootstrapRegistry.load(source).getServiceURLForIP("45.151.1.1"));
+        assertEquals("https://rdap.db.ripe.net/", IPv6BootstrapRegistry.load(source).getServiceURLForIP("2003::1"));
+    }
+
+    /**
+     * Test that a file in a directory is only read again once it changed
+     */
+    @Test
+    public void testFileRevalidation () throws IOException {
+        Path file = folder.getRoot().toPath().resolve("ipv4.json");
+        Files.write(file, sample("ipv4.json"));
+        Files.setLastModifiedTime(file, FileTime.fromMillis(1714586402000L));
+
+        BootstrapSource source = new FileBootstrapSource(folder.getRoot().toPath());
+        BootstrapFile first = source.fetch("ipv4.json", null);
+        assertNotNull(first.getBody());
+        assertNull(source.fetch("ipv4.json", first.validators()).getBody());
+
+        Files.setLastModifiedTime(file, FileTime.fromMillis(1714672802000L));
+        assertNotNull(source.fetch("ipv4.json", first.validators()).getBody());
+    }
+
+    /**
+     * Test that missing files are reported as errors
+     */
+    @Test
+    public void testMissingFile () {
+        assertThrows(IOException.class, () -> new ClasspathBootstrapSource("cc/maria/rdap/bootstrap/").fetch("missing.json", null));
+        assertThrows(IOException.class, () -> new InMemoryBootstrapSource(Map.of()).fetch("dns.json", null));
+        assertThrows(IOException.class, () -> new FileBootstrapSource(folder.getRoot().toPath()).fetch("dns.json", null));
+    }
+
+    /**
+     * Test that the default base URL for mirrors is normalized
+     */
+    @Test
+    public void testDefaultBaseURL () {
+        try {
+            HTTPBootstrapSource.setDefaultBaseURL("https://mirror.example.net/rdap");
+            assertEquals("https://mirror.example.net/rdap/", HTTPBootstrapSource.getDefaultBaseURL());
+        } finally {
+            HTTPBootstrapSource.setDefaultBaseURL(HTTPBootstrapSource.IANA_BASE_URL);
+        }
+    }
+}
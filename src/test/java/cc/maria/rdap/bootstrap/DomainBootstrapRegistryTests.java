@@ -20,11 +20,17 @@ import jakarta.ws.rs.client.Client;
 import jakarta.ws.rs.client.ClientBuilder;
 import org.junit.Test;
 
+import java.io.IOException;
+
 import static org.junit.Assert.*;
 
 public class DomainBootstrapRegistryTests {
     private static Client testClient = ClientBuilder.newClient();
 
+    private static DomainBootstrapRegistry localRegistry () throws IOException {
+        return DomainBootstrapRegistry.load(new ClasspathBootstrapSource("cc/maria/rdap/bootstrap/"));
+    }
+
     /**
      * Tests retrieval of a label-service mapping that appears as a single-label entry on the bootstrap registry
      */
@@ -80,4 +86,30 @@ public class DomainBootstrapRegistryTests {
     public void testInvalidFQDN () {
         assertNull(DomainBootstrapRegistry.getInstance(testClient).getServiceURLForFQDN("example.sub.example.invalid"));
     }
+
+    /**
+     * Test that FQDNs are matched case-insensitively and with a trailing dot
+     */
+    @Test
+    public void testFQDNNormalization () throws IOException {
+        DomainBootstrapRegistry registry = localRegistry();
+        assertEquals("https://rdap.verisign.com/com/v1/", registry.getServiceURLForFQDN("Example.COM"));
+        assertEquals("https://rdap.verisign.com/com/v1/", registry.getServiceURLForFQDN("example.com."));
+        assertEquals("https://www.registry.google/rdap/", registry.getServiceURL("DEV"));
+        assertNull(registry.getServiceURLForFQDN("."));
+        assertNull(registry.getServiceURLForFQDN(""));
+    }
+
+    /**
+     * Test that the longest matching multi-label entry wins over its parent label
+     */
+    @Test
+    public void testLongestSuffixMatch () throws IOException {
+        DomainBootstrapRegistry registry = localRegistry();
+        assertEquals("https://rdap.example.net/co/", registry.getServiceURLForFQDN("www.example.co.example"));
+        assertEquals("https://rdap.example.net/co/", registry.getServiceURL("co.example"));
+        assertNull(registry.getServiceURLForFQDN("www.example.example"));
+        assertNull(registry.getServiceURL("example"));
+        assertNull(registry.getServiceURL("example.com"));
+    }
 }
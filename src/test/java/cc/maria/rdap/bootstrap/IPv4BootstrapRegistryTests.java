@@ -20,12 +20,19 @@ import jakarta.ws.rs.client.Client;
 import jakarta.ws.rs.client.ClientBuilder;
 import org.junit.Test;
 
+import java.io.IOException;
+import java.util.List;
+
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNull;
 
 public class IPv4BootstrapRegistryTests {
     private static Client testClient = ClientBuilder.newClient();
 
+    private static IPv4BootstrapRegistry localRegistry () throws IOException {
+        return IPv4BootstrapRegistry.load(new ClasspathBootstrapSource("cc/maria/rdap/bootstrap/"));
+    }
+
     /**
      * Test resolution of service for a valid IP address contained in a single-service entry
      */
@@ -57,4 +64,50 @@ public class IPv4BootstrapRegistryTests {
     public void testInvalidIP () {
         assertNull(IPv4BootstrapRegistry.getInstance(testClient).getServiceURLForIP("255.1.1.1"));
     }
+
+    /**
+     * Test that the most specific prefix wins over a less specific prefix containing it
+     */
+    @Test
+    public void testLongestPrefixMatch () throws IOException {
+        IPv4BootstrapRegistry registry = localRegistry();
+        assertEquals("https://rdap.db.ripe.net/", registry.getServiceURLForIP("45.151.215.1"));
+        assertEquals("https://rdap.arin.net/registry/", registry.getServiceURLForIP("45.152.0.1"));
+        assertEquals("https://rdap.arin.net/registry/", registry.getServiceURLForIP("45.150.255.255"));
+    }
+
+    /**
+     * Test that a subnet is resolved to the most specific prefix containing the entire subnet
+     */
+    @Test
+    public void testSubnetContainingMoreSpecificPrefix () throws IOException {
+        IPv4BootstrapRegistry registry = localRegistry();
+        assertEquals("https://rdap.db.ripe.net/", registry.getServiceURLForIP("45.151.128.0/17"));
+        assertEquals("https://rdap.arin.net/registry/", registry.getServiceURLForIP("45.144.0.0/12"));
+        assertNull(registry.getServiceURLForIP("44.0.0.0/7"));
+    }
+
+    /**
+     * Test resolution of service for an IP address given as an int or as bytes
+     */
+    @Test
+    public void testPrimitiveLookup () throws IOException {
+        IPv4BootstrapRegistry registry = localRegistry();
+        assertEquals("https://rdap.db.ripe.net/", registry.getServiceURLForIP(0x02380B01));
+        assertEquals("https://rdap.lacnic.net/rdap/", registry.getServiceURLForIP(0xB1000001));
+        assertEquals("https://rdap.db.ripe.net/", registry.getServiceURLForIP(new byte[]{45, (byte) 151, (byte) 215, 1}));
+        assertNull(registry.getServiceURLForIP(0xFF010101));
+        assertNull(registry.getServiceURLForIP(0));
+    }
+
+    /**
+     * Test that all URLs of a service are kept with HTTPS first
+     */
+    @Test
+    public void testAllServiceURLs () throws IOException {
+        IPv4BootstrapRegistry registry = localRegistry();
+        assertEquals(List.of("https://rdap.arin.net/registry/", "http://rdap.arin.net/registry/"), registry.getServiceURLsForIP("3.1.1.1"));
+        assertEquals(List.of("https://rdap.db.ripe.net/"), registry.getServiceURLsForIP("45.151.1.1"));
+        assertEquals(List.of(), registry.getServiceURLsForIP("255.1.1.1"));
+    }
 }
@@ -0,0 +1,116 @@
+/*
+ * Copyright (c) 2024 Maria Merkel
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the license at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the license for the specific language governing permissions and
+ * limitations under the license.
+ */
+
+package cc.maria.rdap.bootstrap;
+
+import inet.ipaddr.IPAddressString;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the IPv6 prefix trie against the linear scan over IPAddressString keys it replaced.
+ * <p>
+ * By default the sample registry from the test resources is used. Pass {@code -p registry=/path/to/ipv6.json} to
+ * benchmark against a downloaded copy of the IANA registry.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class IPv6BootstrapRegistryBenchmark {
+    @Param({"ipv6.json"})
+    public String registry;
+
+    private IPv6BootstrapRegistry trie;
+    private HashMap<IPAddressString, String> subnetsToServiceMap;
+
+    private String[] addresses;
+    private long[] high;
+    private long[] low;
+    private int next = 0;
+
+    @Setup
+    public void setup () throws IOException {
+        byte[] json = read(registry);
+        trie = new IPv6BootstrapRegistry(new ByteArrayInputStream(json));
+
+        subnetsToServiceMap = new HashMap<>();
+        BootstrapParser.parse(new ByteArrayInputStream(json), entry -> {
+            for (String s : entry[0]) {
+                subnetsToServiceMap.put(new IPAddressString(s), entry[1][0]);
+            }
+        });
+
+        // Random addresses within 2000::/3, where nearly all allocations are
+        Random random = new Random(9224);
+        addresses = new String[1024];
+        high = new long[addresses.length];
+        low = new long[addresses.length];
+
+        for (int i = 0; i < addresses.length; i++) {
+            high[i] = (random.nextLong() >>> 3) | 0x2000000000000000L;
+            low[i] = random.nextLong();
+            addresses[i] = String.format("%x:%x:%x:%x::%x", high[i] >>> 48, (high[i] >>> 32) & 0xFFFF, (high[i] >>> 16) & 0xFFFF, high[i] & 0xFFFF, low[i] & 0xFFFF);
+        }
+    }
+
+    @Benchmark
+    public String linearScan () {
+        IPAddressString ipAddressString = new IPAddressString(addresses[next++ & 1023]);
+
+        for (IPAddressString subnet : subnetsToServiceMap.keySet()) {
+            if (subnet.contains(ipAddressString)) return subnetsToServiceMap.get(subnet);
+        }
+
+        return null;
+    }
+
+    @Benchmark
+    public String trieString () {
+        return trie.getServiceURLForIP(addresses[next++ & 1023]);
+    }
+
+    @Benchmark
+    public String triePrimitive () {
+        int i = next++ & 1023;
+        return trie.getServiceURLForIP(high[i], low[i]);
+    }
+
+    static byte[] read (String registry) throws IOException {
+        try (InputStream in = IPv6BootstrapRegistryBenchmark.class.getResourceAsStream(registry)) {
+            if (in != null) return in.readAllBytes();
+        }
+
+        return Files.readAllBytes(Path.of(registry));
+    }
+
+    public static void main (String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(IPv6BootstrapRegistryBenchmark.class.getSimpleName()).build()).run();
+    }
+}
@@ -20,12 +20,18 @@ import jakarta.ws.rs.client.Client;
 import jakarta.ws.rs.client.ClientBuilder;
 import org.junit.Test;
 
+import java.io.IOException;
+
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNull;
 
 public class IPv6BootstrapRegistryTests {
     private static Client testClient = ClientBuilder.newClient();
 
+    private static IPv6BootstrapRegistry localRegistry () throws IOException {
+        return IPv6BootstrapRegistry.load(new ClasspathBootstrapSource("cc/maria/rdap/bootstrap/"));
+    }
+
     /**
      * Test resolution of service for a valid IP address contained in a single-service entry
      */
@@ -57,4 +63,40 @@ public class IPv6BootstrapRegistryTests {
     public void testInvalidIP () {
         assertNull(IPv6BootstrapRegistry.getInstance(testClient).getServiceURLForIP("5000::1"));
     }
+
+    /**
+     * Test that the most specific prefix wins over a less specific prefix containing it
+     */
+    @Test
+    public void testLongestPrefixMatch () throws IOException {
+        IPv6BootstrapRegistry registry = localRegistry();
+        assertEquals("https://rdap.db.ripe.net/", registry.getServiceURLForIP("2003::1"));
+        assertEquals("https://rdap.db.ripe.net/", registry.getServiceURLForIP("2001:678::1"));
+        assertEquals("https://rdap.example.net/", registry.getServiceURLForIP("2004::1"));
+        assertEquals("https://rdap.example.net/", registry.getServiceURLForIP("3fff::1"));
+        assertNull(registry.getServiceURLForIP("5000::1"));
+    }
+
+    /**
+     * Test that a subnet is resolved to the most specific prefix containing the entire subnet
+     */
+    @Test
+    public void testSubnetContainingMoreSpecificPrefix () throws IOException {
+        IPv6BootstrapRegistry registry = localRegistry();
+        assertEquals("https://rdap.db.ripe.net/", registry.getServiceURLForIP("2003::/48"));
+        assertEquals("https://rdap.example.net/", registry.getServiceURLForIP("2000::/16"));
+        assertNull(registry.getServiceURLForIP("::/0"));
+    }
+
+    /**
+     * Test resolution of service for an IP address given as two longs or as bytes
+     */
+    @Test
+    public void testPrimitiveLookup () throws IOException {
+        IPv6BootstrapRegistry registry = localRegistry();
+        assertEquals("https://rdap.arin.net/registry/", registry.getServiceURLForIP(0x2600000000000000L, 1));
+        assertEquals("https://rdap.afrinic.net/rdap/", registry.getServiceURLForIP(0x2001420000000000L, 0));
+        assertEquals("https://rdap.db.ripe.net/", registry.getServiceURLForIP(new byte[]{0x20, 0x03, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 1}));
+        assertNull(registry.getServiceURLForIP(0x5000000000000000L, 1));
+    }
 }
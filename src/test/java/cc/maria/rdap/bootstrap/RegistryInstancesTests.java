@@ -0,0 +1,214 @@
+/*
+ * Copyright (c) 2024 Maria Merkel
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the license at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the license for the specific language governing permissions and
+ * limitations under the license.
+ */
+
+package cc.maria.rdap.bootstrap;
+
+import jakarta.ws.rs.client.Client;
+import jakarta.ws.rs.client.ClientBuilder;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class RegistryInstancesTests {
+    private static final int THREADS = 32;
+
+    /**
+     * Serves the IPv4 registry from the local sample file instead of IANA, counting the fetches. Every fetch returns a
+     * new version of the file with a new publication date, unless the caller already has the current version or
+     * changes are turned off.
+     */
+    static class LocalFetcher implements RegistryInstances.Fetcher {
+        final AtomicInteger loads = new AtomicInteger();
+        volatile boolean changing = true;
+        private int version = 0;
+
+        @Override
+        public synchronized BootstrapFile fetch (Client client, BootstrapFile cached) throws IOException {
+            loads.incrementAndGet();
+            if (changing) version++;
+            if (cached != null && ("\"" + version + "\"").equals(cached.getETag())) return new BootstrapFile(null, cached.getETag(), null);
+
+            try (InputStream in = RegistryInstancesTests.class.getResourceAsStream("ipv4.json")) {
+                // Give concurrent callers time to pile up behind the first load
+                Thread.sleep(50);
+                String json = new String(in.readAllBytes(), StandardCharsets.UTF_8).replace("2024-05-01T18:00:02Z", "version " + version);
+                return new BootstrapFile(json.getBytes(StandardCharsets.UTF_8), "\"" + version + "\"", null);
+            } catch (InterruptedException e) {
+                throw new IOException(e);
+            }
+        }
+    }
+
+    /**
+     * Test that concurrent first calls share a single load and all receive the same instance
+     */
+    @Test
+    public void testConcurrentLoadIsSingleFlight () throws Exception {
+        LocalFetcher fetcher = new LocalFetcher();
+        RegistryInstances<IPv4BootstrapRegistry> instances = new RegistryInstances<>("ipv4.json", IPv4BootstrapRegistry::new, fetcher);
+        Client client = ClientBuilder.newClient();
+
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<IPv4BootstrapRegistry>> results = new ArrayList<>();
+
+        for (int i = 0; i < THREADS; i++) {
+            results.add(executor.submit(() -> {
+                start.await();
+                return instances.get(client);
+            }));
+        }
+
+        start.countDown();
+
+        IPv4BootstrapRegistry first = results.get(0).get(10, TimeUnit.SECONDS);
+        for (Future<IPv4BootstrapRegistry> result : results) assertSame(first, result.get(10, TimeUnit.SECONDS));
+
+        executor.shutdown();
+        assertEquals(1, fetcher.loads.get());
+    }
+
+    /**
+     * Test that readers never see a missing instance while refreshes replace it
+     */
+    @Test
+    public void testRefreshPublishesAtomically () throws Exception {
+        LocalFetcher fetcher = new LocalFetcher();
+        RegistryInstances<IPv4BootstrapRegistry> instances = new RegistryInstances<>("ipv4.json", IPv4BootstrapRegistry::new, fetcher);
+        Client client = ClientBuilder.newClient();
+        IPv4BootstrapRegistry initial = instances.get(client);
+
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        AtomicBoolean running = new AtomicBoolean(true);
+        List<Future<Integer>> readers = new ArrayList<>();
+
+        for (int i = 0; i < THREADS - 1; i++) {
+            readers.add(executor.submit(() -> {
+                int reads = 0;
+                while (running.get()) {
+                    IPv4BootstrapRegistry registry = instances.get(client);
+                    assertNotNull(registry);
+                    assertEquals("https://rdap.db.ripe.net/", registry.getServiceURLForIP("2.56.11.1"));
+                    reads++;
+                }
+                return reads;
+            }));
+        }
+
+        IPv4BootstrapRegistry refreshed = null;
+        for (int i = 0; i < 5; i++) refreshed = instances.refresh(client);
+        running.set(false);
+
+        for (Future<Integer> reader : readers) assertTrue(reader.get(10, TimeUnit.SECONDS) > 0);
+        executor.shutdown();
+
+        assertNotSame(initial, refreshed);
+        assertSame(refreshed, instances.get(client));
+        assertEquals(6, fetcher.loads.get());
+    }
+
+    /**
+     * Test that a failed load is not cached and the next caller tries again
+     */
+    @Test
+    public void testFailedLoadIsRetried () {
+        AtomicInteger attempts = new AtomicInteger();
+        RegistryInstances<IPv4BootstrapRegistry> instances = new RegistryInstances<>("ipv4.json", IPv4BootstrapRegistry::new, (client, cached) -> {
+            if (attempts.incrementAndGet() == 1) throw new IOException("Registry unavailable");
+            return new LocalFetcher().fetch(client, cached);
+        });
+        Client client = ClientBuilder.newClient();
+
+        assertThrows(RuntimeException.class, () -> instances.get(client));
+        assertNotNull(instances.get(client));
+        assertEquals(2, attempts.get());
+    }
+
+    /**
+     * Test that a refresh of an unchanged registry keeps the current instance instead of parsing the file again
+     */
+    @Test
+    public void testUnchangedRefreshKeepsInstance () {
+        LocalFetcher fetcher = new LocalFetcher();
+        RegistryInstances<IPv4BootstrapRegistry> instances = new RegistryInstances<>("ipv4.json", IPv4BootstrapRegistry::new, fetcher);
+        Client client = ClientBuilder.newClient();
+
+        IPv4BootstrapRegistry initial = instances.get(client);
+        fetcher.changing = false;
+
+        assertSame(initial, instances.refresh(client));
+        assertEquals(2, fetcher.loads.get());
+    }
+
+    /**
+     * Test that a changed file with an unchanged publication date keeps the current instance
+     */
+    @Test
+    public void testUnchangedPublicationKeepsInstance () {
+        LocalFetcher fetcher = new LocalFetcher();
+        RegistryInstances<IPv4BootstrapRegistry> instances = new RegistryInstances<>("ipv4.json", IPv4BootstrapRegistry::new, (client, cached) -> {
+            BootstrapFile file = fetcher.fetch(client, cached);
+            return new BootstrapFile(file.getBody(), "\"" + fetcher.loads.get() + "\"", null);
+        });
+        Client client = ClientBuilder.newClient();
+        fetcher.changing = false;
+
+        IPv4BootstrapRegistry initial = instances.get(client);
+        assertSame(initial, instances.refresh(client));
+        assertEquals(2, fetcher.loads.get());
+    }
+
+    /**
+     * Test that a file that is still fresh according to its caching headers is not revalidated unless forced
+     */
+    @Test
+    public void testFreshFileIsNotRevalidated () {
+        LocalFetcher fetcher = new LocalFetcher();
+        RegistryInstances<IPv4BootstrapRegistry> instances = new RegistryInstances<>("ipv4.json", IPv4BootstrapRegistry::new, (client, cached) -> {
+            BootstrapFile file = fetcher.fetch(client, cached);
+            return new BootstrapFile(file.getBody(), file.getETag(), null, System.currentTimeMillis() + 3600000);
+        });
+        Client client = ClientBuilder.newClient();
+
+        IPv4BootstrapRegistry initial = instances.get(client);
+        assertFalse(instances.refreshIfStale(client));
+        assertEquals(1, fetcher.loads.get());
+
+        assertNotSame(initial, instances.refresh(client));
+        assertEquals(2, fetcher.loads.get());
+    }
+
+    /**
+     * Test that clients without an instance are not loaded by a background refresh
+     */
+    @Test
+    public void testRefreshIfStaleSkipsUnloadedClients () {
+        LocalFetcher fetcher = new LocalFetcher();
+        RegistryInstances<IPv4BootstrapRegistry> instances = new RegistryInstances<>("ipv4.json", IPv4BootstrapRegistry::new, fetcher);
+
+        assertFalse(instances.refreshIfStale(ClientBuilder.newClient()));
+        assertEquals(0, fetcher.loads.get());
+    }
+}
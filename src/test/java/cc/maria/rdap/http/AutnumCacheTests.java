@@ -0,0 +1,112 @@
+/*
+ * Copyright (c) 2023 Maria Merkel
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the license at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the license for the specific language governing permissions and
+ * limitations under the license.
+ */
+
+package cc.maria.rdap.http;
+
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+
+import static org.junit.Assert.*;
+
+public class AutnumCacheTests {
+    private static final byte[] BLOCK = "block".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] SINGLE = "single".getBytes(StandardCharsets.UTF_8);
+
+    private static long inOneMinute () {
+        return System.currentTimeMillis() + 60000;
+    }
+
+    /**
+     * Test that AS numbers within a cached block are answered by it, and others are not
+     */
+    @Test
+    public void testContainment () {
+        AutnumCache cache = new AutnumCache(1000, Duration.ofMinutes(5));
+        cache.put(64496, 64511, BLOCK, inOneMinute());
+        cache.put(4200000000L, 4294967294L, SINGLE, inOneMinute());
+
+        assertSame(BLOCK, cache.get(64496));
+        assertSame(BLOCK, cache.get(64500));
+        assertSame(BLOCK, cache.get(64511));
+        assertSame(SINGLE, cache.get(4294967294L));
+
+        assertNull(cache.get(64495));
+        assertNull(cache.get(64512));
+        assertNull(cache.get(4294967295L));
+
+        assertEquals(4, cache.getHitCount());
+        assertEquals(3, cache.getMissCount());
+        assertEquals(4.0 / 7, cache.getHitRate(), 1e-9);
+    }
+
+    /**
+     * Test that a single AS number cached within a block takes precedence over the block
+     */
+    @Test
+    public void testMostSpecific () {
+        AutnumCache cache = new AutnumCache(1000, Duration.ofMinutes(5));
+        cache.put(64496, 64511, BLOCK, inOneMinute());
+        cache.put(64500, 64500, SINGLE, inOneMinute());
+        cache.put(64496, 64496, SINGLE, inOneMinute());
+
+        assertSame(SINGLE, cache.get(64500));
+        assertSame(SINGLE, cache.get(64496));
+        assertSame(BLOCK, cache.get(64497));
+        assertSame(BLOCK, cache.get(64501));
+        assertEquals(3, cache.getEntryCount());
+    }
+
+    /**
+     * Test that caching the same block again replaces it
+     */
+    @Test
+    public void testReplace () {
+        AutnumCache cache = new AutnumCache(1000, Duration.ofMinutes(5));
+        cache.put(64496, 64511, BLOCK, inOneMinute());
+        cache.put(64496, 64511, SINGLE, inOneMinute());
+
+        assertSame(SINGLE, cache.get(64500));
+        assertEquals(1, cache.getEntryCount());
+    }
+
+    /**
+     * Test that an expired block is not used
+     */
+    @Test
+    public void testExpiry () throws InterruptedException {
+        AutnumCache cache = new AutnumCache(1000, Duration.ofMinutes(5));
+        cache.put(64496, 64511, BLOCK, System.currentTimeMillis() + 20);
+
+        Thread.sleep(40);
+        assertNull(cache.get(64500));
+    }
+
+    /**
+     * Test that the oldest blocks are evicted to stay within the maximum number of entries
+     */
+    @Test
+    public void testEviction () {
+        AutnumCache cache = new AutnumCache(100, Duration.ofMinutes(5));
+        for (int i = 0; i < 256; i++) cache.put(i * 10, i * 10 + 9, BLOCK, inOneMinute());
+
+        assertEquals(100, cache.getEntryCount());
+        assertEquals(156, cache.getEvictionCount());
+        assertNull(cache.get(5));
+        assertSame(BLOCK, cache.get(2555));
+    }
+}
@@ -0,0 +1,153 @@
+/*
+ * Copyright (c) 2023 Maria Merkel
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the license at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the license for the specific language governing permissions and
+ * limitations under the license.
+ */
+
+package cc.maria.rdap.http;
+
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+
+import static org.junit.Assert.*;
+
+public class IPNetworkCacheTests {
+    private static final byte[] SLASH_8 = "/8".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] SLASH_16 = "/16".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] SLASH_24 = "/24".getBytes(StandardCharsets.UTF_8);
+
+    private static long inOneMinute () {
+        return System.currentTimeMillis() + 60000;
+    }
+
+    /**
+     * Test that addresses and prefixes within a cached network are answered by it, and others are not
+     */
+    @Test
+    public void testContainment () {
+        IPNetworkCache cache = new IPNetworkCache(1000, Duration.ofMinutes(5));
+        cache.put("45.151.0.0", "45.151.255.255", SLASH_16, inOneMinute());
+
+        assertSame(SLASH_16, cache.get("45.151.0.0"));
+        assertSame(SLASH_16, cache.get("45.151.17.3"));
+        assertSame(SLASH_16, cache.get("45.151.255.255"));
+        assertSame(SLASH_16, cache.get("45.151.128.0/17"));
+
+        assertNull(cache.get("45.150.255.255"));
+        assertNull(cache.get("45.152.0.0"));
+        assertNull(cache.get("45.151.0.0/15"));
+
+        // IPv4-mapped IPv6 addresses are the same addresses
+        assertSame(SLASH_16, cache.get("::ffff:2d97:1"));
+
+        assertEquals(5, cache.getHitCount());
+        assertEquals(3, cache.getMissCount());
+    }
+
+    /**
+     * Test that the most specific of several nested networks is used
+     */
+    @Test
+    public void testMostSpecific () {
+        IPNetworkCache cache = new IPNetworkCache(1000, Duration.ofMinutes(5));
+        cache.put("3.0.0.0", "3.255.255.255", SLASH_8, inOneMinute());
+        cache.put("3.0.0.0", "3.0.255.255", SLASH_16, inOneMinute());
+        cache.put("3.5.1.0", "3.5.1.255", SLASH_24, inOneMinute());
+        cache.put("3.1.0.0", "3.1.255.255", new byte[0], inOneMinute());
+
+        assertSame(SLASH_16, cache.get("3.0.1.1"));
+        assertSame(SLASH_24, cache.get("3.5.1.1"));
+        assertSame(SLASH_8, cache.get("3.5.2.1"));
+        assertSame(SLASH_8, cache.get("3.200.0.1"));
+    }
+
+    /**
+     * Test that IPv6 networks are cached by their full 128-bit range
+     */
+    @Test
+    public void testIPv6 () {
+        IPNetworkCache cache = new IPNetworkCache(1000, Duration.ofMinutes(5));
+        cache.put("2a0e:b107::", "2a0e:b107:ffff:ffff:ffff:ffff:ffff:ffff", SLASH_16, inOneMinute());
+
+        assertSame(SLASH_16, cache.get("2a0e:b107:1:2:3:4:5:6"));
+        assertSame(SLASH_16, cache.get("2a0e:b107:abcd::/48"));
+        assertNull(cache.get("2a0e:b108::1"));
+        assertNull(cache.get("2a0e:b106:ffff:ffff:ffff:ffff:ffff:ffff"));
+    }
+
+    /**
+     * Test that an expired network is not used, even if a less specific one would contain the address
+     */
+    @Test
+    public void testExpiry () throws InterruptedException {
+        IPNetworkCache cache = new IPNetworkCache(1000, Duration.ofMinutes(5));
+        cache.put("3.0.0.0", "3.255.255.255", SLASH_8, inOneMinute());
+        cache.put("3.5.1.0", "3.5.1.255", SLASH_24, System.currentTimeMillis() + 20);
+
+        Thread.sleep(40);
+        assertNull(cache.get("3.5.1.1"));
+        assertEquals(1, cache.getEntryCount());
+        assertSame(SLASH_8, cache.get("3.5.1.1"));
+    }
+
+    /**
+     * Test that the oldest networks are evicted to stay within the maximum number of entries
+     */
+    @Test
+    public void testEviction () {
+        IPNetworkCache cache = new IPNetworkCache(100, Duration.ofMinutes(5));
+        for (int i = 0; i < 256; i++) cache.put("10.0." + i + ".0", "10.0." + i + ".255", SLASH_24, inOneMinute());
+
+        assertEquals(100, cache.getEntryCount());
+        assertEquals(156, cache.getEvictionCount());
+        assertNull(cache.get("10.0.0.1"));
+        assertSame(SLASH_24, cache.get("10.0.255.1"));
+    }
+
+    /**
+     * Test that networks that keep expiring and being cached again do not grow the eviction queue
+     */
+    @Test
+    public void testQueueStaysBounded () {
+        IPNetworkCache cache = new IPNetworkCache(10, Duration.ofMinutes(5));
+
+        for (int i = 0; i < 500; i++) {
+            long expires = System.currentTimeMillis() + 1;
+            cache.put("3.5.1.0", "3.5.1.255", SLASH_24, expires);
+            while (System.currentTimeMillis() <= expires) Thread.onSpinWait();
+
+            assertNull(cache.get("3.5.1.1"));
+        }
+
+        assertEquals(0, cache.getEntryCount());
+        assertTrue(cache.getQueueLength() <= 20);
+    }
+
+    /**
+     * Test that replacing a cached network keeps it evictable and does not grow the eviction queue
+     */
+    @Test
+    public void testReplacementStaysEvictable () {
+        IPNetworkCache cache = new IPNetworkCache(10, Duration.ofMinutes(5));
+        for (int i = 0; i < 500; i++) cache.put("3.5.1.0", "3.5.1.255", SLASH_24, inOneMinute());
+        assertTrue(cache.getQueueLength() <= 20);
+
+        for (int i = 0; i < 10; i++) cache.put("10.0." + i + ".0", "10.0." + i + ".255", SLASH_24, inOneMinute());
+
+        assertEquals(10, cache.getEntryCount());
+        assertNull(cache.get("3.5.1.1"));
+        assertSame(SLASH_24, cache.get("10.0.9.1"));
+    }
+}
@@ -0,0 +1,64 @@
+/*
+ * Copyright (c) 2023 Maria Merkel
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the license at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the license for the specific language governing permissions and
+ * limitations under the license.
+ */
+
+package cc.maria.rdap.http;
+
+import org.junit.Test;
+
+import java.time.Duration;
+
+import static org.junit.Assert.*;
+
+public class NegativeCacheTests {
+    private static final String URL = "https://rdap.example.net/domain/example.com";
+
+    /**
+     * Test that recorded misses are found until they expire, and that lookups are counted
+     */
+    @Test
+    public void testExpiry () throws InterruptedException {
+        NegativeCache cache = new NegativeCache(1000, Duration.ofMillis(50));
+
+        assertFalse(cache.contains(URL));
+        cache.add(URL);
+        assertTrue(cache.contains(URL));
+
+        Thread.sleep(100);
+        assertFalse(cache.contains(URL));
+
+        assertEquals(1, cache.getHitCount());
+        assertEquals(2, cache.getMissCount());
+        assertEquals(0, cache.getEntryCount());
+    }
+
+    /**
+     * Test that the least recently used misses are evicted to stay within the maximum number of entries
+     */
+    @Test
+    public void testEviction () {
+        NegativeCache cache = new NegativeCache(ResponseCache.SEGMENTS * 10, Duration.ofMinutes(1));
+
+        cache.add(URL);
+        for (int i = 0; i < 1000; i++) {
+            cache.add(URL + i);
+            assertTrue(cache.contains(URL));
+        }
+
+        assertTrue(cache.getEntryCount() <= cache.getMaxEntries());
+        assertEquals(1001 - cache.getEvictionCount(), cache.getEntryCount());
+        assertFalse(cache.contains(URL + 0));
+    }
+}
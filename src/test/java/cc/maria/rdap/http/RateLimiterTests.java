@@ -0,0 +1,127 @@
+/*
+ * Copyright (c) 2023 Maria Merkel
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the license at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the license for the specific language governing permissions and
+ * limitations under the license.
+ */
+
+package cc.maria.rdap.http;
+
+import org.junit.Test;
+
+import java.time.Duration;
+
+import static org.junit.Assert.*;
+
+public class RateLimiterTests {
+    private static final String URL = "https://rdap.example.net/";
+    private static final long SECOND = 1_000_000_000L;
+
+    /**
+     * Test that a burst is sent right away and later requests are spread out at the steady rate
+     */
+    @Test
+    public void testBurstThenSteadyRate () {
+        RateLimiter limiter = new RateLimiter(10, 2);
+
+        assertEquals(0, limiter.acquire(URL, 0));
+        assertEquals(0, limiter.acquire(URL, 0));
+        assertEquals(SECOND / 10, limiter.acquire(URL, 0));
+        assertEquals(2 * SECOND / 10, limiter.acquire(URL, 0));
+
+        // The reserved slots are used up after 200 ms, and the bucket is full again 200 ms later
+        assertEquals(0, limiter.acquire(URL, 4 * SECOND / 10));
+        assertEquals(0, limiter.acquire(URL, 4 * SECOND / 10));
+        assertEquals(SECOND / 10, limiter.acquire(URL, 4 * SECOND / 10));
+    }
+
+    /**
+     * Test that each service URL has its own bucket, and that per-URL limits apply regardless of a trailing slash
+     */
+    @Test
+    public void testLimitsPerServiceURL () {
+        RateLimiter limiter = new RateLimiter(1, 1);
+        limiter.setLimit("https://rdap.example.org", 100, 1);
+
+        assertEquals(0, limiter.acquire(URL, 0));
+        assertEquals(SECOND, limiter.acquire(URL, 0));
+
+        assertEquals(0, limiter.acquire("https://rdap.example.org/", 0));
+        assertEquals(SECOND / 100, limiter.acquire("https://rdap.example.org/", 0));
+    }
+
+    /**
+     * Test that requests which would wait longer than the maximum wait are rejected without reserving a slot
+     */
+    @Test
+    public void testMaxWait () {
+        RateLimiter limiter = new RateLimiter(1, 1);
+        limiter.setMaxWait(Duration.ofMillis(1500));
+
+        assertEquals(0, limiter.acquire(URL, 0));
+        assertEquals(SECOND, limiter.acquire(URL, 0));
+        assertEquals(-1, limiter.acquire(URL, 0));
+        assertEquals(2 * SECOND, limiter.getDelay(URL, 0));
+    }
+
+    /**
+     * Test that a 429 response pauses a service URL for the time the server asked for, after which requests resume
+     * one at a time
+     */
+    @Test
+    public void testRetryAfterPausesServiceURL () {
+        RateLimiter limiter = new RateLimiter(10, 5);
+        limiter.setMaxWait(Duration.ofSeconds(15));
+
+        assertEquals(0, limiter.acquire(URL, 0));
+        limiter.backOff(URL, 20000, 0);
+
+        assertTrue(limiter.isPaused(URL, 0));
+        assertFalse(limiter.isPaused(URL, 20 * SECOND));
+        assertEquals(-1, limiter.acquire(URL, 0));
+
+        assertEquals(10 * SECOND, limiter.acquire(URL, 10 * SECOND));
+        assertEquals(11 * SECOND / 10, limiter.acquire(URL, 19 * SECOND));
+        assertFalse(limiter.isPaused("https://rdap.example.org/", 0));
+    }
+
+    /**
+     * Test that 429 responses without Retry-After back off exponentially until a request succeeds
+     */
+    @Test
+    public void testExponentialBackoff () {
+        RateLimiter limiter = new RateLimiter(1000, 1);
+
+        limiter.backOff(URL, -1, 0);
+        assertEquals(RateLimiter.INITIAL_BACKOFF_NANOS, limiter.getDelay(URL, 0));
+
+        limiter.backOff(URL, -1, 0);
+        assertEquals(2 * RateLimiter.INITIAL_BACKOFF_NANOS, limiter.getDelay(URL, 0));
+
+        limiter.backOff(URL, -1, 0);
+        assertEquals(4 * RateLimiter.INITIAL_BACKOFF_NANOS, limiter.getDelay(URL, 0));
+
+        limiter.recordSuccess(URL);
+        limiter.backOff(URL, -1, 10 * SECOND);
+        assertEquals(RateLimiter.INITIAL_BACKOFF_NANOS, limiter.getDelay(URL, 10 * SECOND));
+    }
+
+    /**
+     * Test that invalid limits are rejected
+     */
+    @Test
+    public void testInvalidLimits () {
+        assertThrows(IllegalArgumentException.class, () -> new RateLimiter(0, 1));
+        assertThrows(IllegalArgumentException.class, () -> new RateLimiter(Double.NaN, 1));
+        assertThrows(IllegalArgumentException.class, () -> new RateLimiter(1, 0));
+    }
+}
@@ -0,0 +1,119 @@
+/*
+ * Copyright (c) 2023 Maria Merkel
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the license at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the license for the specific language governing permissions and
+ * limitations under the license.
+ */
+
+package cc.maria.rdap.http;
+
+import org.junit.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class ResponseCacheTests {
+    private static final String URL = "https://rdap.example.net/domain/example.com";
+
+    private static long inOneMinute () {
+        return System.currentTimeMillis() + 60000;
+    }
+
+    /**
+     * Test that fresh entries are returned and counted as hits, while unknown and expired ones are misses
+     */
+    @Test
+    public void testHitsAndMisses () throws InterruptedException {
+        ResponseCache cache = new ResponseCache(1024 * 1024, Duration.ofMinutes(5));
+        byte[] body = new byte[100];
+
+        assertNull(cache.get(URL));
+        cache.put(URL, body, inOneMinute());
+        assertSame(body, cache.get(URL));
+
+        cache.put(URL + "2", body, System.currentTimeMillis() + 20);
+        Thread.sleep(40);
+        assertNull(cache.get(URL + "2"));
+
+        assertEquals(1, cache.getHitCount());
+        assertEquals(2, cache.getMissCount());
+        assertEquals(1, cache.getEntryCount());
+        assertEquals(100, cache.getSize());
+    }
+
+    /**
+     * Test that responses that must not be reused are not cached
+     */
+    @Test
+    public void testExpiredIsNotCached () {
+        ResponseCache cache = new ResponseCache(1024 * 1024, Duration.ofMinutes(5));
+        cache.put(URL, new byte[100], 0);
+
+        assertEquals(0, cache.getEntryCount());
+    }
+
+    /**
+     * Test that the least recently used entries are evicted to stay within the maximum size
+     */
+    @Test
+    public void testEviction () {
+        ResponseCache cache = new ResponseCache(ResponseCache.SEGMENTS * 1000, Duration.ofMinutes(5));
+
+        cache.put(URL, new byte[100], inOneMinute());
+        for (int i = 0; i < 1000; i++) {
+            cache.put(URL + i, new byte[100], inOneMinute());
+
+            // Keep the first entry recently used
+            assertNotNull(cache.get(URL));
+        }
+
+        assertTrue(cache.getSize() <= cache.getMaxSize());
+        assertTrue(cache.getEvictionCount() > 0);
+        assertEquals(1001 - cache.getEvictionCount(), cache.getEntryCount());
+        assertNull(cache.get(URL + 0));
+    }
+
+    /**
+     * Test that concurrent readers and writers keep the cache consistent and within its maximum size
+     */
+    @Test
+    public void testConcurrentAccess () throws Exception {
+        ResponseCache cache = new ResponseCache(ResponseCache.SEGMENTS * 10000, Duration.ofMinutes(5));
+        ExecutorService executor = Executors.newFixedThreadPool(16);
+        List<Future<?>> tasks = new ArrayList<>();
+
+        for (int t = 0; t < 16; t++) {
+            tasks.add(executor.submit(() -> {
+                for (int i = 0; i < 10000; i++) {
+                    String url = URL + (i % 500);
+                    byte[] body = cache.get(url);
+                    if (body == null) cache.put(url, new byte[1000], inOneMinute());
+                    else assertEquals(1000, body.length);
+                }
+            }));
+        }
+
+        for (Future<?> task : tasks) task.get(30, TimeUnit.SECONDS);
+        executor.shutdown();
+
+        assertEquals(160000, cache.getHitCount() + cache.getMissCount());
+        assertTrue(cache.getSize() <= cache.getMaxSize());
+        assertEquals(cache.getSize(), cache.getEntryCount() * 1000L);
+    }
+}
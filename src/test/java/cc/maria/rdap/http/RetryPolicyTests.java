@@ -0,0 +1,69 @@
+/*
+ * Copyright (c) 2023 Maria Merkel
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the license at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the license for the specific language governing permissions and
+ * limitations under the license.
+ */
+
+package cc.maria.rdap.http;
+
+import org.junit.Test;
+
+import java.time.Duration;
+
+import static org.junit.Assert.*;
+
+public class RetryPolicyTests {
+    /**
+     * Test that the backoff cap doubles with every retry until it reaches the maximum
+     */
+    @Test
+    public void testBackoffCap () {
+        RetryPolicy policy = new RetryPolicy(10, Duration.ofMillis(100), Duration.ofSeconds(1));
+
+        assertEquals(Duration.ofMillis(100).toNanos(), policy.getBackoffCap(0));
+        assertEquals(Duration.ofMillis(200).toNanos(), policy.getBackoffCap(1));
+        assertEquals(Duration.ofMillis(800).toNanos(), policy.getBackoffCap(3));
+        assertEquals(Duration.ofSeconds(1).toNanos(), policy.getBackoffCap(4));
+        assertEquals(Duration.ofSeconds(1).toNanos(), policy.getBackoffCap(1000));
+    }
+
+    /**
+     * Test that backoffs are spread between zero and the cap
+     */
+    @Test
+    public void testJitter () {
+        RetryPolicy policy = new RetryPolicy(10, Duration.ofMillis(100), Duration.ofSeconds(1));
+        long min = Long.MAX_VALUE;
+        long max = 0;
+
+        for (int i = 0; i < 1000; i++) {
+            long backoff = policy.getBackoff(2);
+            assertTrue(backoff >= 0 && backoff <= policy.getBackoffCap(2));
+
+            min = Math.min(min, backoff);
+            max = Math.max(max, backoff);
+        }
+
+        assertTrue(min < policy.getBackoffCap(2) / 4);
+        assertTrue(max > policy.getBackoffCap(2) * 3 / 4);
+    }
+
+    /**
+     * Test that invalid policies are rejected
+     */
+    @Test
+    public void testInvalidPolicy () {
+        assertThrows(IllegalArgumentException.class, () -> new RetryPolicy(-1, Duration.ofMillis(100), Duration.ofSeconds(1)));
+        assertThrows(IllegalArgumentException.class, () -> new RetryPolicy(1, Duration.ofSeconds(2), Duration.ofSeconds(1)));
+    }
+}
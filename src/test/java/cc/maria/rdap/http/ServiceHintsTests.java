@@ -0,0 +1,92 @@
+/*
+ * Copyright (c) 2023 Maria Merkel
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the license at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the license for the specific language governing permissions and
+ * limitations under the license.
+ */
+
+package cc.maria.rdap.http;
+
+import org.junit.Test;
+
+import java.time.Duration;
+
+import static org.junit.Assert.*;
+
+public class ServiceHintsTests {
+    private static final String ARIN = "https://rdap.arin.net/registry/";
+    private static final String RIPE = "https://rdap.db.ripe.net/";
+
+    /**
+     * Test that addresses and prefixes within a remembered network are answered with its server, and others are not
+     */
+    @Test
+    public void testNetworks () {
+        ServiceHints hints = new ServiceHints(1000, Duration.ofMinutes(5));
+        hints.putNetwork("192.0.2.0", "192.0.2.255", ARIN);
+        hints.putNetwork("192.0.2.128", "192.0.2.255", RIPE);
+
+        assertEquals(ARIN, hints.getForIP("192.0.2.1"));
+        assertEquals(RIPE, hints.getForIP("192.0.2.200"));
+        assertEquals(RIPE, hints.getForIP("192.0.2.128/25"));
+        assertNull(hints.getForIP("198.51.100.1"));
+    }
+
+    /**
+     * Test that AS numbers within a remembered block are answered with its server, and others are not
+     */
+    @Test
+    public void testAutnums () {
+        ServiceHints hints = new ServiceHints(1000, Duration.ofMinutes(5));
+        hints.putAutnums(64496, 64511, RIPE);
+
+        assertEquals(RIPE, hints.getForASN(64500));
+        assertNull(hints.getForASN(64512));
+    }
+
+    /**
+     * Test that domains are answered with the server of their TLD regardless of case and trailing dot
+     */
+    @Test
+    public void testDomains () {
+        ServiceHints hints = new ServiceHints(1000, Duration.ofMinutes(5));
+        hints.putDomain("example.com", ARIN);
+
+        assertEquals(ARIN, hints.getForDomain("other.example.COM."));
+        assertNull(hints.getForDomain("example.net"));
+        assertEquals(1, hints.getEntryCount());
+    }
+
+    /**
+     * Test that hints are forgotten once they expire or are cleared
+     */
+    @Test
+    public void testExpiryAndClear () throws InterruptedException {
+        ServiceHints expiring = new ServiceHints(1000, Duration.ofMillis(1));
+        expiring.putDomain("example.com", ARIN);
+        expiring.putAutnums(64496, 64511, RIPE);
+        Thread.sleep(10);
+
+        assertEquals(0, expiring.getEntryCount());
+        assertNull(expiring.getForDomain("example.com"));
+        assertNull(expiring.getForASN(64500));
+
+        ServiceHints hints = new ServiceHints(1000, Duration.ofMinutes(5));
+        hints.putNetwork("192.0.2.0", "192.0.2.255", ARIN);
+        hints.putDomain("example.com", ARIN);
+        hints.clear();
+
+        assertNull(hints.getForIP("192.0.2.1"));
+        assertNull(hints.getForDomain("example.com"));
+        assertEquals(0, hints.getEntryCount());
+    }
+}
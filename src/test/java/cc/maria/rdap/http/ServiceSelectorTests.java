@@ -0,0 +1,92 @@
+/*
+ * Copyright (c) 2024 Maria Merkel
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the license at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the license for the specific language governing permissions and
+ * limitations under the license.
+ */
+package cc.maria.rdap.http;
+
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class ServiceSelectorTests {
+    private static final String HTTPS_A = "https://rdap-a.example.net/";
+    private static final String HTTPS_B = "https://rdap-b.example.net/";
+    private static final String HTTP_A = "http://rdap-a.example.net/";
+
+    /**
+     * Test that HTTPS URLs are preferred and the registry order is kept without observations
+     */
+    @Test
+    public void testPreferHTTPS () {
+        ServiceSelector selector = new ServiceSelector();
+        assertEquals(List.of(HTTPS_A, HTTPS_B, HTTP_A), selector.order(List.of(HTTP_A, HTTPS_A, HTTPS_B)));
+
+        // Even a failing HTTPS URL is tried before falling back to plain HTTP
+        selector.recordFailure(HTTPS_A);
+        selector.recordFailure(HTTPS_B);
+        selector.recordSuccess(HTTP_A, 1000000);
+        assertEquals(HTTP_A, selector.order(List.of(HTTP_A, HTTPS_A, HTTPS_B)).get(2));
+    }
+
+    /**
+     * Test that the URL with the lower latency is tried first
+     */
+    @Test
+    public void testPreferLowLatency () {
+        ServiceSelector selector = new ServiceSelector();
+        selector.recordSuccess(HTTPS_A, 900000000);
+        selector.recordSuccess(HTTPS_B, 50000000);
+
+        assertEquals(List.of(HTTPS_B, HTTPS_A), selector.order(List.of(HTTPS_A, HTTPS_B)));
+        assertEquals(50000000, selector.getLatency(HTTPS_B), 1);
+        assertEquals(-1, selector.getLatency(HTTP_A), 0);
+    }
+
+    /**
+     * Test that a URL that had errors is tried after a slower URL without errors
+     */
+    @Test
+    public void testFailover () {
+        ServiceSelector selector = new ServiceSelector();
+        selector.recordSuccess(HTTPS_A, 50000000);
+        selector.recordSuccess(HTTPS_B, 400000000);
+        selector.recordFailure(HTTPS_A);
+
+        assertEquals(List.of(HTTPS_B, HTTPS_A), selector.order(List.of(HTTPS_A, HTTPS_B)));
+        assertTrue(selector.getErrorRate(HTTPS_A) > 0);
+        assertEquals(0, selector.getErrorRate(HTTPS_B), 0);
+    }
+
+    /**
+     * Test that latency percentiles are reported once there are enough observations, and only cover recent ones
+     */
+    @Test
+    public void testLatencyPercentile () {
+        ServiceSelector selector = new ServiceSelector();
+        for (int i = 1; i < ServiceSelector.MIN_SAMPLES; i++) selector.recordSuccess(HTTPS_A, i);
+        assertEquals(-1, selector.getLatencyPercentile(HTTPS_A, 0.5));
+
+        for (int i = ServiceSelector.MIN_SAMPLES; i <= 100; i++) selector.recordSuccess(HTTPS_A, i);
+        selector.recordFailure(HTTPS_A);
+
+        // Only the last 64 latencies, 37 to 100, are kept
+        assertEquals(37, selector.getLatencyPercentile(HTTPS_A, 0));
+        assertEquals(68, selector.getLatencyPercentile(HTTPS_A, 0.5));
+        assertEquals(97, selector.getLatencyPercentile(HTTPS_A, 0.95));
+        assertEquals(100, selector.getLatencyPercentile(HTTPS_A, 1));
+        assertEquals(-1, selector.getLatencyPercentile(HTTPS_B, 0.5));
+    }
+}
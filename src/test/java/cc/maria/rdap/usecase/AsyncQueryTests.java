@@ -0,0 +1,116 @@
+/*
+ * Copyright (c) 2024 Maria Merkel
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the license at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the license for the specific language governing permissions and
+ * limitations under the license.
+ */
+
+package cc.maria.rdap.usecase;
+
+import cc.maria.rdap.RDAPClient;
+import cc.maria.rdap.exception.InvalidObjectTypeException;
+import cc.maria.rdap.object.IPNetworkObjectClass;
+import cc.maria.rdap.object.ObjectClass;
+import cc.maria.rdap.object.ObjectReference;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class AsyncQueryTests {
+    private static final int QUERIES = 200;
+
+    private TestRDAPServer server;
+    private CountDownLatch release;
+
+    /**
+     * Start a local server answering for TEST-NET-1, holding back responses until they are released
+     */
+    @Before
+    public void startServer () throws IOException {
+        server = new TestRDAPServer(QUERIES);
+        release = new CountDownLatch(0);
+
+        server.bootstrap("ipv4.json", TestRDAPServer.entry("192.0.2.0/24", server.getBase() + "rdap/"));
+        server.handle("/rdap/", exchange -> {
+            try {
+                release.await(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+
+            TestRDAPServer.respond(exchange, 200, TestRDAPServer.network(TestRDAPServer.handle(exchange)));
+        });
+        server.start();
+    }
+
+    @After
+    public void stopServer () {
+        server.close();
+    }
+
+    /**
+     * Test that an asynchronous query returns without waiting for the server and runs on the executor of the client
+     */
+    @Test
+    public void testQueryAsync () throws Exception {
+        RDAPClient client = new RDAPClient();
+        AtomicInteger tasks = new AtomicInteger();
+        client.setExecutor(runnable -> {
+            tasks.incrementAndGet();
+            ForkJoinPool.commonPool().execute(runnable);
+        });
+
+        release = new CountDownLatch(1);
+        CompletableFuture<IPNetworkObjectClass> future = client.queryIPNetworkAsync(new ObjectReference("192.0.2.1"));
+        assertFalse(future.isDone());
+
+        release.countDown();
+        assertEquals("192.0.2.1", future.get(10, TimeUnit.SECONDS).getHandle());
+        assertEquals(2, tasks.get());
+    }
+
+    /**
+     * Test that many queries can be in flight at the same time
+     */
+    @Test
+    public void testManyQueriesInFlight () throws Exception {
+        RDAPClient client = new RDAPClient();
+        release = new CountDownLatch(1);
+
+        List<CompletableFuture<ObjectClass>> futures = new ArrayList<>();
+        for (int i = 0; i < QUERIES; i++) futures.add(client.queryAsync(new ObjectReference("192.0.2." + (i % 256))));
+
+        release.countDown();
+        for (int i = 0; i < QUERIES; i++) {
+            assertEquals("192.0.2." + (i % 256), futures.get(i).get(30, TimeUnit.SECONDS).getHandle());
+        }
+    }
+
+    /**
+     * Test that errors complete the future exceptionally instead of being thrown to the caller
+     */
+    @Test
+    public void testInvalidTypeFailsFuture () {
+        CompletableFuture<?> future = new RDAPClient().queryDomainAsync(new ObjectReference("192.0.2.1"));
+
+        ExecutionException e = assertThrows(ExecutionException.class, () -> future.get(10, TimeUnit.SECONDS));
+        assertTrue(e.getCause() instanceof InvalidObjectTypeException);
+    }
+}
@@ -0,0 +1,145 @@
+/*
+ * Copyright (c) 2024 Maria Merkel
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the license at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the license for the specific language governing permissions and
+ * limitations under the license.
+ */
+
+package cc.maria.rdap.usecase;
+
+import cc.maria.rdap.QueryResult;
+import cc.maria.rdap.RDAPClient;
+import cc.maria.rdap.exception.UnknownObjectTypeException;
+import cc.maria.rdap.exception.UnknownServiceException;
+import cc.maria.rdap.object.ObjectReference;
+import com.sun.net.httpserver.HttpHandler;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.*;
+
+public class BatchQueryTests {
+    private TestRDAPServer server;
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicInteger maxInFlight = new AtomicInteger();
+    private final Map<String, AtomicInteger> serverInFlight = new ConcurrentHashMap<>();
+    private final Map<String, AtomicInteger> serverMaxInFlight = new ConcurrentHashMap<>();
+
+    /**
+     * Answers slowly, recording how many requests each server handles at the same time
+     */
+    private HttpHandler rdapServer (String name) {
+        serverInFlight.put(name, new AtomicInteger());
+        serverMaxInFlight.put(name, new AtomicInteger());
+
+        return exchange -> {
+            int current = serverInFlight.get(name).incrementAndGet();
+            serverMaxInFlight.get(name).accumulateAndGet(current, Math::max);
+            maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+
+            try {
+                Thread.sleep(20);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+
+            inFlight.decrementAndGet();
+            serverInFlight.get(name).decrementAndGet();
+
+            TestRDAPServer.respond(exchange, 200, TestRDAPServer.network(TestRDAPServer.handle(exchange)));
+        };
+    }
+
+    /**
+     * Start a local server that acts as two RDAP servers, one reached as 127.0.0.1 for TEST-NET-1 and one reached as
+     * localhost for TEST-NET-2
+     */
+    @Before
+    public void startServer () throws IOException {
+        server = new TestRDAPServer(64);
+        int port = server.getPort();
+
+        server.bootstrap("ipv4.json", TestRDAPServer.entry("192.0.2.0/24", "http://127.0.0.1:" + port + "/first/"), TestRDAPServer.entry("198.51.100.0/24", "http://localhost:" + port + "/second/"));
+        server.handle("/first/", rdapServer("first"));
+        server.handle("/second/", rdapServer("second"));
+        server.start();
+    }
+
+    @After
+    public void stopServer () {
+        server.close();
+    }
+
+    /**
+     * Test that each server receives at most the configured number of concurrent queries, while the servers are
+     * queried in parallel
+     */
+    @Test
+    public void testConcurrencyPerServer () throws Exception {
+        RDAPClient client = new RDAPClient();
+        client.setMaxConcurrentQueriesPerServer(2);
+
+        List<ObjectReference> references = new ArrayList<>();
+        for (int i = 1; i <= 20; i++) {
+            references.add(new ObjectReference("192.0.2." + i));
+            references.add(new ObjectReference("198.51.100." + i));
+        }
+
+        List<QueryResult> results = Collections.synchronizedList(new ArrayList<>());
+        client.queryAll(references, results::add).get(30, TimeUnit.SECONDS);
+
+        assertEquals(40, results.size());
+        for (QueryResult result : results) {
+            assertTrue(result.isSuccess());
+            assertEquals(result.getReference().getHandle(), result.getObject().getHandle());
+        }
+
+        assertEquals(2, serverMaxInFlight.get("first").get());
+        assertEquals(2, serverMaxInFlight.get("second").get());
+        assertTrue(maxInFlight.get() > 2);
+    }
+
+    /**
+     * Test that failing queries are reported with their error without affecting the rest of the batch
+     */
+    @Test
+    public void testFailuresAreReported () {
+        List<ObjectReference> references = List.of(new ObjectReference("192.0.2.1"), new ObjectReference("203.0.113.1"), new ObjectReference("not a handle"));
+
+        Map<String, QueryResult> results = new RDAPClient().queryAll(references).collect(Collectors.toMap(result -> result.getReference().getHandle(), result -> result));
+
+        assertEquals(3, results.size());
+        assertTrue(results.get("192.0.2.1").isSuccess());
+        assertTrue(results.get("203.0.113.1").getError() instanceof UnknownServiceException);
+        assertTrue(results.get("not a handle").getError() instanceof UnknownObjectTypeException);
+        assertNull(results.get("not a handle").getObject());
+    }
+
+    /**
+     * Test that an empty batch completes immediately
+     */
+    @Test
+    public void testEmptyBatch () throws Exception {
+        RDAPClient client = new RDAPClient();
+
+        client.queryAll(List.of(), result -> fail()).get(1, TimeUnit.SECONDS);
+        assertEquals(0, client.queryAll(List.of()).count());
+    }
+}
@@ -0,0 +1,251 @@
+/*
+ * Copyright (c) 2023 Maria Merkel
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the license at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the license for the specific language governing permissions and
+ * limitations under the license.
+ */
+
+package cc.maria.rdap.usecase;
+
+import cc.maria.rdap.RDAPClient;
+import cc.maria.rdap.exception.ObjectNotFoundException;
+import cc.maria.rdap.exception.UnknownServiceException;
+import cc.maria.rdap.http.AutnumCache;
+import cc.maria.rdap.http.IPNetworkCache;
+import cc.maria.rdap.http.NegativeCache;
+import cc.maria.rdap.http.ResponseCache;
+import cc.maria.rdap.object.IPNetworkObjectClass;
+import cc.maria.rdap.object.ObjectReference;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class CachingTests {
+    private TestRDAPServer server;
+    private String base;
+    private final AtomicInteger requests = new AtomicInteger();
+
+    /**
+     * Start a local server that answers for TEST-NET-1 without caching headers, for TEST-NET-2 with max-age and for
+     * TEST-NET-3 with no-store, for 192.0.1.0/24 with max-age followed by no-store, and 192.0.0.0/24 from two URLs.
+     * Addresses ending in .99 do not exist, and TEST-NET-1 is returned as a single network, as are the AS numbers
+     * reserved for documentation.
+     */
+    @Before
+    public void startServer () throws IOException {
+        server = new TestRDAPServer();
+        base = server.getBase();
+
+        server.bootstrap("ipv4.json", TestRDAPServer.entry("192.0.2.0/24", base + "default/"), TestRDAPServer.entry("198.51.100.0/24", base + "maxage/"), TestRDAPServer.entry("203.0.113.0/24", base + "nostore/"), TestRDAPServer.entry("192.0.1.0/24", base + "maxagenostore/"), TestRDAPServer.entry("192.0.0.0/24", base + "first/", base + "second/"));
+        server.bootstrap("asn.json", TestRDAPServer.entry("64496-64511", base + "default/"));
+        server.handle("/", exchange -> {
+            requests.incrementAndGet();
+            String path = exchange.getRequestURI().getPath();
+
+            if (path.endsWith(".99")) {
+                exchange.sendResponseHeaders(404, -1);
+                exchange.close();
+                return;
+            }
+
+            if (path.startsWith("/maxage/")) exchange.getResponseHeaders().add("Cache-Control", "public, max-age=3600");
+            if (path.startsWith("/nostore/")) exchange.getResponseHeaders().add("Cache-Control", "no-store");
+            if (path.startsWith("/maxagenostore/")) exchange.getResponseHeaders().add("Cache-Control", "max-age=3600, no-store");
+
+            if (path.contains("/autnum/")) {
+                TestRDAPServer.respond(exchange, 200, "{\"objectClassName\": \"autnum\", \"handle\": \"AS" + TestRDAPServer.handle(exchange) + "\", \"startAutnum\": 64496, \"endAutnum\": 64511}");
+                return;
+            }
+
+            String network = path.startsWith("/default/") ? ", \"startAddress\": \"192.0.2.0\", \"endAddress\": \"192.0.2.255\"" : "";
+            TestRDAPServer.respond(exchange, 200, "{\"objectClassName\": \"ip network\", \"handle\": \"" + TestRDAPServer.handle(exchange) + "\"" + network + "}");
+        });
+        server.start();
+    }
+
+    @After
+    public void stopServer () {
+        server.close();
+    }
+
+    /**
+     * Test that repeated queries are answered from the cache, and each hit returns a new object
+     */
+    @Test
+    public void testRepeatedQueryIsCached () throws Exception {
+        RDAPClient client = new RDAPClient();
+        client.setResponseCache(new ResponseCache(1024 * 1024, Duration.ofMinutes(5)));
+
+        IPNetworkObjectClass first = client.queryIPNetwork(new ObjectReference("198.51.100.1"));
+        IPNetworkObjectClass second = client.queryIPNetwork(new ObjectReference("198.51.100.1"));
+        IPNetworkObjectClass async = client.queryIPNetworkAsync(new ObjectReference("198.51.100.1")).get(10, TimeUnit.SECONDS);
+
+        assertEquals("198.51.100.1", second.getHandle());
+        assertEquals("198.51.100.1", async.getHandle());
+        assertNotSame(first, second);
+        assertEquals(1, requests.get());
+        assertEquals(2, client.getResponseCache().getHitCount());
+    }
+
+    /**
+     * Test that the default time to live applies to responses without caching headers
+     */
+    @Test
+    public void testDefaultTTL () throws Exception {
+        RDAPClient client = new RDAPClient();
+        client.setResponseCache(new ResponseCache(1024 * 1024, Duration.ofMillis(50)));
+
+        client.query(new ObjectReference("192.0.2.1"));
+        client.query(new ObjectReference("192.0.2.1"));
+        assertEquals(1, requests.get());
+
+        Thread.sleep(100);
+        client.query(new ObjectReference("192.0.2.1"));
+        assertEquals(2, requests.get());
+    }
+
+    /**
+     * Test that responses with no-store are not cached
+     */
+    @Test
+    public void testNoStore () throws Exception {
+        RDAPClient client = new RDAPClient();
+        client.setResponseCache(new ResponseCache(1024 * 1024, Duration.ofMinutes(5)));
+
+        client.query(new ObjectReference("203.0.113.1"));
+        client.query(new ObjectReference("203.0.113.1"));
+
+        assertEquals(2, requests.get());
+        assertEquals(0, client.getResponseCache().getEntryCount());
+    }
+
+    /**
+     * Test that no-store takes precedence over a max-age that comes before it
+     */
+    @Test
+    public void testNoStoreAfterMaxAge () throws Exception {
+        RDAPClient client = new RDAPClient();
+        client.setResponseCache(new ResponseCache(1024 * 1024, Duration.ofMinutes(5)));
+
+        client.query(new ObjectReference("192.0.1.1"));
+        client.query(new ObjectReference("192.0.1.1"));
+
+        assertEquals(2, requests.get());
+        assertEquals(0, client.getResponseCache().getEntryCount());
+    }
+
+    /**
+     * Test that objects the server does not know are remembered until the negative cache entry expires
+     */
+    @Test
+    public void testNotFoundIsRemembered () throws Exception {
+        RDAPClient client = new RDAPClient();
+        client.setNegativeCache(new NegativeCache(1000, Duration.ofMillis(200)));
+
+        assertThrows(ObjectNotFoundException.class, () -> client.query(new ObjectReference("192.0.2.99")));
+        assertThrows(ObjectNotFoundException.class, () -> client.query(new ObjectReference("192.0.2.99")));
+        ExecutionException e = assertThrows(ExecutionException.class, () -> client.queryAsync(new ObjectReference("192.0.2.99")).get(10, TimeUnit.SECONDS));
+        assertTrue(e.getCause() instanceof ObjectNotFoundException);
+        assertEquals(1, requests.get());
+        assertEquals(2, client.getNegativeCache().getHitCount());
+
+        Thread.sleep(300);
+        assertThrows(ObjectNotFoundException.class, () -> client.query(new ObjectReference("192.0.2.99")));
+        assertEquals(2, requests.get());
+    }
+
+    /**
+     * Test that objects without a responsible service are remembered instead of walking the bootstrap registry again
+     */
+    @Test
+    public void testBootstrapMissIsRemembered () {
+        RDAPClient client = new RDAPClient();
+        client.setNegativeCache(new NegativeCache(1000, Duration.ofMinutes(1)));
+
+        assertThrows(UnknownServiceException.class, () -> client.query(new ObjectReference("100.64.0.1")));
+        assertThrows(UnknownServiceException.class, () -> client.query(new ObjectReference("100.64.0.1")));
+
+        assertEquals(1, client.getNegativeCache().getEntryCount());
+        assertEquals(1, client.getNegativeCache().getHitCount());
+    }
+
+    /**
+     * Test that a 404 Not Found fails the query without a negative cache as well
+     */
+    @Test
+    public void testNotFoundWithoutCache () {
+        assertThrows(ObjectNotFoundException.class, () -> new RDAPClient().query(new ObjectReference("192.0.2.99")));
+    }
+
+    /**
+     * Test that other addresses within a cached network are answered without a request
+     */
+    @Test
+    public void testNetworkCache () throws Exception {
+        RDAPClient client = new RDAPClient();
+        client.setNetworkCache(new IPNetworkCache(1000, Duration.ofMinutes(5)));
+
+        assertEquals("192.0.2.1", client.queryIPNetwork(new ObjectReference("192.0.2.1")).getHandle());
+        assertEquals("192.0.2.1", client.queryIPNetwork(new ObjectReference("192.0.2.200")).getHandle());
+        assertEquals("192.0.2.1", client.queryIPNetworkAsync(new ObjectReference("192.0.2.128/25")).get(10, TimeUnit.SECONDS).getHandle());
+        assertEquals(1, requests.get());
+
+        client.query(new ObjectReference("198.51.100.1"));
+        assertEquals(2, requests.get());
+        assertEquals(2, client.getNetworkCache().getHitCount());
+    }
+
+    /**
+     * Test that other AS numbers within a cached block are answered without a request
+     */
+    @Test
+    public void testAutnumCache () throws Exception {
+        RDAPClient client = new RDAPClient();
+        client.setAutnumCache(new AutnumCache(1000, Duration.ofMinutes(5)));
+
+        assertEquals("AS64500", client.queryAutnum(new ObjectReference("AS64500")).getHandle());
+        assertEquals("AS64500", client.queryAutnum(new ObjectReference("64511")).getHandle());
+        assertEquals("AS64500", client.queryAutnumAsync(new ObjectReference("AS64496")).get(10, TimeUnit.SECONDS).getHandle());
+        assertEquals(1, requests.get());
+        assertEquals(2.0 / 3, client.getAutnumCache().getHitRate(), 1e-9);
+    }
+
+    /**
+     * Test that the key of a response does not change when the observed latency reorders the URLs of its service, and
+     * that each query looks up the bootstrap registry only once
+     */
+    @Test
+    public void testCacheKeyIsStable () throws Exception {
+        RDAPClient client = new RDAPClient();
+        client.setResponseCache(new ResponseCache(1024 * 1024, Duration.ofMinutes(5)));
+        client.setNegativeCache(new NegativeCache(1000, Duration.ofMinutes(5)));
+
+        client.queryIPNetwork(new ObjectReference("192.0.0.1"));
+        client.getServiceSelector().recordFailure(base + "first/");
+        client.queryIPNetwork(new ObjectReference("192.0.0.1"));
+
+        assertEquals(1, requests.get());
+        assertEquals(1, client.getResponseCache().getHitCount());
+
+        // One bootstrap and one object lookup per query
+        assertEquals(4, client.getNegativeCache().getMissCount());
+        assertEquals(base + "second/", client.getServiceURL("192.0.0.1"));
+    }
+}
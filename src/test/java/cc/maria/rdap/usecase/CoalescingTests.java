@@ -0,0 +1,187 @@
+/*
+ * Copyright (c) 2023 Maria Merkel
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the license at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the license for the specific language governing permissions and
+ * limitations under the license.
+ */
+
+package cc.maria.rdap.usecase;
+
+import cc.maria.rdap.RDAPClient;
+import cc.maria.rdap.http.ResponseCache;
+import cc.maria.rdap.object.IPNetworkObjectClass;
+import cc.maria.rdap.object.ObjectReference;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class CoalescingTests {
+    private static final int CALLERS = 16;
+
+    private TestRDAPServer server;
+    private final AtomicInteger requests = new AtomicInteger();
+    private volatile CountDownLatch arrived = new CountDownLatch(1);
+    private volatile CountDownLatch release = new CountDownLatch(1);
+
+    /**
+     * Start a local server for TEST-NET-1 that holds every response until it is released. Addresses ending in .99 do
+     * not exist.
+     */
+    @Before
+    public void startServer () throws IOException {
+        // Uncoalesced queries have to be able to wait on the server at the same time, it handles each on its own thread
+        server = new TestRDAPServer();
+
+        server.bootstrap("ipv4.json", TestRDAPServer.entry("192.0.2.0/24", server.getBase() + "rdap/"));
+        server.handle("/rdap/", exchange -> {
+            requests.incrementAndGet();
+            arrived.countDown();
+
+            try {
+                release.await(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+
+            String path = exchange.getRequestURI().getPath();
+            if (path.endsWith(".99")) {
+                exchange.sendResponseHeaders(404, -1);
+                exchange.close();
+                return;
+            }
+
+            TestRDAPServer.respond(exchange, 200, TestRDAPServer.network(TestRDAPServer.handle(exchange)));
+        });
+        server.start();
+    }
+
+    @After
+    public void stopServer () {
+        release.countDown();
+        server.close();
+    }
+
+    /**
+     * Start one query, wait until the server received it and then start the remaining ones, so that they all find the
+     * first one in flight
+     */
+    private List<Future<IPNetworkObjectClass>> queryConcurrently (RDAPClient client, String handle) throws Exception {
+        ExecutorService callers = Executors.newFixedThreadPool(CALLERS);
+        List<Future<IPNetworkObjectClass>> results = new ArrayList<>();
+
+        results.add(callers.submit(() -> client.queryIPNetwork(new ObjectReference(handle))));
+        assertTrue(arrived.await(10, TimeUnit.SECONDS));
+
+        for (int i = 1; i < CALLERS; i++) {
+            if (i % 2 == 0) {
+                results.add(client.queryIPNetworkAsync(new ObjectReference(handle)));
+            } else {
+                results.add(callers.submit(() -> client.queryIPNetwork(new ObjectReference(handle))));
+            }
+        }
+
+        // Give the callers time to join the query in flight before the server answers
+        Thread.sleep(200);
+        release.countDown();
+        callers.shutdown();
+
+        return results;
+    }
+
+    /**
+     * Test that identical concurrent queries send a single request and share its result
+     */
+    @Test
+    public void testConcurrentQueriesAreCoalesced () throws Exception {
+        RDAPClient client = new RDAPClient();
+        List<Future<IPNetworkObjectClass>> results = queryConcurrently(client, "192.0.2.1");
+
+        IPNetworkObjectClass first = results.get(0).get(10, TimeUnit.SECONDS);
+        assertEquals("192.0.2.1", first.getHandle());
+        for (Future<IPNetworkObjectClass> result : results) assertSame(first, result.get(10, TimeUnit.SECONDS));
+        assertEquals(1, requests.get());
+
+        // The finished query is no longer in flight, so the next one sends a new request
+        assertNotSame(first, client.queryIPNetwork(new ObjectReference("192.0.2.1")));
+        assertEquals(2, requests.get());
+    }
+
+    /**
+     * Test that coalescing works together with the response cache
+     */
+    @Test
+    public void testCoalescingWithResponseCache () throws Exception {
+        RDAPClient client = new RDAPClient();
+        client.setResponseCache(new ResponseCache(1024 * 1024, Duration.ofMinutes(5)));
+        List<Future<IPNetworkObjectClass>> results = queryConcurrently(client, "192.0.2.1");
+
+        for (Future<IPNetworkObjectClass> result : results) assertEquals("192.0.2.1", result.get(10, TimeUnit.SECONDS).getHandle());
+
+        client.queryIPNetwork(new ObjectReference("192.0.2.1"));
+        assertEquals(1, requests.get());
+        assertEquals(1, client.getResponseCache().getHitCount());
+    }
+
+    /**
+     * Test that every caller of a coalesced query receives its error
+     */
+    @Test
+    public void testErrorsAreShared () throws Exception {
+        RDAPClient client = new RDAPClient();
+        List<Future<IPNetworkObjectClass>> results = queryConcurrently(client, "192.0.2.99");
+
+        for (Future<IPNetworkObjectClass> result : results) assertThrows(ExecutionException.class, () -> result.get(10, TimeUnit.SECONDS));
+        assertEquals(1, requests.get());
+    }
+
+    /**
+     * Test that queries for different objects are not coalesced
+     */
+    @Test
+    public void testDifferentObjectsAreNotCoalesced () throws Exception {
+        RDAPClient client = new RDAPClient();
+        Future<IPNetworkObjectClass> first = client.queryIPNetworkAsync(new ObjectReference("192.0.2.1"));
+        assertTrue(arrived.await(10, TimeUnit.SECONDS));
+        Future<IPNetworkObjectClass> second = client.queryIPNetworkAsync(new ObjectReference("192.0.2.2"));
+
+        Thread.sleep(200);
+        release.countDown();
+
+        assertEquals("192.0.2.1", first.get(10, TimeUnit.SECONDS).getHandle());
+        assertEquals("192.0.2.2", second.get(10, TimeUnit.SECONDS).getHandle());
+        assertEquals(2, requests.get());
+    }
+
+    /**
+     * Test that every query sends its own request when coalescing is turned off
+     */
+    @Test
+    public void testCoalescingDisabled () throws Exception {
+        RDAPClient client = new RDAPClient();
+        client.setCoalescing(false);
+        assertFalse(client.isCoalescing());
+
+        List<Future<IPNetworkObjectClass>> results = queryConcurrently(client, "192.0.2.1");
+
+        for (Future<IPNetworkObjectClass> result : results) assertEquals("192.0.2.1", result.get(10, TimeUnit.SECONDS).getHandle());
+        assertEquals(CALLERS, requests.get());
+    }
+}
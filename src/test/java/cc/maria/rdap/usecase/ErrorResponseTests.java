@@ -0,0 +1,81 @@
+/*
+ * Copyright (c) 2023 Maria Merkel
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the license at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the license for the specific language governing permissions and
+ * limitations under the license.
+ */
+
+package cc.maria.rdap.usecase;
+
+import cc.maria.rdap.RDAPClient;
+import cc.maria.rdap.exception.ErrorResponseException;
+import cc.maria.rdap.object.ObjectReference;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class ErrorResponseTests {
+    private TestRDAPServer server;
+
+    /**
+     * Start a local server that rejects queries for TEST-NET-1 with an RDAP error response and fails queries for
+     * TEST-NET-2 with an empty body
+     */
+    @Before
+    public void startServer () throws IOException {
+        server = new TestRDAPServer();
+
+        server.bootstrap("ipv4.json", TestRDAPServer.entry("192.0.2.0/24", server.getBase() + "rejecting/"), TestRDAPServer.entry("198.51.100.0/24", server.getBase() + "failing/"));
+        server.handle("/rejecting/", exchange -> TestRDAPServer.respond(exchange, 400, "{\"errorCode\": 400, \"title\": \"Malformed query\", \"description\": [\"The query is not supported\"]}"));
+        server.handle("/failing/", exchange -> TestRDAPServer.respond(exchange, 500, ""));
+        server.start();
+    }
+
+    @After
+    public void stopServer () {
+        server.close();
+    }
+
+    /**
+     * Test that an error response is reported with its status and RDAP error body instead of being parsed as the object
+     */
+    @Test
+    public void testErrorResponse () {
+        RDAPClient client = new RDAPClient();
+
+        ErrorResponseException e = assertThrows(ErrorResponseException.class, () -> client.query(new ObjectReference("192.0.2.1")));
+        assertEquals(400, e.getStatus());
+        assertEquals("Malformed query", e.getErrorResponse().getTitle());
+        assertArrayEquals(new String[]{"The query is not supported"}, e.getErrorResponse().getDescription());
+
+        ExecutionException async = assertThrows(ExecutionException.class, () -> client.queryAsync(new ObjectReference("192.0.2.1")).get(10, TimeUnit.SECONDS));
+        assertEquals(400, ((ErrorResponseException) async.getCause()).getStatus());
+    }
+
+    /**
+     * Test that a server error without an RDAP error body is reported with its status
+     */
+    @Test
+    public void testServerErrorWithoutBody () {
+        RDAPClient client = new RDAPClient();
+
+        ErrorResponseException e = assertThrows(ErrorResponseException.class, () -> client.query(new ObjectReference("198.51.100.1")));
+        assertEquals(500, e.getStatus());
+        assertNull(e.getErrorResponse());
+    }
+}
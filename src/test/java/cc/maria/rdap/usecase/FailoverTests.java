@@ -0,0 +1,89 @@
+/*
+ * Copyright (c) 2024 Maria Merkel
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the license at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the license for the specific language governing permissions and
+ * limitations under the license.
+ */
+package cc.maria.rdap.usecase;
+
+import cc.maria.rdap.RDAPClient;
+import cc.maria.rdap.exception.RDAPException;
+import cc.maria.rdap.object.IPNetworkObjectClass;
+import cc.maria.rdap.object.ObjectReference;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class FailoverTests {
+    private TestRDAPServer server;
+    private String base;
+
+    /**
+     * Start a local server with a bootstrap registry listing a broken, a refusing and a working URL for TEST-NET-1
+     */
+    @Before
+    public void startServer () throws IOException {
+        int closedPort;
+        try (ServerSocket socket = new ServerSocket(0)) {
+            closedPort = socket.getLocalPort();
+        }
+
+        server = new TestRDAPServer();
+        base = server.getBase();
+
+        server.bootstrap("ipv4.json", TestRDAPServer.entry("192.0.2.0/24", base + "broken/", "http://127.0.0.1:" + closedPort + "/", base + "good/"));
+        server.handle("/broken/", exchange -> TestRDAPServer.respond(exchange, 503, ""));
+        server.handle("/good/", exchange -> TestRDAPServer.respond(exchange, 200, TestRDAPServer.network("TEST-NET-1")));
+        server.start();
+    }
+
+    @After
+    public void stopServer () {
+        server.close();
+    }
+
+    /**
+     * Test that a query fails over past a server error and a refused connection, and that the working URL is tried first
+     * afterwards
+     */
+    @Test
+    public void testFailover () throws RDAPException, JsonProcessingException {
+        RDAPClient client = new RDAPClient();
+        ObjectReference reference = new ObjectReference("192.0.2.1");
+
+        assertEquals("TEST-NET-1", ((IPNetworkObjectClass) client.query(reference)).getHandle());
+        assertTrue(client.getServiceSelector().getErrorRate(base + "broken/") > 0);
+        assertEquals(base + "good/", reference.getServiceURLs(client).get(0));
+
+        assertEquals("TEST-NET-1", ((IPNetworkObjectClass) client.query(reference)).getHandle());
+    }
+
+    /**
+     * Test that asynchronous queries fail over the same way
+     */
+    @Test
+    public void testFailoverAsync () throws Exception {
+        RDAPClient client = new RDAPClient();
+        ObjectReference reference = new ObjectReference("192.0.2.1");
+
+        assertEquals("TEST-NET-1", client.queryIPNetworkAsync(reference).get(10, TimeUnit.SECONDS).getHandle());
+        assertTrue(client.getServiceSelector().getErrorRate(base + "broken/") > 0);
+        assertEquals(base + "good/", reference.getServiceURLs(client).get(0));
+    }
+}
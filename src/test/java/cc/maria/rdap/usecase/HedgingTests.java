@@ -0,0 +1,177 @@
+/*
+ * Copyright (c) 2023 Maria Merkel
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the license at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the license for the specific language governing permissions and
+ * limitations under the license.
+ */
+
+package cc.maria.rdap.usecase;
+
+import cc.maria.rdap.RDAPClient;
+import cc.maria.rdap.object.ObjectReference;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class HedgingTests {
+    private TestRDAPServer server;
+    private String base;
+    private final AtomicInteger slowRequests = new AtomicInteger();
+    private final AtomicInteger fastRequests = new AtomicInteger();
+    private final AtomicInteger brokenRequests = new AtomicInteger();
+    private final AtomicInteger stalls = new AtomicInteger();
+    private final AtomicInteger failures = new AtomicInteger();
+
+    /**
+     * Start a local server with a bootstrap registry listing a slow and a fast URL for TEST-NET-1, only the slow URL
+     * for TEST-NET-2, and the slow, a broken and the fast URL for TEST-NET-3. The slow URL takes two seconds to answer
+     * as long as there are stalls left, and answers with 503 Service Unavailable as long as there are failures left.
+     * The broken URL always answers with 503 Service Unavailable.
+     */
+    @Before
+    public void startServer () throws IOException {
+        // The hedged request must not wait for the stalled one, the server handles each on its own thread
+        server = new TestRDAPServer();
+        base = server.getBase();
+
+        server.bootstrap("ipv4.json", TestRDAPServer.entry("192.0.2.0/24", base + "slow/", base + "fast/"), TestRDAPServer.entry("198.51.100.0/24", base + "slow/"), TestRDAPServer.entry("203.0.113.0/24", base + "slow/", base + "broken/", base + "fast/"));
+        server.handle("/slow/", exchange -> {
+            slowRequests.incrementAndGet();
+
+            if (stalls.getAndDecrement() > 0) {
+                try {
+                    Thread.sleep(2000);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+
+            if (failures.getAndDecrement() > 0) TestRDAPServer.respond(exchange, 503, "");
+            else TestRDAPServer.respond(exchange, 200, TestRDAPServer.network("slow"));
+        });
+        server.handle("/broken/", exchange -> {
+            brokenRequests.incrementAndGet();
+            TestRDAPServer.respond(exchange, 503, "");
+        });
+        server.handle("/fast/", exchange -> {
+            fastRequests.incrementAndGet();
+            TestRDAPServer.respond(exchange, 200, TestRDAPServer.network("fast"));
+        });
+        server.start();
+    }
+
+    @After
+    public void stopServer () {
+        server.close();
+    }
+
+    /**
+     * Make the slow URL the preferred one with a short usual latency
+     */
+    private static void observeLatencies (RDAPClient client, String slow, String fast) {
+        for (int i = 0; i < 16; i++) {
+            client.getServiceSelector().recordSuccess(slow, TimeUnit.MILLISECONDS.toNanos(20));
+            if (fast != null) client.getServiceSelector().recordSuccess(fast, TimeUnit.MILLISECONDS.toNanos(500));
+        }
+    }
+
+    /**
+     * Test that a request slower than usual is hedged to the next URL of the service, whose response is used
+     */
+    @Test
+    public void testHedgeToAlternateURL () throws Exception {
+        stalls.set(1);
+        RDAPClient client = new RDAPClient();
+        client.setHedgePercentile(0.95);
+        observeLatencies(client, base + "slow/", base + "fast/");
+
+        long start = System.nanoTime();
+        assertEquals("fast", client.queryIPNetwork(new ObjectReference("192.0.2.1")).getHandle());
+
+        assertTrue(System.nanoTime() - start < TimeUnit.MILLISECONDS.toNanos(1500));
+        assertEquals(1, slowRequests.get());
+        assertEquals(1, fastRequests.get());
+    }
+
+    /**
+     * Test that a service with a single URL is hedged to the same URL, asynchronously as well
+     */
+    @Test
+    public void testHedgeToSameURL () throws Exception {
+        stalls.set(1);
+        RDAPClient client = new RDAPClient();
+        client.setHedgePercentile(0.95);
+        observeLatencies(client, base + "slow/", null);
+
+        long start = System.nanoTime();
+        assertEquals("slow", client.queryIPNetworkAsync(new ObjectReference("198.51.100.1")).get(10, TimeUnit.SECONDS).getHandle());
+
+        assertTrue(System.nanoTime() - start < TimeUnit.MILLISECONDS.toNanos(1500));
+        assertEquals(2, slowRequests.get());
+    }
+
+    /**
+     * Test that failover does not send the query again to the URL a failed hedge was sent to
+     */
+    @Test
+    public void testFailoverSkipsHedgedURL () throws Exception {
+        stalls.set(1);
+        failures.set(1);
+        RDAPClient client = new RDAPClient();
+        client.setHedgePercentile(0.95);
+        observeLatencies(client, base + "slow/", base + "fast/");
+        for (int i = 0; i < 16; i++) client.getServiceSelector().recordSuccess(base + "broken/", TimeUnit.MILLISECONDS.toNanos(100));
+
+        assertEquals("fast", client.queryIPNetwork(new ObjectReference("203.0.113.1")).getHandle());
+
+        assertEquals(1, slowRequests.get());
+        assertEquals(1, brokenRequests.get());
+        assertEquals(1, fastRequests.get());
+    }
+
+    /**
+     * Test that requests answered within the usual latency are not hedged
+     */
+    @Test
+    public void testFastRequestIsNotHedged () throws Exception {
+        RDAPClient client = new RDAPClient();
+        client.setHedgePercentile(0.95);
+
+        // Without enough observations there is no percentile to hedge at
+        assertEquals("slow", client.queryIPNetwork(new ObjectReference("198.51.100.1")).getHandle());
+
+        observeLatencies(client, base + "slow/", null);
+        client.getServiceSelector().recordSuccess(base + "slow/", TimeUnit.SECONDS.toNanos(1));
+        client.getServiceSelector().recordSuccess(base + "slow/", TimeUnit.SECONDS.toNanos(1));
+        client.setHedgePercentile(0.99);
+
+        assertEquals("slow", client.queryIPNetwork(new ObjectReference("198.51.100.1")).getHandle());
+
+        // Give a hedged request time to arrive if one was sent
+        Thread.sleep(200);
+        assertEquals(2, slowRequests.get());
+    }
+
+    /**
+     * Test that hedging percentiles outside of 0 and 1 are rejected
+     */
+    @Test
+    public void testInvalidPercentile () {
+        assertThrows(IllegalArgumentException.class, () -> new RDAPClient().setHedgePercentile(95));
+    }
+}
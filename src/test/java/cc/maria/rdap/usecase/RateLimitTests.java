@@ -0,0 +1,166 @@
+/*
+ * Copyright (c) 2023 Maria Merkel
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the license at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the license for the specific language governing permissions and
+ * limitations under the license.
+ */
+
+package cc.maria.rdap.usecase;
+
+import cc.maria.rdap.RDAPClient;
+import cc.maria.rdap.exception.RateLimitedException;
+import cc.maria.rdap.http.RateLimiter;
+import cc.maria.rdap.object.ObjectReference;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class RateLimitTests {
+    private TestRDAPServer server;
+    private String serviceURL;
+    private final AtomicInteger requests = new AtomicInteger();
+    private final AtomicInteger rejections = new AtomicInteger();
+    private volatile String retryAfter = "1";
+
+    /**
+     * Start a local server for TEST-NET-1 that answers with 429 Too Many Requests as long as there are rejections left
+     */
+    @Before
+    public void startServer () throws IOException {
+        server = new TestRDAPServer();
+        serviceURL = server.getBase() + "rdap/";
+
+        server.bootstrap("ipv4.json", TestRDAPServer.entry("192.0.2.0/24", serviceURL));
+        server.handle("/rdap/", exchange -> {
+            requests.incrementAndGet();
+
+            if (rejections.getAndDecrement() > 0) {
+                if (retryAfter != null) exchange.getResponseHeaders().add("Retry-After", retryAfter);
+                TestRDAPServer.respond(exchange, 429, "Too many requests");
+                return;
+            }
+
+            TestRDAPServer.respond(exchange, 200, TestRDAPServer.network(TestRDAPServer.handle(exchange)));
+        });
+        server.start();
+    }
+
+    @After
+    public void stopServer () {
+        server.close();
+    }
+
+    /**
+     * Test that a 429 response is reported with its Retry-After header instead of being parsed
+     */
+    @Test
+    public void testTooManyRequestsWithoutLimiter () {
+        rejections.set(1);
+        RDAPClient client = new RDAPClient();
+
+        RateLimitedException e = assertThrows(RateLimitedException.class, () -> client.query(new ObjectReference("192.0.2.1")));
+        assertEquals(Duration.ofSeconds(1), e.getRetryAfter());
+        assertEquals(1, requests.get());
+    }
+
+    /**
+     * Test that a rate limited query is sent again once the pause the server asked for is over
+     */
+    @Test
+    public void testRetryAfterIsHonored () throws Exception {
+        rejections.set(1);
+        RDAPClient client = new RDAPClient();
+        client.setRateLimiter(new RateLimiter(100, 10));
+
+        long start = System.nanoTime();
+        assertEquals("192.0.2.1", client.queryIPNetwork(new ObjectReference("192.0.2.1")).getHandle());
+
+        assertTrue(System.nanoTime() - start >= TimeUnit.SECONDS.toNanos(1));
+        assertEquals(2, requests.get());
+    }
+
+    /**
+     * Test that asynchronous queries wait for the pause without failing
+     */
+    @Test
+    public void testRetryAfterIsHonoredAsync () throws Exception {
+        rejections.set(1);
+        RDAPClient client = new RDAPClient();
+        client.setRateLimiter(new RateLimiter(100, 10));
+
+        long start = System.nanoTime();
+        assertEquals("192.0.2.1", client.queryIPNetworkAsync(new ObjectReference("192.0.2.1")).get(10, TimeUnit.SECONDS).getHandle());
+
+        assertTrue(System.nanoTime() - start >= TimeUnit.SECONDS.toNanos(1));
+        assertEquals(2, requests.get());
+    }
+
+    /**
+     * Test that queries fail without sending a request while the server asks for a pause longer than the maximum wait
+     */
+    @Test
+    public void testLongPauseFailsFast () {
+        rejections.set(1);
+        retryAfter = "3600";
+        RDAPClient client = new RDAPClient();
+        client.setRateLimiter(new RateLimiter(100, 10));
+
+        RateLimitedException e = assertThrows(RateLimitedException.class, () -> client.query(new ObjectReference("192.0.2.1")));
+        assertTrue(e.getRetryAfter().toMinutes() >= 59);
+
+        ExecutionException async = assertThrows(ExecutionException.class, () -> client.queryAsync(new ObjectReference("192.0.2.2")).get(10, TimeUnit.SECONDS));
+        assertTrue(async.getCause() instanceof RateLimitedException);
+        assertEquals(1, requests.get());
+        assertTrue(client.getRateLimiter().isPaused(serviceURL));
+    }
+
+    /**
+     * Test that a server that keeps rejecting requests is reported as rate limiting once the retries are used up
+     */
+    @Test
+    public void testRetriesAreLimited () {
+        rejections.set(100);
+        retryAfter = "0";
+        RDAPClient client = new RDAPClient();
+        client.setRateLimiter(new RateLimiter(100, 10));
+        client.getRateLimiter().setMaxRetries(2);
+
+        assertThrows(RateLimitedException.class, () -> client.query(new ObjectReference("192.0.2.1")));
+        assertEquals(3, requests.get());
+    }
+
+    /**
+     * Test that queries to the same server are spread out at the configured rate
+     */
+    @Test
+    public void testRateIsLimited () throws Exception {
+        RDAPClient client = new RDAPClient();
+        client.setRateLimiter(new RateLimiter(20, 1));
+
+        // Loads the bootstrap registry and uses up the burst
+        client.query(new ObjectReference("192.0.2.1"));
+
+        long start = System.nanoTime();
+        for (int i = 2; i < 6; i++) client.query(new ObjectReference("192.0.2." + i));
+
+        assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(190));
+        assertEquals(5, requests.get());
+    }
+}
@@ -0,0 +1,188 @@
+/*
+ * Copyright (c) 2023 Maria Merkel
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the license at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the license for the specific language governing permissions and
+ * limitations under the license.
+ */
+
+package cc.maria.rdap.usecase;
+
+import cc.maria.rdap.RDAPClient;
+import cc.maria.rdap.exception.TooManyRedirectsException;
+import cc.maria.rdap.object.ObjectReference;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class RedirectTests {
+    private TestRDAPServer server;
+    private String base;
+    private final AtomicInteger origin = new AtomicInteger();
+    private final AtomicInteger authoritative = new AtomicInteger();
+
+    /**
+     * Start a local server whose bootstrap registries point TEST-NET-1 and the documentation AS numbers at an origin
+     * server that redirects every query to an authoritative server, like an RIR does for transferred resources. The
+     * loop server redirects to itself forever. The authoritative server claims all of IPv4 for TEST-NET-3 and a
+     * network not containing the query for 192.0.2.128. The benchmarking network is served by a server that moved to an
+     * unavailable one and by the authoritative server.
+     */
+    @Before
+    public void startServer () throws IOException {
+        server = new TestRDAPServer();
+        base = server.getBase();
+
+        server.bootstrap("ipv4.json", TestRDAPServer.entry("192.0.2.0/24", base + "origin/"), TestRDAPServer.entry("198.51.100.0/24", base + "loop/"), TestRDAPServer.entry("203.0.113.0/24", base + "origin/"), TestRDAPServer.entry("198.18.0.0/15", base + "moved/", base + "authoritative/"));
+        server.bootstrap("asn.json", TestRDAPServer.entry("64496-64511", base + "origin/"));
+        server.handle("/origin/", exchange -> {
+            int status = new int[] {301, 302, 307}[origin.getAndIncrement() % 3];
+            TestRDAPServer.redirect(exchange, status, exchange.getRequestURI().getPath().replace("/origin/", "/authoritative/"));
+        });
+        server.handle("/moved/", exchange -> TestRDAPServer.redirect(exchange, 301, exchange.getRequestURI().getPath().replace("/moved/", "/unavailable/")));
+        server.handle("/unavailable/", exchange -> TestRDAPServer.respond(exchange, 503, ""));
+        server.handle("/loop/", exchange -> TestRDAPServer.redirect(exchange, 302, exchange.getRequestURI().getPath()));
+        server.handle("/authoritative/", exchange -> {
+            authoritative.incrementAndGet();
+            String path = exchange.getRequestURI().getPath();
+
+            if (path.contains("/ip/198.18.")) {
+                TestRDAPServer.respond(exchange, 200, "{\"objectClassName\": \"ip network\", \"handle\": \"BENCHMARK\", \"startAddress\": \"198.18.0.0\", \"endAddress\": \"198.19.255.255\"}");
+            } else if (path.contains("/ip/203.0.113.")) {
+                TestRDAPServer.respond(exchange, 200, "{\"objectClassName\": \"ip network\", \"handle\": \"ALL\", \"startAddress\": \"0.0.0.0\", \"endAddress\": \"255.255.255.255\"}");
+            } else if (path.contains("/ip/192.0.2.128")) {
+                TestRDAPServer.respond(exchange, 200, "{\"objectClassName\": \"ip network\", \"handle\": \"ELSEWHERE\", \"startAddress\": \"192.0.2.0\", \"endAddress\": \"192.0.2.127\"}");
+            } else if (path.contains("/autnum/")) {
+                TestRDAPServer.respond(exchange, 200, "{\"objectClassName\": \"autnum\", \"handle\": \"AS64496\", \"startAutnum\": 64496, \"endAutnum\": 64511}");
+            } else {
+                TestRDAPServer.respond(exchange, 200, "{\"objectClassName\": \"ip network\", \"handle\": \"TEST-NET-1\", \"startAddress\": \"192.0.2.0\", \"endAddress\": \"192.0.2.255\"}");
+            }
+        });
+        server.start();
+    }
+
+    @After
+    public void stopServer () {
+        server.close();
+    }
+
+    /**
+     * Test that redirects are followed and later queries in the same network go straight to the authoritative server
+     */
+    @Test
+    public void testRedirectIsFollowedAndRemembered () throws Exception {
+        RDAPClient client = new RDAPClient();
+
+        assertEquals("TEST-NET-1", client.queryIPNetwork(new ObjectReference("192.0.2.1")).getHandle());
+        assertEquals(1, origin.get());
+        assertEquals(1, authoritative.get());
+
+        assertEquals("TEST-NET-1", client.queryIPNetwork(new ObjectReference("192.0.2.2")).getHandle());
+        assertEquals(1, origin.get());
+        assertEquals(2, authoritative.get());
+        assertEquals(base + "authoritative/", client.getServiceURL("192.0.2.3"));
+    }
+
+    /**
+     * Test that redirects are followed and remembered for the AS number block of the answer by asynchronous queries
+     */
+    @Test
+    public void testAsyncRedirect () throws Exception {
+        RDAPClient client = new RDAPClient();
+
+        assertEquals("AS64496", client.queryAutnumAsync(new ObjectReference("AS64500")).get(10, TimeUnit.SECONDS).getHandle());
+        assertEquals("AS64496", client.queryAutnumAsync(new ObjectReference("AS64510")).get(10, TimeUnit.SECONDS).getHandle());
+
+        assertEquals(1, origin.get());
+        assertEquals(2, authoritative.get());
+    }
+
+    /**
+     * Test that every query goes through the origin server when hints are disabled
+     */
+    @Test
+    public void testHintsDisabled () throws Exception {
+        RDAPClient client = new RDAPClient();
+        client.setServiceHints(null);
+
+        client.queryIPNetwork(new ObjectReference("192.0.2.1"));
+        client.queryIPNetwork(new ObjectReference("192.0.2.2"));
+
+        assertEquals(2, origin.get());
+        assertEquals(2, authoritative.get());
+        assertEquals(base + "origin/", client.getServiceURL("192.0.2.3"));
+    }
+
+    /**
+     * Test that redirect loops fail once the maximum number of redirects is reached
+     */
+    @Test
+    public void testTooManyRedirects () {
+        RDAPClient client = new RDAPClient();
+        client.setMaxRedirects(3);
+
+        assertThrows(TooManyRedirectsException.class, () -> client.query(new ObjectReference("198.51.100.1")));
+
+        ExecutionException async = assertThrows(ExecutionException.class, () -> client.queryAsync(new ObjectReference("198.51.100.1")).get(10, TimeUnit.SECONDS));
+        assertTrue(async.getCause() instanceof TooManyRedirectsException);
+    }
+
+    /**
+     * Test that ranges reaching beyond the bootstrap registry entry of the origin server are not remembered
+     */
+    @Test
+    public void testOversizedRangeIsNotRemembered () throws Exception {
+        RDAPClient client = new RDAPClient();
+
+        assertEquals("ALL", client.queryIPNetwork(new ObjectReference("203.0.113.1")).getHandle());
+        assertEquals("ALL", client.queryIPNetwork(new ObjectReference("203.0.113.2")).getHandle());
+
+        assertEquals(2, origin.get());
+        assertEquals(base + "origin/", client.getServiceURL("203.0.113.3"));
+        assertEquals(base + "origin/", client.getServiceURL("192.0.2.1"));
+    }
+
+    /**
+     * Test that ranges not containing the queried address are not remembered
+     */
+    @Test
+    public void testRangeWithoutQueryIsNotRemembered () throws Exception {
+        RDAPClient client = new RDAPClient();
+
+        assertEquals("ELSEWHERE", client.queryIPNetwork(new ObjectReference("192.0.2.128")).getHandle());
+
+        assertEquals(1, origin.get());
+        assertEquals(base + "origin/", client.getServiceURL("192.0.2.1"));
+    }
+
+    /**
+     * Test that the server a failed attempt was redirected to is not remembered when the query fails over to another URL
+     */
+    @Test
+    public void testFailedRedirectIsNotRemembered () throws Exception {
+        RDAPClient client = new RDAPClient();
+
+        assertEquals("BENCHMARK", client.queryIPNetwork(new ObjectReference("198.18.0.1")).getHandle());
+        assertNotEquals(base + "unavailable/", client.getServiceURL("198.18.0.2"));
+
+        RDAPClient async = new RDAPClient();
+
+        assertEquals("BENCHMARK", async.queryIPNetworkAsync(new ObjectReference("198.18.0.3")).get(10, TimeUnit.SECONDS).getHandle());
+        assertNotEquals(base + "unavailable/", async.getServiceURL("198.18.0.4"));
+    }
+}
@@ -0,0 +1,102 @@
+/*
+ * Copyright (c) 2024 Maria Merkel
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the license at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the license for the specific language governing permissions and
+ * limitations under the license.
+ */
+
+package cc.maria.rdap.usecase;
+
+import cc.maria.rdap.RDAPClient;
+import cc.maria.rdap.exception.RDAPException;
+import cc.maria.rdap.exception.ResponseTooLargeException;
+import cc.maria.rdap.object.IPNetworkObjectClass;
+import cc.maria.rdap.object.ObjectReference;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.*;
+
+public class ResponseSizeTests {
+    private static final String NETWORK = "{\"objectClassName\": \"ip network\", \"handle\": \"" + "X".repeat(64 * 1024) + "\"}";
+
+    private TestRDAPServer server;
+
+    /**
+     * Start a local server answering for TEST-NET-2 with a Content-Length and for TEST-NET-3 with a chunked body
+     */
+    @Before
+    public void startServer () throws IOException {
+        server = new TestRDAPServer();
+        String base = server.getBase();
+        byte[] network = NETWORK.getBytes(StandardCharsets.UTF_8);
+
+        server.bootstrap("ipv4.json", TestRDAPServer.entry("198.51.100.0/24", base + "fixed/"), TestRDAPServer.entry("203.0.113.0/24", base + "chunked/"));
+        server.handle("/fixed/", exchange -> TestRDAPServer.respond(exchange, 200, NETWORK));
+        server.handle("/chunked/", exchange -> {
+            exchange.sendResponseHeaders(200, 0);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(network);
+            } catch (IOException ignored) {
+                // The client stops reading once the limit is reached
+            }
+        });
+        server.start();
+    }
+
+    @After
+    public void stopServer () {
+        server.close();
+    }
+
+    /**
+     * Test that responses are parsed from the stream when there is no limit or they are within it
+     */
+    @Test
+    public void testWithinLimit () throws RDAPException, JsonProcessingException {
+        RDAPClient client = new RDAPClient();
+        assertEquals(-1, client.getMaxResponseSize());
+        assertEquals(64 * 1024, ((IPNetworkObjectClass) client.query(new ObjectReference("203.0.113.1"))).getHandle().length());
+
+        client.setMaxResponseSize(128 * 1024);
+        assertEquals(64 * 1024, ((IPNetworkObjectClass) client.query(new ObjectReference("198.51.100.1"))).getHandle().length());
+        assertEquals(64 * 1024, ((IPNetworkObjectClass) client.query(new ObjectReference("203.0.113.1"))).getHandle().length());
+    }
+
+    /**
+     * Test that a response whose Content-Length exceeds the limit is rejected without reading it
+     */
+    @Test
+    public void testContentLengthExceedsLimit () {
+        RDAPClient client = new RDAPClient();
+        client.setMaxResponseSize(1024);
+
+        assertThrows(ResponseTooLargeException.class, () -> client.query(new ObjectReference("198.51.100.1")));
+    }
+
+    /**
+     * Test that a chunked response is rejected once more than the limit has been read
+     */
+    @Test
+    public void testChunkedBodyExceedsLimit () {
+        RDAPClient client = new RDAPClient();
+        client.setMaxResponseSize(1024);
+
+        assertThrows(ResponseTooLargeException.class, () -> client.query(new ObjectReference("203.0.113.1")));
+    }
+}
@@ -0,0 +1,173 @@
+/*
+ * Copyright (c) 2023 Maria Merkel
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the license at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the license for the specific language governing permissions and
+ * limitations under the license.
+ */
+
+package cc.maria.rdap.usecase;
+
+import cc.maria.rdap.RDAPClient;
+import cc.maria.rdap.exception.ErrorResponseException;
+import cc.maria.rdap.http.RetryPolicy;
+import cc.maria.rdap.object.ObjectReference;
+import jakarta.ws.rs.ProcessingException;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class RetryTests {
+    private static final RetryPolicy RETRIES = new RetryPolicy(3, Duration.ofMillis(10), Duration.ofMillis(100));
+
+    private TestRDAPServer server;
+    private final AtomicInteger requests = new AtomicInteger();
+    private final AtomicInteger failures = new AtomicInteger();
+    private final AtomicInteger stalls = new AtomicInteger();
+
+    /**
+     * Start a local server for TEST-NET-1 that answers with 503 Service Unavailable as long as there are failures left,
+     * and takes two seconds to answer as long as there are stalls left
+     */
+    @Before
+    public void startServer () throws IOException {
+        // Stalled requests must not hold up the ones sent after them, the server handles each on its own thread
+        server = new TestRDAPServer();
+
+        server.bootstrap("ipv4.json", TestRDAPServer.entry("192.0.2.0/24", server.getBase() + "rdap/"));
+        server.handle("/rdap/", exchange -> {
+            requests.incrementAndGet();
+
+            if (stalls.getAndDecrement() > 0) {
+                try {
+                    Thread.sleep(2000);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+
+            if (failures.getAndDecrement() > 0) {
+                TestRDAPServer.respond(exchange, 503, "");
+                return;
+            }
+
+            TestRDAPServer.respond(exchange, 200, TestRDAPServer.network("TEST-NET-1"));
+        });
+        server.start();
+    }
+
+    @After
+    public void stopServer () {
+        server.close();
+    }
+
+    /**
+     * Test that queries are retried after server errors
+     */
+    @Test
+    public void testRetryAfterServerErrors () throws Exception {
+        failures.set(2);
+        RDAPClient client = new RDAPClient();
+        client.setRetryPolicy(RETRIES);
+
+        assertEquals("TEST-NET-1", client.queryIPNetwork(new ObjectReference("192.0.2.1")).getHandle());
+        assertEquals(3, requests.get());
+
+        failures.set(2);
+        assertEquals("TEST-NET-1", client.queryIPNetworkAsync(new ObjectReference("192.0.2.1")).get(10, TimeUnit.SECONDS).getHandle());
+        assertEquals(6, requests.get());
+    }
+
+    /**
+     * Test that a server that keeps failing is given up on once the retries are used up
+     */
+    @Test
+    public void testRetriesAreBounded () {
+        failures.set(100);
+        RDAPClient client = new RDAPClient();
+        client.setRetryPolicy(RETRIES);
+
+        ErrorResponseException e = assertThrows(ErrorResponseException.class, () -> client.query(new ObjectReference("192.0.2.1")));
+        assertEquals(503, e.getStatus());
+        assertEquals(4, requests.get());
+    }
+
+    /**
+     * Test that requests that miss their deadline fail with a timeout instead of waiting for the server
+     */
+    @Test
+    public void testRequestTimeout () {
+        stalls.set(2);
+        RDAPClient client = new RDAPClient();
+        client.setRequestTimeout(Duration.ofMillis(200));
+
+        long start = System.nanoTime();
+        ProcessingException e = assertThrows(ProcessingException.class, () -> client.query(new ObjectReference("192.0.2.1")));
+        assertTrue(e.getCause() instanceof TimeoutException);
+
+        ExecutionException async = assertThrows(ExecutionException.class, () -> client.queryAsync(new ObjectReference("192.0.2.1")).get(10, TimeUnit.SECONDS));
+        assertTrue(async.getCause().getCause() instanceof TimeoutException);
+
+        assertTrue(System.nanoTime() - start < TimeUnit.MILLISECONDS.toNanos(1500));
+    }
+
+    /**
+     * Test that a request that missed its deadline is retried
+     */
+    @Test
+    public void testTimeoutIsRetried () throws Exception {
+        stalls.set(1);
+        RDAPClient client = new RDAPClient();
+        client.setRequestTimeout(Duration.ofMillis(200));
+        client.setRetryPolicy(RETRIES);
+
+        long start = System.nanoTime();
+        assertEquals("TEST-NET-1", client.queryIPNetwork(new ObjectReference("192.0.2.1")).getHandle());
+
+        assertTrue(System.nanoTime() - start < TimeUnit.MILLISECONDS.toNanos(1500));
+        assertEquals(2, requests.get());
+    }
+
+    /**
+     * Test that the query timeout bounds a query as a whole, and no retries are started once it passed
+     */
+    @Test
+    public void testQueryTimeout () throws Exception {
+        stalls.set(100);
+        RDAPClient client = new RDAPClient();
+        client.setRequestTimeout(Duration.ofMillis(200));
+        client.setRetryPolicy(new RetryPolicy(100, Duration.ofMillis(10), Duration.ofMillis(100)));
+        client.setQueryTimeout(Duration.ofMillis(500));
+
+        long start = System.nanoTime();
+        ProcessingException e = assertThrows(ProcessingException.class, () -> client.query(new ObjectReference("192.0.2.1")));
+        assertTrue(e.getCause() instanceof TimeoutException);
+        assertTrue(System.nanoTime() - start < TimeUnit.MILLISECONDS.toNanos(1000));
+
+        ExecutionException async = assertThrows(ExecutionException.class, () -> client.queryAsync(new ObjectReference("192.0.2.1")).get(10, TimeUnit.SECONDS));
+        assertTrue(async.getCause().getCause() instanceof TimeoutException);
+
+        // Give retries time to arrive if they kept being started after the deadline
+        int sent = requests.get();
+        Thread.sleep(500);
+        assertTrue(requests.get() <= sent + 1);
+        assertTrue(sent <= 8);
+    }
+}
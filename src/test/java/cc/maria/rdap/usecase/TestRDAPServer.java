@@ -0,0 +1,140 @@
+/*
+ * Copyright (c) 2023 Maria Merkel
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the license at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the license for the specific language governing permissions and
+ * limitations under the license.
+ */
+
+package cc.maria.rdap.usecase;
+
+import cc.maria.rdap.bootstrap.HTTPBootstrapSource;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Local HTTP server the use case tests run their bootstrap registries and RDAP servers on. Every request is handled on
+ * its own thread, so slow or held back responses do not delay other requests. While the server runs, it is the default
+ * base URL of {@link HTTPBootstrapSource}.
+ */
+class TestRDAPServer implements AutoCloseable {
+    private final HttpServer server;
+    private final ExecutorService handlers = Executors.newCachedThreadPool();
+    private final String base;
+
+    TestRDAPServer () throws IOException {
+        this (0);
+    }
+
+    /**
+     * @param backlog Number of connections that may wait to be accepted, or 0 for the system default
+     */
+    TestRDAPServer (int backlog) throws IOException {
+        // Listening on all interfaces lets tests reach the server as localhost as well, as if it was a second host
+        server = HttpServer.create(new InetSocketAddress(0), backlog);
+        server.setExecutor(handlers);
+        base = "http://127.0.0.1:" + server.getAddress().getPort() + "/";
+    }
+
+    /**
+     * @return Base URL of the server with a trailing slash
+     */
+    String getBase () {
+        return base;
+    }
+
+    /**
+     * @return Port the server listens on
+     */
+    int getPort () {
+        return server.getAddress().getPort();
+    }
+
+    /**
+     * Serve a bootstrap registry file
+     *
+     * @param file File name, such as ipv4.json
+     * @param entries Entries of the registry, see {@link #entry(String, String...)}
+     */
+    void bootstrap (String file, String... entries) {
+        String registry = "{\"publication\": \"2024-05-01T18:00:02Z\", \"services\": [" + String.join(", ", entries) + "]}";
+        handle("/bootstrap/" + file, exchange -> respond(exchange, 200, registry));
+    }
+
+    /**
+     * Build a bootstrap registry entry
+     *
+     * @param resource Network, AS number range or TLD
+     * @param serviceURLs Service URLs of the entry
+     * @return Entry as JSON
+     */
+    static String entry (String resource, String... serviceURLs) {
+        return "[[\"" + resource + "\"], [\"" + String.join("\", \"", serviceURLs) + "\"]]";
+    }
+
+    /**
+     * Handle the requests for a path and everything below it
+     */
+    void handle (String path, HttpHandler handler) {
+        server.createContext(path, handler);
+    }
+
+    /**
+     * Start the server and make it the default base URL for bootstrap registries
+     */
+    void start () {
+        server.start();
+        HTTPBootstrapSource.setDefaultBaseURL(base + "bootstrap/");
+    }
+
+    @Override
+    public void close () {
+        HTTPBootstrapSource.setDefaultBaseURL(HTTPBootstrapSource.IANA_BASE_URL);
+        server.stop(0);
+        handlers.shutdownNow();
+    }
+
+    static void respond (HttpExchange exchange, int status, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.sendResponseHeaders(status, bytes.length == 0 ? -1 : bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    static void redirect (HttpExchange exchange, int status, String location) throws IOException {
+        exchange.getResponseHeaders().set("Location", location);
+        respond(exchange, status, "");
+    }
+
+    /**
+     * @return Last segment of the request path, which is the handle of the queried object
+     */
+    static String handle (HttpExchange exchange) {
+        String path = exchange.getRequestURI().getPath();
+        return path.substring(path.lastIndexOf('/') + 1);
+    }
+
+    /**
+     * @return IP network response with a handle and no range
+     */
+    static String network (String handle) {
+        return "{\"objectClassName\": \"ip network\", \"handle\": \"" + handle + "\"}";
+    }
+}